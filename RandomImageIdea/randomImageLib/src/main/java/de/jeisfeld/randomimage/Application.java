@@ -22,6 +22,11 @@ import androidx.core.content.ContextCompat;
 import de.jeisfeld.randomimage.notifications.NotificationAlarmReceiver;
 import de.jeisfeld.randomimage.notifications.NotificationExternalTriggerReceiver;
 import de.jeisfeld.randomimage.notifications.NotificationUtil;
+import de.jeisfeld.randomimage.util.BitmapCache;
+import de.jeisfeld.randomimage.util.BitmapPool;
+import de.jeisfeld.randomimage.util.ColorSignatureStore;
+import de.jeisfeld.randomimage.util.ImageMetadataStore;
+import de.jeisfeld.randomimage.util.ImagePrefetcher;
 import de.jeisfeld.randomimage.util.ImageUtil;
 import de.jeisfeld.randomimage.util.MigrationUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
@@ -93,6 +98,24 @@ public class Application extends android.app.Application {
 		PreferenceUtil.incrementCounter(R.string.key_statistics_countstarts);
 	}
 
+	@Override
+	public final void onTrimMemory(final int level) {
+		super.onTrimMemory(level);
+		BitmapCache.trimMemory(level);
+		BitmapPool.clear();
+		ImagePrefetcher.trimMemory(level);
+		ImageMetadataStore.flush();
+		ColorSignatureStore.flush();
+	}
+
+	@Override
+	public final void onLowMemory() {
+		super.onLowMemory();
+		BitmapCache.clear();
+		BitmapPool.clear();
+		ImagePrefetcher.trimMemory(TRIM_MEMORY_COMPLETE);
+	}
+
 	/**
 	 * Define custom ExceptionHandler which ensures that notification alarms are not lost in case of error.
 	 */
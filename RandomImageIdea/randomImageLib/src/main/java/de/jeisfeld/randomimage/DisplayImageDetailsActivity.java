@@ -36,6 +36,7 @@ import de.jeisfeld.randomimage.util.FormattingUtil;
 import de.jeisfeld.randomimage.util.ImageList;
 import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
 import de.jeisfeld.randomimage.util.MediaStoreUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
 import de.jeisfeld.randomimage.util.StandardImageList;
@@ -193,7 +194,8 @@ public class DisplayImageDetailsActivity extends BaseActivity {
 			title.setPadding(horizontalMargin * 9 / 10, 0, 0, 0); // MAGIC_NUMBER
 			title.setCompoundDrawablePadding(horizontalMargin * 2 / 3); // MAGIC_NUMBER
 			if (mFileName != null && new File(mFileName).isFile()) {
-				Drawable drawable = new BitmapDrawable(getResources(), ImageUtil.getImageBitmap(mFileName, HEADING_IMAGE_SIZE));
+				Drawable drawable =
+						new BitmapDrawable(getResources(), ImageUtil.getImageBitmap(mFileName, HEADING_IMAGE_SIZE, BitmapUsage.DISPLAY));
 				title.setCompoundDrawablesWithIntrinsicBounds(drawable, null, null, null);
 			}
 			else {
@@ -18,6 +18,7 @@ import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
 import de.jeisfeld.randomimage.util.SystemUtil;
+import de.jeisfeld.randomimage.util.ThumbnailStore;
 import de.jeisfeld.randomimage.view.ThumbImageView;
 import de.jeisfeld.randomimage.view.ThumbImageView.LoadableFileName;
 import de.jeisfeld.randomimage.view.ThumbImageView.MarkingType;
@@ -33,6 +34,11 @@ public class DisplayImageListAdapter extends BaseAdapter {
 	 */
 	private static final int CACHE_SIZE;
 
+	/**
+	 * The minimum number of views kept in the cache, also on devices with low memory.
+	 */
+	private static final int MIN_CACHED_VIEWS = 100;
+
 	/**
 	 * The cache where views of the displays are stored for smoother scrolling.
 	 */
@@ -92,6 +98,10 @@ public class DisplayImageListAdapter extends BaseAdapter {
 	 * The highest position displayed by now.
 	 */
 	private int mMaxReachedPosition = 0;
+	/**
+	 * The position around which thumbnails have last been queued for generation.
+	 */
+	private int mThumbnailQueuePosition = -1;
 	/**
 	 * The folders which wait to be added.
 	 */
@@ -279,9 +289,27 @@ public class DisplayImageListAdapter extends BaseAdapter {
 			mMaxReachedPosition = position;
 			addFoldersNotYetAdded();
 		}
+		if (mThumbnailQueuePosition < 0 || Math.abs(position - mThumbnailQueuePosition) >= CACHE_SIZE / 2) {
+			queueThumbnails(position);
+		}
 		return mViewCache.get(position, parent);
 	}
 
+	/**
+	 * Queue the generation of thumbnails for the files around the given position.
+	 *
+	 * @param position The position.
+	 */
+	private void queueThumbnails(final int position) {
+		mThumbnailQueuePosition = position;
+		int fileIndex = position - mListNames.size() - mFolderNames.size();
+		int startIndex = Math.max(fileIndex - CACHE_SIZE / 2, 0);
+		int endIndex = Math.min(fileIndex + CACHE_SIZE, mFileNames.size());
+		if (startIndex < endIndex) {
+			ThumbnailStore.generateThumbnails(mFileNames.subList(startIndex, endIndex));
+		}
+	}
+
 	/**
 	 * Create a new ThumbImageView for the file on a certain position.
 	 *
@@ -548,6 +576,11 @@ public class DisplayImageListAdapter extends BaseAdapter {
 		 */
 		private final SparseArray<ThumbImageView> mCache;
 
+		/**
+		 * The maximum number of views in the cache. Views far from the current position are evicted beyond this number.
+		 */
+		private final int mMaxSize;
+
 		/**
 		 * The parentView view holding the cached views.
 		 */
@@ -560,13 +593,38 @@ public class DisplayImageListAdapter extends BaseAdapter {
 		 */
 		private ViewCache(final int cacheSize) {
 			mCache = new SparseArray<>(cacheSize);
+			mMaxSize = Math.max(4 * cacheSize, MIN_CACHED_VIEWS); // MAGIC_NUMBER
 		}
 
 		/**
 		 * Clean the cache.
 		 */
 		private void clear() {
-			mCache.clear();
+			synchronized (mCache) {
+				for (int i = 0; i < mCache.size(); i++) {
+					mCache.valueAt(i).releaseBitmap();
+				}
+				mCache.clear();
+			}
+		}
+
+		/**
+		 * Evict the views farthest from the current position, releasing their bitmaps for reuse.
+		 *
+		 * @param position The current position.
+		 */
+		private void evict(final int position) {
+			synchronized (mCache) {
+				if (mCache.size() <= mMaxSize) {
+					return;
+				}
+				// Evict in batches, so that this is not done on every call.
+				while (mCache.size() > mMaxSize * 3 / 4) { // MAGIC_NUMBER
+					int index = position - mCache.keyAt(0) > mCache.keyAt(mCache.size() - 1) - position ? 0 : mCache.size() - 1;
+					mCache.valueAt(index).releaseBitmap();
+					mCache.removeAt(index);
+				}
+			}
 		}
 
 		/**
@@ -582,9 +640,7 @@ public class DisplayImageListAdapter extends BaseAdapter {
 			}
 			else if (mParentView != parent) {
 				mParentView = parent;
-				synchronized (mCache) {
-					mCache.clear();
-				}
+				clear();
 			}
 
 			ThumbImageView thumbImageView;
@@ -596,6 +652,7 @@ public class DisplayImageListAdapter extends BaseAdapter {
 				synchronized (mCache) {
 					mCache.put(position, thumbImageView);
 				}
+				evict(position);
 			}
 
 			return thumbImageView;
@@ -31,6 +31,7 @@ import de.jeisfeld.randomimage.util.FormattingUtil;
 import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageRegistry.ListFiltering;
 import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
 import de.jeisfeld.randomimage.util.MediaStoreUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
 import de.jeisfeld.randomimage.util.StandardImageList;
@@ -351,7 +352,7 @@ public class DisplayListInfoActivity extends BaseActivity {
 
 		Icon icon = Icon.createWithResource(context, R.drawable.ic_launcher);
 		if (widgetIcon != null) {
-			Bitmap bitmap = ImageUtil.getImageBitmap(widgetIcon, MediaStoreUtil.MINI_THUMB_SIZE);
+			Bitmap bitmap = ImageUtil.getImageBitmap(widgetIcon, MediaStoreUtil.MINI_THUMB_SIZE, BitmapUsage.REMOTE);
 			icon = Icon.createWithBitmap(bitmap);
 		}
 
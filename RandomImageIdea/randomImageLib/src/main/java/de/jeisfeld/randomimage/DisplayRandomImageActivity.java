@@ -46,11 +46,13 @@ import de.jeisfeld.randomimage.notifications.NotificationSettingsActivity;
 import de.jeisfeld.randomimage.notifications.NotificationUtil;
 import de.jeisfeld.randomimage.notifications.NotificationUtil.NotificationType;
 import de.jeisfeld.randomimage.util.CachedRandomFileProvider;
+import de.jeisfeld.randomimage.util.ColorSignatureStore;
+import de.jeisfeld.randomimage.util.ColorSignatureStore.ColorSignature;
 import de.jeisfeld.randomimage.util.DateUtil;
 import de.jeisfeld.randomimage.util.DialogUtil;
 import de.jeisfeld.randomimage.util.DialogUtil.SelectFromListDialogFragment.SelectFromListDialogListener;
-import de.jeisfeld.randomimage.util.ImageAnalyzer;
 import de.jeisfeld.randomimage.util.ImageList;
+import de.jeisfeld.randomimage.util.ImagePrefetcher;
 import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageRegistry.CreationStyle;
 import de.jeisfeld.randomimage.util.ImageRegistry.ListFiltering;
@@ -60,6 +62,7 @@ import de.jeisfeld.randomimage.util.PreferenceUtil;
 import de.jeisfeld.randomimage.util.RandomFileListProvider;
 import de.jeisfeld.randomimage.util.RandomFileProvider;
 import de.jeisfeld.randomimage.util.SystemUtil;
+import de.jeisfeld.randomimage.util.ThumbnailStore;
 import de.jeisfeld.randomimage.view.PinchImageView;
 import de.jeisfeld.randomimage.view.PinchImageView.ScaleType;
 import de.jeisfeld.randomimage.view.PinchImageView.UpDownListener;
@@ -123,6 +126,16 @@ public class DisplayRandomImageActivity extends StartActivity {
 	 */
 	private static final SparseArray<DisplayRandomImageActivity> WIDGET_MAP = new SparseArray<>();
 
+	/**
+	 * The default number of images prefetched in flip direction.
+	 */
+	private static final int DEFAULT_PREFETCH_FORWARD_COUNT = 3;
+
+	/**
+	 * The default number of images prefetched against flip direction.
+	 */
+	private static final int DEFAULT_PREFETCH_BACKWARD_COUNT = 1;
+
 	/**
 	 * The name of the used image list.
 	 */
@@ -586,9 +599,6 @@ public class DisplayRandomImageActivity extends StartActivity {
 			windowInsetsController.show(WindowInsetsCompat.Type.systemBars() | WindowInsetsCompat.Type.displayCutout());
 		}
 		getWindow().getDecorView().setSystemUiVisibility(flag);
-		if (mCurrentImageView != null) {
-			mCurrentImageView.showFullResolutionSnapshot();
-		}
 	}
 
 	/**
@@ -605,6 +615,9 @@ public class DisplayRandomImageActivity extends StartActivity {
 			mCurrentImageView = createImageView(mCurrentFileName, mCurrentCacheIndex);
 			setContentView(mCurrentImageView);
 			mChangeByTimeoutHandler.start();
+			if (mRandomFileProvider.isReady()) {
+				prefetchImages();
+			}
 			if (mDoPreload && mRandomFileProvider.isReady()) {
 				mRandomFileProvider.goForward();
 				mNextFileName = mRandomFileProvider.getCurrentFileName();
@@ -737,6 +750,7 @@ public class DisplayRandomImageActivity extends StartActivity {
 	protected final void onDestroy() {
 		super.onDestroy();
 		mChangeByTimeoutHandler.stop();
+		ImagePrefetcher.release(this);
 		if (mNotificationId != null) {
 			NOTIFICATION_MAP.delete(mNotificationId);
 			if (!mSavingInstanceState) {
@@ -845,16 +859,34 @@ public class DisplayRandomImageActivity extends StartActivity {
 	 * @return the background color.
 	 */
 	private int getBackgroundColor(final String fileName) {
+		if (mBackgroundColor == BackgroundColor.COLOR_FROM_IMAGE || mBackgroundColor == BackgroundColor.AVERAGE_IMAGE_COLOR) {
+			Integer prefetchedColor = ImagePrefetcher.getColor(fileName);
+			if (prefetchedColor != null) {
+				return prefetchedColor;
+			}
+		}
+		return calculateBackgroundColor(fileName);
+	}
+
+	/**
+	 * Calculate the background color to be set.
+	 *
+	 * @param fileName The file for which to set the background.
+	 * @return the background color.
+	 */
+	private int calculateBackgroundColor(final String fileName) {
 		int backgroundColor;
 		switch (mBackgroundColor) {
 		case LIGHT:
 			backgroundColor = Color.WHITE;
 			break;
 		case COLOR_FROM_IMAGE:
-			backgroundColor = ImageAnalyzer.getColorFromImageBorder(ImageUtil.getImageBitmap(fileName, MediaStoreUtil.MINI_THUMB_SIZE));
+			ColorSignature borderSignature = ColorSignatureStore.getColorSignature(fileName);
+			backgroundColor = borderSignature == null ? Color.TRANSPARENT : borderSignature.getBorderColor();
 			break;
 		case AVERAGE_IMAGE_COLOR:
-			backgroundColor = ImageAnalyzer.getAverageImageColor(ImageUtil.getImageBitmap(fileName, MediaStoreUtil.MINI_THUMB_SIZE));
+			ColorSignature averageSignature = ColorSignatureStore.getColorSignature(fileName);
+			backgroundColor = averageSignature == null ? Color.TRANSPARENT : averageSignature.getAverageColor();
 			break;
 		case BLACK:
 			backgroundColor = Color.BLACK;
@@ -867,6 +899,36 @@ public class DisplayRandomImageActivity extends StartActivity {
 		return backgroundColor;
 	}
 
+	/**
+	 * Prefetch the images around the current image, so that they can be displayed without delay. Images in flip direction are
+	 * preferred over images against flip direction.
+	 */
+	private void prefetchImages() {
+		int forwardCount =
+				PreferenceUtil.getSharedPreferenceInt(R.string.key_pref_detail_prefetch_forward_count, DEFAULT_PREFETCH_FORWARD_COUNT);
+		int backwardCount =
+				PreferenceUtil.getSharedPreferenceInt(R.string.key_pref_detail_prefetch_backward_count, DEFAULT_PREFETCH_BACKWARD_COUNT);
+		List<String> nextFileNames = mRandomFileProvider.getUpcomingFileNames(forwardCount, mIsGoingBackward);
+		List<String> previousFileNames = mRandomFileProvider.getUpcomingFileNames(backwardCount, !mIsGoingBackward);
+
+		List<String> fileNames = new ArrayList<>();
+		for (int i = 0; i < Math.max(nextFileNames.size(), previousFileNames.size()); i++) {
+			if (i < nextFileNames.size()) {
+				fileNames.add(nextFileNames.get(i));
+			}
+			if (i < previousFileNames.size()) {
+				fileNames.add(previousFileNames.get(i));
+			}
+		}
+		fileNames.remove(mCurrentFileName);
+
+		boolean isColorFromImage =
+				mBackgroundColor == BackgroundColor.COLOR_FROM_IMAGE || mBackgroundColor == BackgroundColor.AVERAGE_IMAGE_COLOR;
+		ImagePrefetcher.prefetch(this, fileNames, PinchImageView.getMaxBitmapSize(),
+				isColorFromImage ? this::calculateBackgroundColor : null);
+		ThumbnailStore.generateThumbnails(fileNames);
+	}
+
 	/**
 	 * Display a random image.
 	 *
@@ -926,6 +988,7 @@ public class DisplayRandomImageActivity extends StartActivity {
 						mChangeByTimeoutHandler.stop();
 					}
 					mChangeByTimeoutHandler.start();
+					prefetchImages();
 
 					if (mDoPreload) {
 						if (mIsGoingBackward) {
@@ -980,6 +1043,7 @@ public class DisplayRandomImageActivity extends StartActivity {
 		else {
 			mRandomFileProvider.goForward();
 		}
+		prefetchImages();
 
 		if (mDoPreload) {
 			if (mIsGoingBackward) {
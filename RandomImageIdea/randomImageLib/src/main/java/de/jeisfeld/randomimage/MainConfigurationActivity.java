@@ -20,6 +20,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import androidx.annotation.RequiresApi;
 import de.jeisfeld.randomimage.DisplayImageListAdapter.ItemType;
@@ -566,10 +567,11 @@ public class MainConfigurationActivity extends DisplayImageListActivity {
 		new Thread() {
 			@Override
 			public void run() {
+				Map<String, String> backupFiles = ImageRegistry.backupImageLists(listsToBeBackedUp);
 				List<String> backedUpLists = new ArrayList<>();
 				String backupFolder = null;
 				for (String listName : listsToBeBackedUp) {
-					String backupFile = ImageRegistry.backupImageList(listName);
+					String backupFile = backupFiles.get(listName);
 					if (backupFile == null) {
 						DialogUtil.displayToast(MainConfigurationActivity.this, R.string.toast_failed_to_backup_list, listName);
 					}
@@ -656,13 +658,9 @@ public class MainConfigurationActivity extends DisplayImageListActivity {
 		new Thread() {
 			@Override
 			public void run() {
-				List<String> restoredLists = new ArrayList<>();
+				List<String> restoredLists = ImageRegistry.restoreImageLists(listsToBeRestored);
 				for (String listName : listsToBeRestored) {
-					boolean success = ImageRegistry.restoreImageList(listName);
-					if (success) {
-						restoredLists.add(listName);
-					}
-					else {
+					if (!restoredLists.contains(listName)) {
 						DialogUtil.displayToast(MainConfigurationActivity.this, R.string.toast_failed_to_backup_list, listName);
 					}
 				}
@@ -22,19 +22,20 @@ import android.widget.TextView;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
 
 import de.jeisfeld.randomimage.notifications.NotificationUtil;
+import de.jeisfeld.randomimage.util.CollationUtil;
 import de.jeisfeld.randomimage.util.DialogUtil;
 import de.jeisfeld.randomimage.util.DialogUtil.ConfirmDialogFragment.ConfirmDialogListener;
 import de.jeisfeld.randomimage.util.FileUtil;
 import de.jeisfeld.randomimage.util.ImageList;
 import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
 import de.jeisfeld.randomimage.util.MediaStoreUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
 import de.jeisfeld.randomimagelib.R;
@@ -306,7 +307,7 @@ public class SelectDirectoryActivity extends BaseActivity {
 			Log.e(Application.TAG, "Could not get directories", e);
 		}
 
-		Collections.sort(dirs, Collator.getInstance());
+		CollationUtil.sort(dirs);
 
 		return dirs;
 	}
@@ -621,7 +622,8 @@ public class SelectDirectoryActivity extends BaseActivity {
 			new Thread() {
 				@Override
 				public void run() {
-					final Bitmap bitmap = ImageUtil.getImageBitmap(mFileNames.get(position), MediaStoreUtil.MINI_THUMB_SIZE);
+					final Bitmap bitmap = ImageUtil.getImageBitmap(mFileNames.get(position), MediaStoreUtil.MINI_THUMB_SIZE,
+							BitmapUsage.THUMBNAIL);
 
 					try {
 						SelectDirectoryActivity.this.runOnUiThread(() -> imageView.setImageBitmap(bitmap));
@@ -28,8 +28,8 @@ import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageRegistry.ListFiltering;
 import de.jeisfeld.randomimage.util.ImageUtil;
 import de.jeisfeld.randomimage.util.ImageUtil.OnImageFoldersFoundListener;
-import de.jeisfeld.randomimage.util.MediaStoreUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
+import de.jeisfeld.randomimage.util.ThumbnailStore;
 import de.jeisfeld.randomimagelib.R;
 
 /**
@@ -344,12 +344,14 @@ public class SelectImageFolderActivity extends DisplayImageListActivity {
 					new Thread() {
 						@Override
 						public void run() {
+							List<String> folderImages = new ArrayList<>();
 							for (String imageFolder : imageFolders) {
 								List<String> images = ImageUtil.getImagesInFolder(imageFolder);
 								if (!images.isEmpty()) {
-									MediaStoreUtil.getThumbnailFromPath(images.get(0));
+									folderImages.add(images.get(0));
 								}
 							}
+							ThumbnailStore.generateThumbnails(folderImages);
 							PreferenceUtil.setSharedPreferenceLong(R.string.key_last_thumb_creation_time, System.currentTimeMillis());
 						}
 					}.start();
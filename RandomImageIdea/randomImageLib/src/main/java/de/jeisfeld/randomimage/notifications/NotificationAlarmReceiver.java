@@ -1,7 +1,5 @@
 package de.jeisfeld.randomimage.notifications;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 
@@ -13,7 +11,6 @@ import java.util.concurrent.TimeUnit;
 import de.jeisfeld.randomimage.Application;
 import de.jeisfeld.randomimage.util.AlarmReceiver;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
-import de.jeisfeld.randomimage.util.SystemUtil;
 import de.jeisfeld.randomimage.widgets.GenericWidget;
 import de.jeisfeld.randomimagelib.R;
 
@@ -105,10 +102,12 @@ public class NotificationAlarmReceiver extends AlarmReceiver {
 
 		double expectedDaysUntilAlarm = (double) frequency / (frequency < DAY_THRESHOLD ? dailyDuration : SECONDS_PER_DAY);
 
-		PendingIntent alarmIntent = createAlarmIntent(context, notificationId, false, true);
+		Intent alarmIntent = createAlarmIntent(context, notificationId, false);
 		Random random = new Random();
 
 		if (useLastAlarmTime) {
+			// Alarms are re-created after boot or app update - then remove alarms registered by previous app versions.
+			cancelLegacyAlarm(context, alarmIntent, getRequestCode(notificationId, false));
 			long oldAlarmTime = PreferenceUtil.getIndexedSharedPreferenceLong(R.string.key_notification_current_alarm_timestamp, notificationId, -1);
 
 			if (oldAlarmTime >= 0) {
@@ -271,7 +270,7 @@ public class NotificationAlarmReceiver extends AlarmReceiver {
 				PreferenceUtil.getIndexedSharedPreferenceInt(R.string.key_notification_duration_variance, notificationId, -1);
 		double duration = getRandomizedDuration(expectedDuration, timerVariance);
 
-		PendingIntent alarmIntent = createAlarmIntent(context, notificationId, true, true);
+		Intent alarmIntent = createAlarmIntent(context, notificationId, true);
 		long alarmTimeMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis((long) duration);
 
 		setAlarm(context, alarmTimeMillis, alarmIntent, getAlarmType(context, expectedDuration));
@@ -307,8 +306,7 @@ public class NotificationAlarmReceiver extends AlarmReceiver {
 	 * @param isCancellationAlarm flag indicating if the regular alarm or the cancellation alarm should be cancelled.
 	 */
 	public static void cancelAlarm(final Context context, final int notificationId, final boolean isCancellationAlarm) {
-		AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-		alarmMgr.cancel(createAlarmIntent(context, notificationId, isCancellationAlarm, false));
+		cancelAlarm(context, createAlarmIntent(context, notificationId, isCancellationAlarm), getRequestCode(notificationId, isCancellationAlarm));
 
 		if (!isCancellationAlarm) {
 			List<Integer> allNotificationIds = NotificationSettingsActivity.getNotificationIds();
@@ -320,26 +318,32 @@ public class NotificationAlarmReceiver extends AlarmReceiver {
 	}
 
 	/**
-	 * Create a PendingIntent which can be used for creating or cancelling an alarm for a notification.
+	 * Create an Intent which can be used for creating or cancelling an alarm for a notification.
 	 *
 	 * @param context        The context in which the alarm is set.
 	 * @param notificationId the notification id.
 	 * @param isCancellation flag indicating if the alarm should cancel the notification.
-	 * @param isNew          flag indicating if this is a new intent or if an existing intent should be reused.
-	 * @return The PendingIntent.
+	 * @return The Intent.
 	 */
-	private static PendingIntent createAlarmIntent(final Context context, final int notificationId,
-												   final boolean isCancellation, final boolean isNew) {
+	private static Intent createAlarmIntent(final Context context, final int notificationId, final boolean isCancellation) {
 		Intent intent = new Intent(context, NotificationAlarmReceiver.class);
 		intent.putExtra(STRING_NOTIFICATION_ID, notificationId);
 		intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
 		if (isCancellation) {
 			intent.putExtra(STRING_IS_CANCELLATION, true);
 		}
-		int uniqueId = isCancellation ? -notificationId : notificationId;
-		return PendingIntent.getBroadcast(context, uniqueId, intent,
-				isNew ? PendingIntent.FLAG_CANCEL_CURRENT | SystemUtil.IMMUTABLE_FLAG
-						: PendingIntent.FLAG_UPDATE_CURRENT | SystemUtil.IMMUTABLE_FLAG);
+		return intent;
+	}
+
+	/**
+	 * Get the request code used by previous app versions for the alarm PendingIntent of a notification.
+	 *
+	 * @param notificationId the notification id.
+	 * @param isCancellation flag indicating if the alarm should cancel the notification.
+	 * @return The request code.
+	 */
+	private static int getRequestCode(final int notificationId, final boolean isCancellation) {
+		return isCancellation ? -notificationId : notificationId;
 	}
 
 	/**
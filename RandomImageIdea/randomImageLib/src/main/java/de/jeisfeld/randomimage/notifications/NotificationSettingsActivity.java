@@ -18,6 +18,7 @@ import de.jeisfeld.randomimage.BasePreferenceActivity;
 import de.jeisfeld.randomimage.util.DialogUtil;
 import de.jeisfeld.randomimage.util.DialogUtil.ConfirmDialogFragment.ConfirmDialogListener;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
+import de.jeisfeld.randomimage.util.PreparedImageStore;
 import de.jeisfeld.randomimage.util.SystemUtil;
 import de.jeisfeld.randomimagelib.R;
 
@@ -316,6 +317,7 @@ public class NotificationSettingsActivity extends BasePreferenceActivity {
 	protected static void cancelNotification(final int notificationId) {
 		NotificationUtil.deleteImageNotificationChannels();
 		PreferenceUtil.removeIndexedSharedPreference(R.string.key_notification_list_name, notificationId);
+		PreparedImageStore.remove(NotificationUtil.getPreparationKey(notificationId));
 		PreferenceUtil.removeIndexedSharedPreference(R.string.key_notification_timer_duration, notificationId);
 		PreferenceUtil.removeIndexedSharedPreference(R.string.key_notification_timer_variance, notificationId);
 		PreferenceUtil.removeIndexedSharedPreference(R.string.key_notification_daily_start_time, notificationId);
@@ -41,8 +41,11 @@ import de.jeisfeld.randomimage.util.ImageList;
 import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageRegistry.ListFiltering;
 import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
 import de.jeisfeld.randomimage.util.MediaStoreUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
+import de.jeisfeld.randomimage.util.PreparedImageStore;
+import de.jeisfeld.randomimage.util.PreparedImageStore.PreparedImage;
 import de.jeisfeld.randomimage.util.SystemUtil;
 import de.jeisfeld.randomimagelib.R;
 
@@ -230,6 +233,20 @@ public final class NotificationUtil {
 			return;
 		}
 		final String listName = PreferenceUtil.getIndexedSharedPreferenceString(R.string.key_notification_list_name, notificationId);
+
+		// Publish the image prepared after the previous notification, if available.
+		String specification = getPreparationSpecification(notificationId);
+		PreparedImage preparedImage = PreparedImageStore.takePreparedImage(getPreparationKey(notificationId), listName, specification);
+		if (preparedImage != null) {
+			try {
+				doDisplayRandomImageNotification(context, notificationId, listName, preparedImage.getFileName(), preparedImage, null);
+				return;
+			}
+			catch (Exception e) {
+				Log.e(Application.TAG, "Failed to publish prepared notification for list " + listName, e);
+			}
+		}
+
 		final ImageList imageList = ImageRegistry.getImageListByName(listName, false);
 		if (imageList == null) {
 			// Fatal error - it does not make sense to re-create the alarm.
@@ -238,7 +255,7 @@ public final class NotificationUtil {
 		imageList.executeWhenReady(null,
 				() -> {
 					try {
-						doDisplayRandomImageNotification(context, notificationId, listName, imageList);
+						doDisplayRandomImageNotification(context, notificationId, listName, imageList.getRandomFileName(), null, imageList);
 					}
 					catch (Exception e) {
 						// In case of error, trigger new alarm.
@@ -269,11 +286,13 @@ public final class NotificationUtil {
 	 * @param context        the current activity or context
 	 * @param notificationId the id of the configured notification.
 	 * @param listName       the name of the image list
-	 * @param imageList      the image list
+	 * @param fileName       the file name of the image to be displayed
+	 * @param preparedImage  the prepared image, if available
+	 * @param imageList      the image list, if already loaded
 	 */
-	private static void doDisplayRandomImageNotification(final Context context, final int notificationId,
-														 final String listName, final ImageList imageList) {
-		String fileName = imageList.getRandomFileName();
+	private static void doDisplayRandomImageNotification(final Context context, final int notificationId, final String listName,
+														 final String fileName, final PreparedImage preparedImage,
+														 final ImageList imageList) {
 		if (fileName == null) {
 			// This is typically a temporary error - therefore re-create the alarm.
 			NotificationAlarmReceiver.setAlarm(context, notificationId, false);
@@ -325,6 +344,7 @@ public final class NotificationUtil {
 				}
 			}
 			NotificationAlarmReceiver.setCancellationAlarm(context, notificationId, false);
+			prepareNextImage(notificationId, listName, imageList);
 			return;
 		}
 
@@ -344,7 +364,10 @@ public final class NotificationUtil {
 
 		notificationBuilder.setCategory(Notification.CATEGORY_ALARM);
 
-		Bitmap bitmap = ImageUtil.getImageBitmap(fileName, MediaStoreUtil.MINI_THUMB_SIZE);
+		Bitmap bitmap = preparedImage == null ? null : preparedImage.getBitmap(0);
+		if (bitmap == null) {
+			bitmap = ImageUtil.getImageBitmap(fileName, MediaStoreUtil.MINI_THUMB_SIZE, BitmapUsage.REMOTE);
+		}
 		String title = PreferenceUtil.getIndexedSharedPreferenceString(R.string.key_notification_display_name, notificationId);
 		if (title == null || title.isEmpty()) {
 			title = listName;
@@ -380,8 +403,10 @@ public final class NotificationUtil {
 			}
 		}
 		else {
-			Bitmap iconBitmap = ImageUtil.getBitmapOfExactSize(fileName,
-					NOTIFICATION_LARGE_ICON_WIDTH, NOTIFICATION_LARGE_ICON_HEIGHT, 0);
+			Bitmap iconBitmap = preparedImage == null ? null : preparedImage.getBitmap(1);
+			if (iconBitmap == null) {
+				iconBitmap = ImageUtil.getBitmapOfExactSize(fileName, NOTIFICATION_LARGE_ICON_WIDTH, NOTIFICATION_LARGE_ICON_HEIGHT, 0);
+			}
 
 			notificationBuilder.setContentTitle(title).setLargeIcon(iconBitmap).setStyle(new BigPictureStyle().bigPicture(bitmap));
 
@@ -420,6 +445,55 @@ public final class NotificationUtil {
 		sendNotificationBroadcast(context, listName, fileName, notificationStyle, isVibrate);
 
 		NotificationAlarmReceiver.setCancellationAlarm(context, notificationId, false);
+		prepareNextImage(notificationId, listName, imageList);
+	}
+
+	/**
+	 * Prepare the image for the next scheduled notification in the background.
+	 *
+	 * @param notificationId the id of the configured notification.
+	 * @param listName       the name of the image list
+	 * @param imageList      the image list, if already loaded. Otherwise null.
+	 */
+	private static void prepareNextImage(final int notificationId, final String listName, final ImageList imageList) {
+		if (PreferenceUtil.getIndexedSharedPreferenceLong(R.string.key_notification_timer_duration, notificationId, 0) <= 0) {
+			return;
+		}
+		final int notificationStyle = PreferenceUtil.getIndexedSharedPreferenceInt(R.string.key_notification_style, notificationId, -1);
+		PreparedImageStore.prepareNextImage(getPreparationKey(notificationId), listName, imageList,
+				getPreparationSpecification(notificationId), fileName -> {
+					if (isActivityNotificationStyle(notificationStyle)) {
+						// The activity decodes the image itself.
+						return new Bitmap[0];
+					}
+					Bitmap bitmap = ImageUtil.getImageBitmap(fileName, MediaStoreUtil.MINI_THUMB_SIZE, BitmapUsage.REMOTE);
+					if (notificationStyle == NOTIFICATION_STYLE_SPECIAL_NOTIFICATION) {
+						return new Bitmap[]{bitmap};
+					}
+					return new Bitmap[]{bitmap,
+							ImageUtil.getBitmapOfExactSize(fileName, NOTIFICATION_LARGE_ICON_WIDTH, NOTIFICATION_LARGE_ICON_HEIGHT, 0)};
+				});
+	}
+
+	/**
+	 * Get the key under which the next image of a notification is prepared.
+	 *
+	 * @param notificationId the id of the configured notification.
+	 * @return The key.
+	 */
+	protected static String getPreparationKey(final int notificationId) {
+		return "notification" + notificationId;
+	}
+
+	/**
+	 * Get the specification of the bitmaps prepared for a notification.
+	 *
+	 * @param notificationId the id of the configured notification.
+	 * @return The specification.
+	 */
+	private static String getPreparationSpecification(final int notificationId) {
+		return PreferenceUtil.getIndexedSharedPreferenceInt(R.string.key_notification_style, notificationId, -1) + "|"
+				+ MediaStoreUtil.MINI_THUMB_SIZE + "|" + NOTIFICATION_LARGE_ICON_WIDTH + "x" + NOTIFICATION_LARGE_ICON_HEIGHT;
 	}
 
 	/**
@@ -1,16 +1,16 @@
 package de.jeisfeld.randomimage.util;
 
 import android.app.AlarmManager;
-import android.app.AlarmManager.AlarmClockInfo;
 import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 
 import de.jeisfeld.randomimage.SdMountReceiver;
+import de.jeisfeld.randomimage.util.AlarmScheduler.AlarmType;
 
 /**
  * Receiver for the alarm triggering the update of the image widget.
@@ -34,32 +34,53 @@ public abstract class AlarmReceiver extends BroadcastReceiver {
 	 *
 	 * @param context     The context
 	 * @param alarmTime   The alarm time
-	 * @param alarmIntent The alarm intent
+	 * @param alarmIntent The intent to be broadcast by the alarm
 	 * @param alarmType   flag indicating if the alarm time should be exact.
 	 */
-	protected static void setAlarm(final Context context, final long alarmTime, final PendingIntent alarmIntent, final AlarmType alarmType) {
-		AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-		if (VERSION.SDK_INT >= VERSION_CODES.M) {
-			switch (alarmType) {
-			case CLOCK:
-				alarmMgr.setAlarmClock(new AlarmClockInfo(alarmTime, alarmIntent), alarmIntent);
-				break;
-			case EXACT:
-				alarmMgr.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
-				break;
-			case INEXACT:
-			default:
-				alarmMgr.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
-				break;
-			}
-		}
-		else {
-			if (alarmType != AlarmType.INEXACT) {
-				alarmMgr.setExact(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
-			}
-			else {
-				alarmMgr.set(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
-			}
+	protected static void setAlarm(final Context context, final long alarmTime, final Intent alarmIntent, final AlarmType alarmType) {
+		AlarmScheduler.schedule(context, alarmIntent, alarmTime, 0, alarmType);
+	}
+
+	/**
+	 * Set a repeating inexact alarm.
+	 *
+	 * @param context     The context
+	 * @param alarmTime   The time of the first alarm
+	 * @param interval    The interval in milliseconds
+	 * @param alarmIntent The intent to be broadcast by the alarm
+	 * @param isWakeup    flag indicating if the alarm should wake up the device. The device is not woken up from idle mode.
+	 */
+	protected static void setRepeatingAlarm(final Context context, final long alarmTime, final long interval, final Intent alarmIntent,
+											final boolean isWakeup) {
+		AlarmScheduler.schedule(context, alarmIntent, alarmTime, interval, isWakeup ? AlarmType.INEXACT_DEFERRABLE : AlarmType.NON_WAKEUP);
+	}
+
+	/**
+	 * Cancel an alarm.
+	 *
+	 * @param context     The context
+	 * @param alarmIntent The intent to be broadcast by the alarm
+	 * @param requestCode The request code used by previous app versions when registering the alarm directly.
+	 */
+	protected static void cancelAlarm(final Context context, final Intent alarmIntent, final int requestCode) {
+		AlarmScheduler.cancel(context, alarmIntent);
+		cancelLegacyAlarm(context, alarmIntent, requestCode);
+	}
+
+	/**
+	 * Cancel an alarm which has been registered directly at the AlarmManager by previous app versions.
+	 *
+	 * @param context     The context
+	 * @param alarmIntent The intent to be broadcast by the alarm
+	 * @param requestCode The request code of the alarm.
+	 */
+	protected static void cancelLegacyAlarm(final Context context, final Intent alarmIntent, final int requestCode) {
+		PendingIntent pendingIntent = PendingIntent.getBroadcast(context, requestCode, alarmIntent,
+				PendingIntent.FLAG_NO_CREATE | SystemUtil.IMMUTABLE_FLAG);
+		if (pendingIntent != null) {
+			AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+			alarmMgr.cancel(pendingIntent);
+			pendingIntent.cancel();
 		}
 	}
 
@@ -103,22 +124,4 @@ public abstract class AlarmReceiver extends BroadcastReceiver {
 				PackageManager.DONT_KILL_APP);
 
 	}
-
-	/**
-	 * The type of alarm to be set.
-	 */
-	private enum AlarmType {
-		/**
-		 * Inexact alarm.
-		 */
-		INEXACT,
-		/**
-		 * Exact alarm.
-		 */
-		EXACT,
-		/**
-		 * Clock alarm.
-		 */
-		CLOCK
-	}
 }
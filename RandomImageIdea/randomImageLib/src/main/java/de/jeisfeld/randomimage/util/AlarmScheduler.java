@@ -0,0 +1,496 @@
+package de.jeisfeld.randomimage.util;
+
+import android.app.AlarmManager;
+import android.app.AlarmManager.AlarmClockInfo;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import de.jeisfeld.randomimage.Application;
+
+/**
+ * Central scheduler for the alarms of widgets and notifications. The due times of all alarms are kept in one persistent priority
+ * queue, and per alarm class only the next due alarm is registered at the AlarmManager. When it fires, all alarms which are due within
+ * a tolerance window are processed together, by calling their target receivers directly within the alarm delivery. The processing is
+ * done on a background thread, while the alarm delivery is kept open.
+ */
+public class AlarmScheduler extends BroadcastReceiver {
+	/**
+	 * The version of the queue file format.
+	 */
+	private static final int QUEUE_VERSION = 1;
+
+	/**
+	 * The name of the queue file.
+	 */
+	private static final String QUEUE_FILE_NAME = "alarms.dat";
+
+	/**
+	 * The suffix of the temporary queue file.
+	 */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The resource key for the alarm class of the system alarm.
+	 */
+	private static final String STRING_ALARM_CLASS = "de.jeisfeld.randomimage.ALARM_CLASS";
+
+	/**
+	 * The number of alarm classes, each using its own system alarm.
+	 */
+	private static final int ALARM_CLASS_COUNT = 4;
+
+	/**
+	 * The time window (in milliseconds) within which exact alarms are processed before being due.
+	 */
+	private static final long EXACT_TOLERANCE = TimeUnit.SECONDS.toMillis(1);
+
+	/**
+	 * The time window (in milliseconds) within which inexact alarms are processed before being due.
+	 */
+	private static final long INEXACT_TOLERANCE = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * Lock for access to the queue.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * The times of the system alarms registered by this process, by alarm class. 0 if no alarm is registered.
+	 */
+	private static final long[] ARMED_TIMES = new long[ALARM_CLASS_COUNT];
+
+	/**
+	 * The types of the system alarms registered by this process, by alarm class.
+	 */
+	private static final AlarmType[] ARMED_TYPES = new AlarmType[ALARM_CLASS_COUNT];
+
+	/**
+	 * The handler of the thread processing the due alarms. The thread has a looper, as the receivers may post callbacks to their thread.
+	 */
+	private static Handler mDispatchHandler = null;
+
+	@Override
+	public final void onReceive(final Context context, final Intent intent) {
+		// Keep the alarm delivery open, so that the work is done while the alarm wakelock is held.
+		final PendingResult pendingResult = goAsync();
+		getDispatchHandler().post(() -> {
+			try {
+				processDueAlarms(context, intent);
+			}
+			finally {
+				pendingResult.finish();
+			}
+		});
+	}
+
+	/**
+	 * Get the handler of the thread processing the due alarms. The thread is started on first usage.
+	 *
+	 * @return The handler.
+	 */
+	private static Handler getDispatchHandler() {
+		synchronized (LOCK) {
+			if (mDispatchHandler == null) {
+				HandlerThread dispatchThread = new HandlerThread("AlarmScheduler");
+				dispatchThread.start();
+				mDispatchHandler = new Handler(dispatchThread.getLooper());
+			}
+			return mDispatchHandler;
+		}
+	}
+
+	/**
+	 * Process the alarms which are due, and register the system alarms for the next ones.
+	 *
+	 * @param context The context.
+	 * @param intent  The intent of the system alarm.
+	 */
+	private static void processDueAlarms(final Context context, final Intent intent) {
+		List<String> dueIntentUris = new ArrayList<>();
+		synchronized (LOCK) {
+			int alarmClass = intent.getIntExtra(STRING_ALARM_CLASS, -1);
+			if (alarmClass >= 0 && alarmClass < ALARM_CLASS_COUNT) {
+				ARMED_TIMES[alarmClass] = 0;
+			}
+
+			long now = System.currentTimeMillis();
+			PriorityQueue<AlarmEntry> queue = loadQueue();
+			List<AlarmEntry> remainingEntries = new ArrayList<>();
+			while (!queue.isEmpty() && queue.peek().mDueTime <= now + INEXACT_TOLERANCE) {
+				AlarmEntry entry = queue.poll();
+				if (entry.mDueTime > now + entry.getTolerance()) {
+					remainingEntries.add(entry);
+					continue;
+				}
+				dueIntentUris.add(entry.mIntentUri);
+				if (entry.mInterval > 0) {
+					entry.mDueTime += ((now - entry.mDueTime) / entry.mInterval + 1) * entry.mInterval;
+					remainingEntries.add(entry);
+				}
+			}
+			queue.addAll(remainingEntries);
+			saveQueue(queue);
+			arm(context, queue);
+		}
+
+		for (String intentUri : dueIntentUris) {
+			try {
+				dispatch(context, Intent.parseUri(intentUri, 0));
+			}
+			catch (URISyntaxException e) {
+				Log.w(Application.TAG, "Invalid alarm intent " + intentUri, e);
+			}
+			catch (RuntimeException e) {
+				Log.e(Application.TAG, "Failed to process alarm intent " + intentUri, e);
+			}
+		}
+	}
+
+	/**
+	 * Dispatch the intent of a due alarm by calling the target receiver directly within the current alarm delivery. If the receiver
+	 * cannot be instantiated, the intent is broadcast instead.
+	 *
+	 * @param context The context.
+	 * @param intent  The intent.
+	 */
+	private static void dispatch(final Context context, final Intent intent) {
+		ComponentName component = intent.getComponent();
+		if (component != null) {
+			try {
+				BroadcastReceiver receiver = Class.forName(component.getClassName()).asSubclass(BroadcastReceiver.class)
+						.getDeclaredConstructor().newInstance();
+				receiver.onReceive(context, intent);
+				return;
+			}
+			catch (ReflectiveOperationException | ClassCastException e) {
+				Log.w(Application.TAG, "Cannot instantiate alarm receiver " + component.getClassName(), e);
+			}
+		}
+		context.sendBroadcast(intent);
+	}
+
+	/**
+	 * Schedule an alarm. An existing alarm with the same intent is replaced.
+	 *
+	 * @param context   The context.
+	 * @param intent    The intent to be broadcast when the alarm is due. Alarms are identified by their intent.
+	 * @param dueTime   The due time.
+	 * @param interval  The interval for repeating alarms. 0 for one-time alarms.
+	 * @param alarmType The type of the alarm.
+	 */
+	static void schedule(final Context context, final Intent intent, final long dueTime, final long interval, final AlarmType alarmType) {
+		synchronized (LOCK) {
+			String intentUri = intent.toUri(0);
+			PriorityQueue<AlarmEntry> queue = loadQueue();
+			removeEntry(queue, intentUri);
+			queue.add(new AlarmEntry(intentUri, dueTime, interval, alarmType));
+			saveQueue(queue);
+			arm(context, queue);
+		}
+	}
+
+	/**
+	 * Cancel an alarm.
+	 *
+	 * @param context The context.
+	 * @param intent  The intent of the alarm.
+	 */
+	static void cancel(final Context context, final Intent intent) {
+		synchronized (LOCK) {
+			PriorityQueue<AlarmEntry> queue = loadQueue();
+			if (removeEntry(queue, intent.toUri(0))) {
+				saveQueue(queue);
+				arm(context, queue);
+			}
+		}
+	}
+
+	/**
+	 * Remove the entry with the given intent from the queue.
+	 *
+	 * @param queue     The queue.
+	 * @param intentUri The URI of the intent.
+	 * @return true if an entry has been removed.
+	 */
+	private static boolean removeEntry(final PriorityQueue<AlarmEntry> queue, final String intentUri) {
+		Iterator<AlarmEntry> iterator = queue.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().mIntentUri.equals(intentUri)) {
+				iterator.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Register the system alarms for the next due entry of each alarm class, if not yet done. Must be called within the lock.
+	 *
+	 * @param context The context.
+	 * @param queue   The queue.
+	 */
+	private static void arm(final Context context, final PriorityQueue<AlarmEntry> queue) {
+		AlarmEntry[] nextEntries = new AlarmEntry[ALARM_CLASS_COUNT];
+		for (AlarmEntry entry : queue) {
+			int alarmClass = entry.getAlarmClass();
+			if (nextEntries[alarmClass] == null || entry.mDueTime < nextEntries[alarmClass].mDueTime) {
+				nextEntries[alarmClass] = entry;
+			}
+		}
+
+		AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		for (int alarmClass = 0; alarmClass < ALARM_CLASS_COUNT; alarmClass++) {
+			AlarmEntry nextEntry = nextEntries[alarmClass];
+			if (nextEntry == null) {
+				if (ARMED_TIMES[alarmClass] != 0) {
+					alarmMgr.cancel(createAlarmIntent(context, alarmClass));
+					ARMED_TIMES[alarmClass] = 0;
+				}
+			}
+			else if (nextEntry.mDueTime != ARMED_TIMES[alarmClass] || nextEntry.mAlarmType != ARMED_TYPES[alarmClass]) {
+				setSystemAlarm(alarmMgr, nextEntry.mDueTime, createAlarmIntent(context, alarmClass), nextEntry.mAlarmType);
+				ARMED_TIMES[alarmClass] = nextEntry.mDueTime;
+				ARMED_TYPES[alarmClass] = nextEntry.mAlarmType;
+			}
+		}
+	}
+
+	/**
+	 * Register an alarm at the AlarmManager.
+	 *
+	 * @param alarmMgr    The AlarmManager.
+	 * @param alarmTime   The alarm time
+	 * @param alarmIntent The alarm intent
+	 * @param alarmType   flag indicating if the alarm time should be exact.
+	 */
+	private static void setSystemAlarm(final AlarmManager alarmMgr, final long alarmTime, final PendingIntent alarmIntent,
+									   final AlarmType alarmType) {
+		if (alarmType == AlarmType.NON_WAKEUP) {
+			alarmMgr.set(AlarmManager.RTC, alarmTime, alarmIntent);
+		}
+		else if (VERSION.SDK_INT >= VERSION_CODES.M) {
+			switch (alarmType) {
+			case CLOCK:
+				alarmMgr.setAlarmClock(new AlarmClockInfo(alarmTime, alarmIntent), alarmIntent);
+				break;
+			case EXACT:
+				alarmMgr.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
+				break;
+			case INEXACT_DEFERRABLE:
+				alarmMgr.set(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
+				break;
+			case INEXACT:
+			default:
+				alarmMgr.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
+				break;
+			}
+		}
+		else {
+			if (alarmType == AlarmType.CLOCK || alarmType == AlarmType.EXACT) {
+				alarmMgr.setExact(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
+			}
+			else {
+				alarmMgr.set(AlarmManager.RTC_WAKEUP, alarmTime, alarmIntent);
+			}
+		}
+	}
+
+	/**
+	 * Create the PendingIntent of the system alarm of an alarm class.
+	 *
+	 * @param context    The context.
+	 * @param alarmClass The alarm class.
+	 * @return The PendingIntent.
+	 */
+	private static PendingIntent createAlarmIntent(final Context context, final int alarmClass) {
+		Intent intent = new Intent(context, AlarmScheduler.class);
+		intent.putExtra(STRING_ALARM_CLASS, alarmClass);
+		intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
+		return PendingIntent.getBroadcast(context, alarmClass, intent, PendingIntent.FLAG_UPDATE_CURRENT | SystemUtil.IMMUTABLE_FLAG);
+	}
+
+	/**
+	 * Load the queue from the queue file. Must be called within the lock.
+	 *
+	 * @return The queue.
+	 */
+	private static PriorityQueue<AlarmEntry> loadQueue() {
+		PriorityQueue<AlarmEntry> queue = new PriorityQueue<>();
+		File queueFile = getFile(QUEUE_FILE_NAME);
+		if (!queueFile.exists()) {
+			return queue;
+		}
+		try (DataInputStream queueStream = new DataInputStream(new BufferedInputStream(new FileInputStream(queueFile)))) {
+			if (queueStream.readInt() != QUEUE_VERSION) {
+				return queue;
+			}
+			int size = queueStream.readInt();
+			for (int i = 0; i < size; i++) {
+				String intentUri = queueStream.readUTF();
+				long dueTime = queueStream.readLong();
+				long interval = queueStream.readLong();
+				queue.add(new AlarmEntry(intentUri, dueTime, interval, AlarmType.values()[queueStream.readInt()]));
+			}
+		}
+		catch (IOException | ArrayIndexOutOfBoundsException e) {
+			Log.w(Application.TAG, "Failed to read alarm queue", e);
+		}
+		return queue;
+	}
+
+	/**
+	 * Save the queue to the queue file. Must be called within the lock.
+	 *
+	 * @param queue The queue.
+	 */
+	private static void saveQueue(final PriorityQueue<AlarmEntry> queue) {
+		File tempQueueFile = getFile(QUEUE_FILE_NAME + TEMP_SUFFIX);
+		try (DataOutputStream queueStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempQueueFile)))) {
+			queueStream.writeInt(QUEUE_VERSION);
+			queueStream.writeInt(queue.size());
+			for (AlarmEntry entry : queue) {
+				queueStream.writeUTF(entry.mIntentUri);
+				queueStream.writeLong(entry.mDueTime);
+				queueStream.writeLong(entry.mInterval);
+				queueStream.writeInt(entry.mAlarmType.ordinal());
+			}
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to write alarm queue", e);
+			return;
+		}
+		if (!tempQueueFile.renameTo(getFile(QUEUE_FILE_NAME))) {
+			Log.w(Application.TAG, "Failed to store alarm queue");
+		}
+	}
+
+	/**
+	 * Get a file of the scheduler.
+	 *
+	 * @param name The file name.
+	 * @return The file.
+	 */
+	private static File getFile(final String name) {
+		return new File(Application.getAppContext().getFilesDir(), name);
+	}
+
+	/**
+	 * An entry of the alarm queue.
+	 */
+	private static final class AlarmEntry implements Comparable<AlarmEntry> {
+		/**
+		 * The URI of the intent to be broadcast.
+		 */
+		private final String mIntentUri;
+		/**
+		 * The due time.
+		 */
+		private long mDueTime;
+		/**
+		 * The interval for repeating alarms. 0 for one-time alarms.
+		 */
+		private final long mInterval;
+		/**
+		 * The type of the alarm.
+		 */
+		private final AlarmType mAlarmType;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param intentUri The URI of the intent to be broadcast.
+		 * @param dueTime   The due time.
+		 * @param interval  The interval for repeating alarms. 0 for one-time alarms.
+		 * @param alarmType The type of the alarm.
+		 */
+		private AlarmEntry(final String intentUri, final long dueTime, final long interval, final AlarmType alarmType) {
+			mIntentUri = intentUri;
+			mDueTime = dueTime;
+			mInterval = interval;
+			mAlarmType = alarmType;
+		}
+
+		/**
+		 * Get the alarm class, determining the system alarm used for this entry.
+		 *
+		 * @return The alarm class.
+		 */
+		private int getAlarmClass() {
+			switch (mAlarmType) {
+			case CLOCK:
+			case EXACT:
+				return 0;
+			case INEXACT:
+				return 1;
+			case INEXACT_DEFERRABLE:
+				return 3; // MAGIC_NUMBER
+			case NON_WAKEUP:
+			default:
+				return 2;
+			}
+		}
+
+		/**
+		 * Get the time window within which this entry may be processed before being due.
+		 *
+		 * @return The tolerance in milliseconds.
+		 */
+		private long getTolerance() {
+			return getAlarmClass() == 0 ? EXACT_TOLERANCE : INEXACT_TOLERANCE;
+		}
+
+		@Override
+		public int compareTo(final AlarmEntry other) {
+			return Long.compare(mDueTime, other.mDueTime);
+		}
+	}
+
+	/**
+	 * The type of alarm to be set.
+	 */
+	enum AlarmType {
+		/**
+		 * Inexact alarm.
+		 */
+		INEXACT,
+		/**
+		 * Exact alarm.
+		 */
+		EXACT,
+		/**
+		 * Clock alarm.
+		 */
+		CLOCK,
+		/**
+		 * Inexact alarm which does not wake up the device.
+		 */
+		NON_WAKEUP,
+		/**
+		 * Inexact alarm which wakes up the device, but is deferred while the device is idle.
+		 */
+		INEXACT_DEFERRABLE
+	}
+}
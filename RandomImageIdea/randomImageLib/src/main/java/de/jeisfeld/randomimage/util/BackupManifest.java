@@ -0,0 +1,269 @@
+package de.jeisfeld.randomimage.util;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.jeisfeld.randomimage.Application;
+
+/**
+ * Manifest of the image list backups made by this app. For each backup folder and list, it stores the backup file name together with
+ * modification time and content hash of the config file at backup time. This allows to skip the backup of unchanged lists without
+ * opening their backup files.
+ */
+final class BackupManifest {
+	/**
+	 * The version of the manifest file format.
+	 */
+	private static final int MANIFEST_VERSION = 1;
+
+	/**
+	 * The name of the manifest file.
+	 */
+	private static final String MANIFEST_FILE_NAME = "backup_manifest.dat";
+
+	/**
+	 * The suffix of the temporary manifest file.
+	 */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The algorithm used for content hashes.
+	 */
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	/**
+	 * The digits used for hex strings.
+	 */
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * The manifest entries, by backup folder and list name. Null if not yet loaded.
+	 */
+	private static Map<String, ManifestEntry> mEntries = null;
+
+	/**
+	 * Flag indicating if the entries have been changed since the last save.
+	 */
+	private static boolean mIsDirty = false;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private BackupManifest() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the backup file name of a list if its backup is up to date. This is the case if the backup file still exists and the config
+	 * file has the same modification time or the same content as at backup time.
+	 *
+	 * @param backupFolderId    An identifier of the backup folder.
+	 * @param listName          The list name.
+	 * @param configFile        The config file of the list.
+	 * @param existingFileNames The names of the files existing in the backup folder.
+	 * @return The backup file name if the backup is up to date, otherwise null.
+	 */
+	static synchronized String getUpToDateBackupFileName(final String backupFolderId, final String listName, final File configFile,
+														 final Set<String> existingFileNames) {
+		ManifestEntry entry = getEntries().get(getKey(backupFolderId, listName));
+		if (entry == null || !existingFileNames.contains(entry.mBackupFileName)) {
+			return null;
+		}
+		long lastModified = configFile.lastModified();
+		if (lastModified == entry.mLastModified) {
+			return entry.mBackupFileName;
+		}
+		String contentHash = getContentHash(configFile);
+		if (contentHash != null && contentHash.equals(entry.mContentHash)) {
+			// Saved without change of content.
+			entry.mLastModified = lastModified;
+			mIsDirty = true;
+			return entry.mBackupFileName;
+		}
+		return null;
+	}
+
+	/**
+	 * Register the backup of a list.
+	 *
+	 * @param backupFolderId An identifier of the backup folder.
+	 * @param listName       The list name.
+	 * @param configFile     The config file of the list.
+	 * @param backupFileName The name of the backup file.
+	 */
+	static synchronized void registerBackup(final String backupFolderId, final String listName, final File configFile,
+											final String backupFileName) {
+		String contentHash = getContentHash(configFile);
+		if (contentHash == null) {
+			removeBackup(backupFolderId, listName);
+		}
+		else {
+			getEntries().put(getKey(backupFolderId, listName), new ManifestEntry(backupFileName, configFile.lastModified(), contentHash));
+			mIsDirty = true;
+		}
+	}
+
+	/**
+	 * Remove the registration of the backup of a list.
+	 *
+	 * @param backupFolderId An identifier of the backup folder.
+	 * @param listName       The list name.
+	 */
+	static synchronized void removeBackup(final String backupFolderId, final String listName) {
+		if (getEntries().remove(getKey(backupFolderId, listName)) != null) {
+			mIsDirty = true;
+		}
+	}
+
+	/**
+	 * Save the manifest, if changed.
+	 */
+	static synchronized void save() {
+		if (!mIsDirty) {
+			return;
+		}
+		File tempManifestFile = getFile(MANIFEST_FILE_NAME + TEMP_SUFFIX);
+		try (DataOutputStream manifestStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempManifestFile)))) {
+			manifestStream.writeInt(MANIFEST_VERSION);
+			manifestStream.writeInt(mEntries.size());
+			for (Map.Entry<String, ManifestEntry> entry : mEntries.entrySet()) {
+				manifestStream.writeUTF(entry.getKey());
+				manifestStream.writeUTF(entry.getValue().mBackupFileName);
+				manifestStream.writeLong(entry.getValue().mLastModified);
+				manifestStream.writeUTF(entry.getValue().mContentHash);
+			}
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to write backup manifest", e);
+			return;
+		}
+		if (tempManifestFile.renameTo(getFile(MANIFEST_FILE_NAME))) {
+			mIsDirty = false;
+		}
+		else {
+			Log.w(Application.TAG, "Failed to store backup manifest");
+		}
+	}
+
+	/**
+	 * Get the manifest entries, loading them if required.
+	 *
+	 * @return The manifest entries.
+	 */
+	private static Map<String, ManifestEntry> getEntries() {
+		if (mEntries == null) {
+			mEntries = new HashMap<>();
+			File manifestFile = getFile(MANIFEST_FILE_NAME);
+			if (manifestFile.exists()) {
+				try (DataInputStream manifestStream = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+					if (manifestStream.readInt() == MANIFEST_VERSION) {
+						int size = manifestStream.readInt();
+						for (int i = 0; i < size; i++) {
+							String key = manifestStream.readUTF();
+							String backupFileName = manifestStream.readUTF();
+							long lastModified = manifestStream.readLong();
+							mEntries.put(key, new ManifestEntry(backupFileName, lastModified, manifestStream.readUTF()));
+						}
+					}
+				}
+				catch (IOException e) {
+					Log.w(Application.TAG, "Failed to read backup manifest", e);
+					mEntries.clear();
+				}
+			}
+		}
+		return mEntries;
+	}
+
+	/**
+	 * Get the key of a manifest entry.
+	 *
+	 * @param backupFolderId An identifier of the backup folder.
+	 * @param listName       The list name.
+	 * @return The key.
+	 */
+	private static String getKey(final String backupFolderId, final String listName) {
+		return backupFolderId + "\n" + listName;
+	}
+
+	/**
+	 * Get the content hash of a file.
+	 *
+	 * @param file The file.
+	 * @return The content hash as hex string, or null if it cannot be determined.
+	 */
+	private static String getContentHash(final File file) {
+		try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			byte[] buffer = new byte[4096]; // MAGIC_NUMBER
+			int bytesRead;
+			while ((bytesRead = inputStream.read(buffer)) != -1) {
+				digest.update(buffer, 0, bytesRead);
+			}
+			StringBuilder hash = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hash.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]); // MAGIC_NUMBER
+			}
+			return hash.toString();
+		}
+		catch (IOException | NoSuchAlgorithmException e) {
+			Log.w(Application.TAG, "Failed to determine content hash of " + file.getAbsolutePath(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Get a file of the manifest.
+	 *
+	 * @param name The file name.
+	 * @return The file.
+	 */
+	private static File getFile(final String name) {
+		return new File(Application.getAppContext().getFilesDir(), name);
+	}
+
+	/**
+	 * An entry of the manifest.
+	 */
+	private static final class ManifestEntry {
+		/**
+		 * The name of the backup file.
+		 */
+		private final String mBackupFileName;
+		/**
+		 * The modification time of the config file at backup time.
+		 */
+		private long mLastModified;
+		/**
+		 * The content hash of the config file at backup time.
+		 */
+		private final String mContentHash;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param backupFileName The name of the backup file.
+		 * @param lastModified   The modification time of the config file at backup time.
+		 * @param contentHash    The content hash of the config file at backup time.
+		 */
+		private ManifestEntry(final String backupFileName, final long lastModified, final String contentHash) {
+			mBackupFileName = backupFileName;
+			mLastModified = lastModified;
+			mContentHash = contentHash;
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package de.jeisfeld.randomimage.util;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
+
+/**
+ * Process-wide memory cache of decoded bitmaps, bounded by the byte size of the bitmaps. Entries are keyed by file path, last
+ * modification date, requested size and bitmap usage, so that changed files are not served from cache. Requests may also be served
+ * by downscaling a larger cached bitmap of the same file and usage.
+ *
+ * <p>Cached bitmaps are shared between callers and must not be recycled or modified.
+ */
+public final class BitmapCache {
+	/**
+	 * The fraction of the large memory class to be used for the cache.
+	 */
+	private static final int MEMORY_CLASS_FRACTION = 8;
+
+	/**
+	 * The fraction of the cache size above which a bitmap is not cached.
+	 */
+	private static final int MAX_ENTRY_FRACTION = 4;
+
+	/**
+	 * The number of bytes per megabyte.
+	 */
+	private static final int BYTES_PER_MB = 1024 * 1024;
+
+	/**
+	 * The cache of bitmaps.
+	 */
+	private static final LruCache<String, CacheEntry> CACHE = new LruCache<String, CacheEntry>(getCacheSize()) {
+		@Override
+		protected int sizeOf(final String key, final CacheEntry value) {
+			return value.mBitmap.getAllocationByteCount();
+		}
+
+		@Override
+		protected void entryRemoved(final boolean evicted, final String key, final CacheEntry oldValue, final CacheEntry newValue) {
+			if (newValue == null) {
+				synchronized (PATH_INDEX) {
+					Set<String> keys = PATH_INDEX.get(oldValue.mPath);
+					if (keys != null) {
+						keys.remove(key);
+						if (keys.isEmpty()) {
+							PATH_INDEX.remove(oldValue.mPath);
+						}
+					}
+				}
+			}
+		}
+	};
+
+	/**
+	 * The cache keys per file path, used for size-aware lookup.
+	 */
+	private static final Map<String, Set<String>> PATH_INDEX = new HashMap<>();
+
+	/**
+	 * Hide default constructor.
+	 */
+	private BitmapCache() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the size of the cache in bytes, derived from the memory class of the device.
+	 *
+	 * @return The cache size.
+	 */
+	private static int getCacheSize() {
+		return SystemUtil.getLargeMemoryClass() / MEMORY_CLASS_FRACTION * BYTES_PER_MB;
+	}
+
+	/**
+	 * Create the cache key.
+	 *
+	 * @param path         The file path.
+	 * @param lastModified The last modification date of the file.
+	 * @param targetWidth  The requested width.
+	 * @param targetHeight The requested height.
+	 * @param minimum      Flag indicating if the requested dimensions are minimum dimensions.
+	 * @param forceScaling Flag indicating if the image was resized also if smaller than the requested dimensions.
+	 * @param usage        The usage of the bitmap.
+	 * @return The cache key.
+	 */
+	private static String getKey(final String path, final long lastModified, final int targetWidth, final int targetHeight,
+								 final boolean minimum, final boolean forceScaling, final BitmapUsage usage) {
+		return path + "|" + lastModified + "|" + targetWidth + "x" + targetHeight + "|" + (minimum ? "min" : "max")
+				+ (forceScaling ? "!" : "") + "|" + usage;
+	}
+
+	/**
+	 * Get a bitmap from the cache. If there is no entry for exactly these parameters, a larger cached bitmap of the same file may be
+	 * downscaled.
+	 *
+	 * @param path         The file path.
+	 * @param targetWidth  The requested width.
+	 * @param targetHeight The requested height.
+	 * @param minimum      Flag indicating if the requested dimensions are minimum dimensions.
+	 * @param forceScaling Flag indicating if the image should be resized also if smaller than the requested dimensions.
+	 * @param usage        The usage of the bitmap. Only bitmaps of the same usage are returned.
+	 * @return The bitmap, or null if not available from cache.
+	 */
+	public static Bitmap getBitmap(final String path, final int targetWidth, final int targetHeight, final boolean minimum,
+								   final boolean forceScaling, final BitmapUsage usage) {
+		if (path == null || targetWidth <= 0 || targetHeight <= 0) {
+			return null;
+		}
+		long lastModified = new File(path).lastModified();
+		String key = getKey(path, lastModified, targetWidth, targetHeight, minimum, forceScaling, usage);
+		CacheEntry entry = CACHE.get(key);
+		if (entry != null) {
+			return entry.mBitmap;
+		}
+
+		List<String> candidateKeys;
+		synchronized (PATH_INDEX) {
+			Set<String> keys = PATH_INDEX.get(path);
+			if (keys == null) {
+				return null;
+			}
+			candidateKeys = new ArrayList<>(keys);
+		}
+
+		CacheEntry bestEntry = null;
+		int[] bestSize = null;
+		for (String candidateKey : candidateKeys) {
+			CacheEntry candidate = CACHE.get(candidateKey);
+			if (candidate == null || candidate.mLastModified != lastModified || candidate.mUsage != usage) {
+				continue;
+			}
+			int[] size = ImageUtil.getDerivedSize(candidate.mBitmap, candidate.mIsFullResolution, targetWidth, targetHeight, minimum,
+					forceScaling);
+			if (size == null) {
+				continue;
+			}
+			if (bestEntry == null || candidate.mBitmap.getWidth() < bestEntry.mBitmap.getWidth()) {
+				bestEntry = candidate;
+				bestSize = size;
+			}
+		}
+		if (bestEntry == null) {
+			return null;
+		}
+
+		Bitmap bitmap = bestSize[0] == bestEntry.mBitmap.getWidth() && bestSize[1] == bestEntry.mBitmap.getHeight()
+				? bestEntry.mBitmap
+				: Bitmap.createScaledBitmap(bestEntry.mBitmap, bestSize[0], bestSize[1], true);
+		putBitmap(path, lastModified, targetWidth, targetHeight, minimum, forceScaling, usage, bitmap,
+				bestEntry.mIsFullResolution && bitmap == bestEntry.mBitmap);
+		return bitmap;
+	}
+
+	/**
+	 * Store a bitmap in the cache.
+	 *
+	 * @param path             The file path.
+	 * @param lastModified     The last modification date of the file at the time when the bitmap was decoded.
+	 * @param targetWidth      The requested width.
+	 * @param targetHeight     The requested height.
+	 * @param minimum          Flag indicating if the requested dimensions are minimum dimensions.
+	 * @param forceScaling     Flag indicating if the image was resized also if smaller than the requested dimensions.
+	 * @param usage            The usage of the bitmap.
+	 * @param bitmap           The bitmap.
+	 * @param isFullResolution Flag indicating if the bitmap has the original resolution of the image.
+	 */
+	public static void putBitmap(final String path, final long lastModified, final int targetWidth, final int targetHeight,
+								 final boolean minimum, final boolean forceScaling, final BitmapUsage usage, final Bitmap bitmap,
+								 final boolean isFullResolution) {
+		if (path == null || bitmap == null || targetWidth <= 0 || targetHeight <= 0 || lastModified == 0
+				|| bitmap.getAllocationByteCount() > CACHE.maxSize() / MAX_ENTRY_FRACTION) {
+			return;
+		}
+		String key = getKey(path, lastModified, targetWidth, targetHeight, minimum, forceScaling, usage);
+		synchronized (PATH_INDEX) {
+			Set<String> keys = PATH_INDEX.get(path);
+			if (keys == null) {
+				keys = new HashSet<>();
+				PATH_INDEX.put(path, keys);
+			}
+			keys.add(key);
+		}
+		CACHE.put(key, new CacheEntry(path, lastModified, usage, bitmap, isFullResolution));
+	}
+
+	/**
+	 * Check if a decoded bitmap is known to have the original resolution of the image.
+	 *
+	 * @param bitmap       The bitmap as returned for a request.
+	 * @param targetWidth  The requested width.
+	 * @param targetHeight The requested height.
+	 * @param minimum      Flag indicating if the requested dimensions are minimum dimensions.
+	 * @param forceScaling Flag indicating if the image was resized also if smaller than the requested dimensions.
+	 * @return true if the bitmap is known to have the original resolution of the image.
+	 */
+	public static boolean isFullResolution(final Bitmap bitmap, final int targetWidth, final int targetHeight, final boolean minimum,
+										   final boolean forceScaling) {
+		// A bitmap that has been downscaled touches the requested box.
+		return !minimum && !forceScaling && bitmap.getWidth() < targetWidth && bitmap.getHeight() < targetHeight;
+	}
+
+	/**
+	 * Release memory depending on the trim level signaled by the system.
+	 *
+	 * @param level The trim level from {@link ComponentCallbacks2}.
+	 */
+	public static void trimMemory(final int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+				|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			CACHE.evictAll();
+		}
+		else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+				|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			CACHE.trimToSize(CACHE.maxSize() / 2);
+		}
+	}
+
+	/**
+	 * Clear the cache.
+	 */
+	public static void clear() {
+		CACHE.evictAll();
+	}
+
+	/**
+	 * An entry of the cache.
+	 */
+	private static final class CacheEntry {
+		/**
+		 * The file path.
+		 */
+		private final String mPath;
+		/**
+		 * The last modification date of the file.
+		 */
+		private final long mLastModified;
+		/**
+		 * The usage of the bitmap.
+		 */
+		private final BitmapUsage mUsage;
+		/**
+		 * The bitmap.
+		 */
+		private final Bitmap mBitmap;
+		/**
+		 * Flag indicating if the bitmap has the original resolution of the image.
+		 */
+		private final boolean mIsFullResolution;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param path             The file path.
+		 * @param lastModified     The last modification date of the file.
+		 * @param usage            The usage of the bitmap.
+		 * @param bitmap           The bitmap.
+		 * @param isFullResolution Flag indicating if the bitmap has the original resolution of the image.
+		 */
+		private CacheEntry(final String path, final long lastModified, final BitmapUsage usage, final Bitmap bitmap,
+						   final boolean isFullResolution) {
+			mPath = path;
+			mLastModified = lastModified;
+			mUsage = usage;
+			mBitmap = bitmap;
+			mIsFullResolution = isFullResolution;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package de.jeisfeld.randomimage.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.util.SparseArray;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Pool of mutable bitmaps which can be reused for decoding or drawing, in order to avoid garbage collection churn when scrolling
+ * through thumbnails. Bitmaps are kept in buckets by allocation size, rounded up to a power of two.
+ *
+ * <p>Only bitmaps exclusively owned by the caller may be released to the pool - in particular no bitmaps from {@link BitmapCache}.
+ */
+public final class BitmapPool {
+	/**
+	 * The fraction of the large memory class to be used for the pool.
+	 */
+	private static final int MEMORY_CLASS_FRACTION = 16;
+
+	/**
+	 * The number of bytes per megabyte.
+	 */
+	private static final int BYTES_PER_MB = 1024 * 1024;
+
+	/**
+	 * The maximum number of bytes kept in the pool.
+	 */
+	private static final int MAX_POOL_SIZE = SystemUtil.getLargeMemoryClass() / MEMORY_CLASS_FRACTION * BYTES_PER_MB;
+
+	/**
+	 * The pooled bitmaps, by bucket size.
+	 */
+	private static final SparseArray<ArrayDeque<Bitmap>> BUCKETS = new SparseArray<>();
+
+	/**
+	 * The number of bytes currently kept in the pool.
+	 */
+	private static int mPoolSize = 0;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private BitmapPool() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get a cleared bitmap of the given size, reused from the pool if possible.
+	 *
+	 * @param width  The width.
+	 * @param height The height.
+	 * @param config The bitmap config.
+	 * @return The bitmap.
+	 */
+	public static Bitmap getBitmap(final int width, final int height, final Config config) {
+		Bitmap bitmap = obtain(getByteCount(width, height, config));
+		if (bitmap != null) {
+			try {
+				bitmap.reconfigure(width, height, config);
+				bitmap.eraseColor(Color.TRANSPARENT);
+				return bitmap;
+			}
+			catch (IllegalArgumentException e) {
+				release(bitmap);
+			}
+		}
+		return Bitmap.createBitmap(width, height, config);
+	}
+
+	/**
+	 * Prepare BitmapFactory options so that decoding reuses a pooled bitmap, if available. If decoding fails with
+	 * IllegalArgumentException, the caller should call {@link #releaseDecodeBitmap(BitmapFactory.Options)} and decode again.
+	 *
+	 * @param options The options.
+	 * @param width   The (maximum) width of the decoded bitmap.
+	 * @param height  The (maximum) height of the decoded bitmap.
+	 */
+	public static void prepareDecodeOptions(final BitmapFactory.Options options, final int width, final int height) {
+		options.inMutable = true;
+		options.inBitmap = obtain(getByteCount(width, height, options.inPreferredConfig));
+	}
+
+	/**
+	 * Return the bitmap of BitmapFactory options to the pool after failed decoding, and remove it from the options.
+	 *
+	 * @param options The options.
+	 * @return true if there was a bitmap for reuse.
+	 */
+	public static boolean releaseDecodeBitmap(final BitmapFactory.Options options) {
+		Bitmap bitmap = options.inBitmap;
+		options.inBitmap = null;
+		if (bitmap == null) {
+			return false;
+		}
+		release(bitmap);
+		return true;
+	}
+
+	/**
+	 * Release a bitmap to the pool. The caller must not use the bitmap afterwards.
+	 *
+	 * @param bitmap The bitmap.
+	 */
+	public static void release(final Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+			return;
+		}
+		int byteCount = bitmap.getAllocationByteCount();
+		synchronized (BUCKETS) {
+			if (mPoolSize + byteCount > MAX_POOL_SIZE) {
+				return;
+			}
+			int bucket = getBucket(byteCount);
+			ArrayDeque<Bitmap> bitmaps = BUCKETS.get(bucket);
+			if (bitmaps == null) {
+				bitmaps = new ArrayDeque<>();
+				BUCKETS.put(bucket, bitmaps);
+			}
+			for (Bitmap pooledBitmap : bitmaps) {
+				if (pooledBitmap == bitmap) {
+					return;
+				}
+			}
+			bitmaps.push(bitmap);
+			mPoolSize += byteCount;
+		}
+	}
+
+	/**
+	 * Clear the pool.
+	 */
+	public static void clear() {
+		synchronized (BUCKETS) {
+			BUCKETS.clear();
+			mPoolSize = 0;
+		}
+	}
+
+	/**
+	 * Take a bitmap with at least the given allocation size from the pool.
+	 *
+	 * @param byteCount The required allocation size.
+	 * @return The bitmap, or null if there is no suitable bitmap in the pool.
+	 */
+	private static Bitmap obtain(final int byteCount) {
+		int bucket = getBucket(byteCount);
+		synchronized (BUCKETS) {
+			// Bitmaps in the matching bucket may be too small, bitmaps in the next bucket are always big enough.
+			for (int candidateBucket : new int[]{bucket, bucket << 1}) {
+				ArrayDeque<Bitmap> bitmaps = BUCKETS.get(candidateBucket);
+				if (bitmaps == null) {
+					continue;
+				}
+				Iterator<Bitmap> iterator = bitmaps.iterator();
+				while (iterator.hasNext()) {
+					Bitmap bitmap = iterator.next();
+					if (bitmap.getAllocationByteCount() >= byteCount) {
+						iterator.remove();
+						mPoolSize -= bitmap.getAllocationByteCount();
+						return bitmap;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the bucket for an allocation size.
+	 *
+	 * @param byteCount The allocation size.
+	 * @return The bucket, being the smallest power of 2 which is not smaller than the allocation size.
+	 */
+	private static int getBucket(final int byteCount) {
+		int bucket = Integer.highestOneBit(Math.max(byteCount, 1));
+		return bucket < byteCount ? bucket << 1 : bucket;
+	}
+
+	/**
+	 * Get the number of bytes of a bitmap.
+	 *
+	 * @param width  The width.
+	 * @param height The height.
+	 * @param config The bitmap config.
+	 * @return The number of bytes.
+	 */
+	private static int getByteCount(final int width, final int height, final Config config) {
+		int bytesPerPixel;
+		if (config == Config.ALPHA_8) {
+			bytesPerPixel = 1;
+		}
+		else if (config == Config.RGB_565 || config == Config.ARGB_4444) {
+			bytesPerPixel = 2;
+		}
+		else {
+			bytesPerPixel = 4; // MAGIC_NUMBER
+		}
+		return width * height * bytesPerPixel;
+	}
+}
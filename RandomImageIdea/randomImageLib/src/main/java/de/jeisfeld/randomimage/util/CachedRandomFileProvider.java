@@ -229,6 +229,56 @@ public class CachedRandomFileProvider implements RandomFileListProvider {
 		}
 	}
 
+	@Override
+	public final List<String> getUpcomingFileNames(final int count, final boolean backward) {
+		List<String> fileNames = new ArrayList<>();
+		if (!mHasFile) {
+			return fileNames;
+		}
+		determineCacheSize();
+
+		synchronized (mCachedFileNames) {
+			for (int i = 1; i <= count; i++) {
+				switch (mFlipType) {
+				case CYCLICAL:
+				case CYCLICAL_SORTED:
+					int size = mCachedFileNames.size();
+					if (i >= size) {
+						return fileNames;
+					}
+					int position = (backward ? mCurrentPosition - i + size : mCurrentPosition + i) % size;
+					fileNames.add(mCachedFileNames.get(position));
+					break;
+				default:
+					// Only extend the cache where goForward or goBackward would do the same, without dropping cached entries.
+					if (backward) {
+						if (mCurrentPosition - i < 0) {
+							if (mCachedFileNames.size() >= mCacheSize) {
+								return fileNames;
+							}
+							mCachedFileNames.add(0, mFlipType == FlipType.AVOID_REPETITIONS
+									? getRandomFileNameAvoidingRepetitions() : getRandomFileName());
+							mCurrentPosition++;
+						}
+						fileNames.add(mCachedFileNames.get(mCurrentPosition - i));
+					}
+					else {
+						if (mCurrentPosition + i >= mCacheSize) {
+							return fileNames;
+						}
+						if (mCurrentPosition + i == mCachedFileNames.size()) {
+							mCachedFileNames.add(mFlipType == FlipType.AVOID_REPETITIONS
+									? getRandomFileNameAvoidingRepetitions() : getRandomFileName());
+						}
+						fileNames.add(mCachedFileNames.get(mCurrentPosition + i));
+					}
+					break;
+				}
+			}
+		}
+		return fileNames;
+	}
+
 	/**
 	 * Get a new random image from the list, avoiding repetitions.
 	 *
@@ -0,0 +1,106 @@
+package de.jeisfeld.randomimage.util;
+
+import java.io.File;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Utility class for locale-aware sorting of names, based on cached collation keys.
+ */
+public final class CollationUtil {
+	/**
+	 * The maximum number of collation keys kept in the cache.
+	 */
+	private static final int MAX_CACHE_SIZE = 5000;
+
+	/**
+	 * The cache of collation keys.
+	 */
+	private static final Map<String, CollationKey> KEY_CACHE = new LinkedHashMap<String, CollationKey>(16, 0.75f, true) { // MAGIC_NUMBER
+		/**
+		 * The default serial version id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, CollationKey> eldest) {
+			return size() > MAX_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * The collator used for creating the keys.
+	 */
+	private static Collator mCollator = null;
+
+	/**
+	 * The locale for which the cached keys have been created.
+	 */
+	private static Locale mLocale = null;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private CollationUtil() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the collation key of a String. The key is taken from cache if available.
+	 *
+	 * @param source The String.
+	 * @return The collation key.
+	 */
+	public static CollationKey getCollationKey(final String source) {
+		synchronized (KEY_CACHE) {
+			Locale locale = Locale.getDefault();
+			if (mCollator == null || !locale.equals(mLocale)) {
+				// Keys are locale dependent, so they need to be recreated after change of locale.
+				mCollator = Collator.getInstance(locale);
+				mLocale = locale;
+				KEY_CACHE.clear();
+			}
+			CollationKey key = KEY_CACHE.get(source);
+			if (key == null) {
+				key = mCollator.getCollationKey(source);
+				KEY_CACHE.put(source, key);
+			}
+			return key;
+		}
+	}
+
+	/**
+	 * Sort a list of Strings in a locale-aware way.
+	 *
+	 * @param strings The list of Strings to be sorted.
+	 */
+	public static void sort(final List<String> strings) {
+		CollationKey[] keys = new CollationKey[strings.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = getCollationKey(strings.get(i));
+		}
+		Arrays.sort(keys);
+		for (int i = 0; i < keys.length; i++) {
+			strings.set(i, keys[i].getSourceString());
+		}
+	}
+
+	/**
+	 * Sort an array of files by their name in a locale-aware way.
+	 *
+	 * @param files The files to be sorted.
+	 */
+	public static void sortByName(final File[] files) {
+		final Map<File, CollationKey> collationMap = new HashMap<>();
+		for (File file : files) {
+			collationMap.put(file, getCollationKey(file.getName()));
+		}
+		Arrays.sort(files, (o1, o2) -> collationMap.get(o1).compareTo(collationMap.get(o2)));
+	}
+}
@@ -0,0 +1,198 @@
+package de.jeisfeld.randomimage.util;
+
+import android.graphics.Bitmap;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * App-owned persistent store of image color signatures (average color, border color and a small palette), so that background colors
+ * derived from an image can be applied without decoding and analyzing the image again. The store is an append-only index file which is
+ * loaded into memory on first access. Entries are valid only as long as modification date and size of the image file are unchanged.
+ */
+public final class ColorSignatureStore {
+	/**
+	 * The number of new entries collected before they are appended to the index file.
+	 */
+	private static final int FLUSH_COUNT = 16;
+
+	/**
+	 * The maximum number of entries. If exceeded, the store is cleared.
+	 */
+	private static final int MAX_ENTRIES = 50000;
+
+	/**
+	 * The underlying index store.
+	 */
+	private static final ImageIndexStore<ColorSignature> STORE = new ImageIndexStore<ColorSignature>("colors", FLUSH_COUNT, MAX_ENTRIES) {
+		@Override
+		protected void writeValue(final DataOutputStream indexStream, final ColorSignature signature) throws IOException {
+			indexStream.writeInt(signature.mAverageColor);
+			indexStream.writeInt(signature.mBorderColor);
+			indexStream.writeByte(signature.mPalette.length);
+			for (int color : signature.mPalette) {
+				indexStream.writeInt(color);
+			}
+		}
+
+		@Override
+		protected ColorSignature readValue(final DataInputStream indexStream) throws IOException {
+			int averageColor = indexStream.readInt();
+			int borderColor = indexStream.readInt();
+			int[] palette = new int[indexStream.readUnsignedByte()];
+			for (int i = 0; i < palette.length; i++) {
+				palette[i] = indexStream.readInt();
+			}
+			return new ColorSignature(averageColor, borderColor, palette);
+		}
+
+		@Override
+		protected void process(final String path) {
+			getColorSignature(path);
+		}
+	};
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ColorSignatureStore() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the stored color signature of an image.
+	 *
+	 * @param path The file path of the image.
+	 * @return The color signature, or null if there is no valid entry.
+	 */
+	public static ColorSignature getStoredColorSignature(final String path) {
+		return STORE.get(path);
+	}
+
+	/**
+	 * Get the color signature of an image. If not stored yet, it is calculated from a thumbnail of the image and stored.
+	 *
+	 * @param path The file path of the image.
+	 * @return The color signature, or null if the image cannot be decoded.
+	 */
+	public static ColorSignature getColorSignature(final String path) {
+		return getColorSignature(path, null);
+	}
+
+	/**
+	 * Get the color signature of an image. If not stored yet, it is calculated from the given bitmap and stored.
+	 *
+	 * @param path   The file path of the image.
+	 * @param bitmap A bitmap of the image accessible for pixel analysis. If null, a thumbnail of the image is decoded.
+	 * @return The color signature, or null if the image cannot be decoded.
+	 */
+	public static ColorSignature getColorSignature(final String path, final Bitmap bitmap) {
+		ColorSignature signature = getStoredColorSignature(path);
+		if (signature != null) {
+			return signature;
+		}
+		File file = new File(path);
+		long lastModified = file.lastModified();
+		long size = file.length();
+		Bitmap analyzedBitmap = bitmap == null ? ImageUtil.getImageBitmap(path, MediaStoreUtil.MINI_THUMB_SIZE) : bitmap;
+		if (analyzedBitmap == null) {
+			return null;
+		}
+		signature = ImageAnalyzer.getColorSignature(analyzedBitmap);
+		STORE.put(path, lastModified, size, signature);
+		return signature;
+	}
+
+	/**
+	 * Write all pending entries to the index file.
+	 */
+	public static void flush() {
+		STORE.flush();
+	}
+
+	/**
+	 * Queue the calculation of color signatures in the background for the given images. Images with valid entry are skipped.
+	 *
+	 * @param paths The file paths of the images.
+	 */
+	public static void calculateColorSignatures(final Collection<String> paths) {
+		STORE.queue(paths);
+	}
+
+	/**
+	 * Clear the store.
+	 */
+	public static void clear() {
+		STORE.clear();
+	}
+
+	/**
+	 * The color signature of an image.
+	 */
+	public static final class ColorSignature {
+		/**
+		 * The number of colors in the palette.
+		 */
+		static final int PALETTE_SIZE = 8;
+		/**
+		 * The random number generator for choosing a palette color.
+		 */
+		private static final Random RANDOM = new Random();
+		/**
+		 * The "average color" of the image.
+		 */
+		private final int mAverageColor;
+		/**
+		 * The color from the image border.
+		 */
+		private final int mBorderColor;
+		/**
+		 * Colors of random pixels of the image.
+		 */
+		private final int[] mPalette;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param averageColor The "average color" of the image.
+		 * @param borderColor  The color from the image border.
+		 * @param palette      Colors of random pixels of the image.
+		 */
+		ColorSignature(final int averageColor, final int borderColor, final int[] palette) {
+			mAverageColor = averageColor;
+			mBorderColor = borderColor;
+			mPalette = palette;
+		}
+
+		/**
+		 * Get the "average color" of the image.
+		 *
+		 * @return The "average color".
+		 */
+		public int getAverageColor() {
+			return mAverageColor;
+		}
+
+		/**
+		 * Get the color from the image border.
+		 *
+		 * @return The border color.
+		 */
+		public int getBorderColor() {
+			return mBorderColor;
+		}
+
+		/**
+		 * Get a random color of the image, taken from the palette.
+		 *
+		 * @return A random color of the image.
+		 */
+		public int getRandomColor() {
+			return mPalette.length == 0 ? mBorderColor : mPalette[RANDOM.nextInt(mPalette.length)];
+		}
+	}
+}
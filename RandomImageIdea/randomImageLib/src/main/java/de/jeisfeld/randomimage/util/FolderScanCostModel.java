@@ -0,0 +1,314 @@
+package de.jeisfeld.randomimage.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import de.jeisfeld.randomimagelib.R;
+
+/**
+ * Cost model for parsing recursive image folders. Stores duration and number of found entries of folder scans per root folder,
+ * and decides per call whether to walk the folder tree live or to use the stored catalogue of image folders.
+ */
+public final class FolderScanCostModel {
+	/**
+	 * The estimated parsing duration in milliseconds below which live walking of a folder tree is preferred.
+	 */
+	private static final long QUICK_PARSING_MILLIS = 500;
+
+	/**
+	 * The interval after which the parsing duration of a slow folder is measured again.
+	 */
+	private static final long REMEASURE_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+	/**
+	 * The weight of a new measurement in the averaged parsing duration.
+	 */
+	private static final double NEW_MEASUREMENT_WEIGHT = 0.3;
+
+	/**
+	 * The separator used for storing statistics in shared preferences.
+	 */
+	private static final String SEPARATOR = ";";
+
+	/**
+	 * The scan statistics per root folder.
+	 */
+	private static final Map<String, ScanStatistics> STATISTICS = new HashMap<>();
+
+	/**
+	 * The root folders for which a measurement is currently running.
+	 */
+	private static final Set<String> RUNNING_MEASUREMENTS = new HashSet<>();
+
+	/**
+	 * Flag indicating if the statistics have been loaded from shared preferences.
+	 */
+	private static boolean mIsLoaded = false;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private FolderScanCostModel() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Decide if the given root folder should be walked live rather than taken from the stored catalogue.
+	 *
+	 * @param rootFolder       The root folder (without recursive suffix).
+	 * @param catalogueEntries The number of image folders below this root in the stored catalogue.
+	 * @return true if live walking is expected to be quick.
+	 */
+	public static boolean preferLiveScan(final String rootFolder, final int catalogueEntries) {
+		ScanStatistics statistics = getStatistics(rootFolder);
+		return statistics != null && statistics.getEstimatedDuration(catalogueEntries) <= QUICK_PARSING_MILLIS;
+	}
+
+	/**
+	 * Check if the statistics of a root folder are outdated, so that a new measurement should be done.
+	 *
+	 * @param rootFolder The root folder (without recursive suffix).
+	 * @return true if the folder should be measured again.
+	 */
+	public static boolean isRemeasureRequired(final String rootFolder) {
+		ScanStatistics statistics = getStatistics(rootFolder);
+		return statistics == null || System.currentTimeMillis() > statistics.getLastMeasurementTime() + REMEASURE_INTERVAL;
+	}
+
+	/**
+	 * Mark the start of a measurement for a root folder.
+	 *
+	 * @param rootFolder The root folder (without recursive suffix).
+	 * @return false if there is already a running measurement for this folder.
+	 */
+	public static boolean startMeasurement(final String rootFolder) {
+		synchronized (RUNNING_MEASUREMENTS) {
+			return RUNNING_MEASUREMENTS.add(rootFolder);
+		}
+	}
+
+	/**
+	 * Record the result of a measurement of a root folder, started via {@link #startMeasurement(String)}, and store it.
+	 *
+	 * @param rootFolder     The root folder (without recursive suffix).
+	 * @param durationMillis The duration of the scan in milliseconds.
+	 * @param entries        The number of image folders found.
+	 */
+	public static void recordMeasurement(final String rootFolder, final long durationMillis, final int entries) {
+		ScanStatistics statistics;
+		boolean isNew;
+		synchronized (STATISTICS) {
+			isNew = getStatistics(rootFolder) == null;
+			statistics = updateStatistics(rootFolder, durationMillis, entries);
+		}
+		synchronized (RUNNING_MEASUREMENTS) {
+			RUNNING_MEASUREMENTS.remove(rootFolder);
+		}
+
+		PreferenceUtil.setIndexedSharedPreferenceString(R.string.key_indexed_folder_scan_statistics, rootFolder, statistics.toStorageString());
+		if (isNew) {
+			ArrayList<String> rootFolders = PreferenceUtil.getSharedPreferenceStringList(R.string.key_folder_scan_roots);
+			if (!rootFolders.contains(rootFolder)) {
+				rootFolders.add(rootFolder);
+				PreferenceUtil.setSharedPreferenceStringList(R.string.key_folder_scan_roots, rootFolders);
+			}
+		}
+	}
+
+	/**
+	 * Record the result of a live scan of a root folder. The result is kept in memory only, and is stored together with the next
+	 * measurement.
+	 *
+	 * @param rootFolder     The root folder (without recursive suffix).
+	 * @param durationMillis The duration of the scan in milliseconds.
+	 * @param entries        The number of image folders found.
+	 */
+	public static void recordLiveScan(final String rootFolder, final long durationMillis, final int entries) {
+		updateStatistics(rootFolder, durationMillis, entries);
+	}
+
+	/**
+	 * Update the statistics of a root folder in memory with the result of a scan.
+	 *
+	 * @param rootFolder     The root folder (without recursive suffix).
+	 * @param durationMillis The duration of the scan in milliseconds.
+	 * @param entries        The number of image folders found.
+	 * @return The updated statistics.
+	 */
+	private static ScanStatistics updateStatistics(final String rootFolder, final long durationMillis, final int entries) {
+		synchronized (STATISTICS) {
+			loadStatistics();
+			ScanStatistics statistics = STATISTICS.get(rootFolder);
+			if (statistics == null) {
+				statistics = new ScanStatistics(durationMillis, entries, 1, System.currentTimeMillis());
+			}
+			else {
+				statistics = new ScanStatistics(
+						Math.round(NEW_MEASUREMENT_WEIGHT * durationMillis + (1 - NEW_MEASUREMENT_WEIGHT) * statistics.getAverageDuration()),
+						entries, statistics.getMeasurementCount() + 1, System.currentTimeMillis());
+			}
+			STATISTICS.put(rootFolder, statistics);
+			return statistics;
+		}
+	}
+
+	/**
+	 * Get the scan statistics of a root folder.
+	 *
+	 * @param rootFolder The root folder (without recursive suffix).
+	 * @return The statistics, or null if the folder has not yet been measured.
+	 */
+	public static ScanStatistics getStatistics(final String rootFolder) {
+		synchronized (STATISTICS) {
+			loadStatistics();
+			return STATISTICS.get(rootFolder);
+		}
+	}
+
+	/**
+	 * Load the statistics from shared preferences, if not yet done.
+	 */
+	private static void loadStatistics() {
+		if (mIsLoaded) {
+			return;
+		}
+		List<String> rootFolders = PreferenceUtil.getSharedPreferenceStringList(R.string.key_folder_scan_roots);
+		for (String rootFolder : rootFolders) {
+			ScanStatistics statistics = ScanStatistics.fromStorageString(
+					PreferenceUtil.getIndexedSharedPreferenceString(R.string.key_indexed_folder_scan_statistics, rootFolder));
+			if (statistics != null) {
+				STATISTICS.put(rootFolder, statistics);
+			}
+		}
+		mIsLoaded = true;
+	}
+
+	/**
+	 * The scan statistics of a root folder.
+	 */
+	public static final class ScanStatistics {
+		/**
+		 * The averaged duration of a scan in milliseconds.
+		 */
+		private final long mAverageDuration;
+		/**
+		 * The number of image folders found in the last scan.
+		 */
+		private final int mEntryCount;
+		/**
+		 * The number of measurements done.
+		 */
+		private final int mMeasurementCount;
+		/**
+		 * The timestamp of the last measurement.
+		 */
+		private final long mLastMeasurementTime;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param averageDuration     The averaged duration of a scan in milliseconds.
+		 * @param entryCount          The number of image folders found in the last scan.
+		 * @param measurementCount    The number of measurements done.
+		 * @param lastMeasurementTime The timestamp of the last measurement.
+		 */
+		private ScanStatistics(final long averageDuration, final int entryCount, final int measurementCount, final long lastMeasurementTime) {
+			mAverageDuration = averageDuration;
+			mEntryCount = entryCount;
+			mMeasurementCount = measurementCount;
+			mLastMeasurementTime = lastMeasurementTime;
+		}
+
+		/**
+		 * Get the averaged duration of a scan.
+		 *
+		 * @return the averaged duration in milliseconds.
+		 */
+		public long getAverageDuration() {
+			return mAverageDuration;
+		}
+
+		/**
+		 * Get the number of image folders found in the last scan.
+		 *
+		 * @return the number of image folders.
+		 */
+		public int getEntryCount() {
+			return mEntryCount;
+		}
+
+		/**
+		 * Get the number of measurements done.
+		 *
+		 * @return the number of measurements.
+		 */
+		public int getMeasurementCount() {
+			return mMeasurementCount;
+		}
+
+		/**
+		 * Get the timestamp of the last measurement.
+		 *
+		 * @return the timestamp of the last measurement.
+		 */
+		public long getLastMeasurementTime() {
+			return mLastMeasurementTime;
+		}
+
+		/**
+		 * Estimate the duration of a scan, scaling the measured duration by the current number of entries.
+		 *
+		 * @param currentEntries The current number of entries (from the stored catalogue).
+		 * @return The estimated duration in milliseconds.
+		 */
+		public long getEstimatedDuration(final int currentEntries) {
+			if (mEntryCount <= 0 || currentEntries <= mEntryCount) {
+				return mAverageDuration;
+			}
+			return mAverageDuration * currentEntries / mEntryCount;
+		}
+
+		/**
+		 * Convert the statistics into a String for storage.
+		 *
+		 * @return The storage String.
+		 */
+		private String toStorageString() {
+			return mAverageDuration + SEPARATOR + mEntryCount + SEPARATOR + mMeasurementCount + SEPARATOR + mLastMeasurementTime;
+		}
+
+		/**
+		 * Retrieve statistics from a storage String.
+		 *
+		 * @param storageString The storage String.
+		 * @return The statistics, or null if not parseable.
+		 */
+		private static ScanStatistics fromStorageString(final String storageString) {
+			if (storageString == null) {
+				return null;
+			}
+			String[] parts = storageString.split(SEPARATOR);
+			if (parts.length != 4) { // MAGIC_NUMBER
+				return null;
+			}
+			try {
+				return new ScanStatistics(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+						Long.parseLong(parts[3])); // MAGIC_NUMBER
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ENGLISH, "%d ms, %d entries, %d measurements", mAverageDuration, mEntryCount, mMeasurementCount);
+		}
+	}
+}
@@ -1,14 +1,20 @@
 package de.jeisfeld.randomimage.util;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build.VERSION_CODES;
+
+import de.jeisfeld.randomimage.util.ColorSignatureStore.ColorSignature;
 
 /**
- * Utility class for analyzing the pixels of an image.
+ * Utility class for analyzing the pixels of an image. The image is scaled into a reusable bitmap, whose pixels are read in bulk into
+ * a reusable buffer, so that analysis does not allocate memory.
  */
 public final class ImageAnalyzer {
 	/**
@@ -27,6 +33,89 @@ public final class ImageAnalyzer {
 	 * The starting points of the rectangles at the border of the image from which the colors are taken.
 	 */
 	private static final double[] SLICE_STARTS = {0, 0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8};
+	/**
+	 * The number of rectangles at the border of the image from which the colors are taken.
+	 */
+	private static final int REGION_COUNT = 4 * SLICE_STARTS.length;
+	/**
+	 * The bounds (left, right, top, bottom, inclusive) of the rectangles at the border of the analyzed bitmap.
+	 */
+	private static final int[][] REGION_BOUNDS = new int[REGION_COUNT][];
+	/**
+	 * The number of hue steps per sector of 60 degrees.
+	 */
+	private static final int HUE_SECTOR_STEPS = 256;
+	/**
+	 * The number of hue steps in the full circle.
+	 */
+	private static final int HUE_STEPS = 6 * HUE_SECTOR_STEPS; // MAGIC_NUMBER
+	/**
+	 * The cosine of the hue steps.
+	 */
+	private static final float[] HUE_COS = new float[HUE_STEPS];
+	/**
+	 * The sine of the hue steps.
+	 */
+	private static final float[] HUE_SIN = new float[HUE_STEPS];
+	/**
+	 * The maximum value of a color component.
+	 */
+	private static final int MAX_COMPONENT = 255;
+	/**
+	 * Lock for access to the reusable buffers.
+	 */
+	private static final Object LOCK = new Object();
+	/**
+	 * The buffer for the pixels of the analyzed bitmap.
+	 */
+	private static final int[] PIXELS = new int[ANALYZED_BITMAP_SIZE * ANALYZED_BITMAP_SIZE];
+	/**
+	 * The average colors of the rectangles at the border.
+	 */
+	private static final int[] REGION_AVERAGES = new int[REGION_COUNT];
+	/**
+	 * The variances of the rectangles at the border.
+	 */
+	private static final long[] REGION_VARIANCES = new long[REGION_COUNT];
+	/**
+	 * The buffer for HSV values.
+	 */
+	private static final float[] HSV = new float[3]; // MAGIC_NUMBER
+	/**
+	 * The target rectangle when scaling the bitmap.
+	 */
+	private static final Rect TARGET_RECT = new Rect(0, 0, ANALYZED_BITMAP_SIZE, ANALYZED_BITMAP_SIZE);
+	/**
+	 * The paint used for scaling the bitmap.
+	 */
+	private static final Paint SCALING_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+	/**
+	 * The forest used for finding the best border color.
+	 */
+	private static final ColorForest COLOR_FOREST = new ColorForest(REGION_COUNT);
+	/**
+	 * The reusable bitmap into which images are scaled.
+	 */
+	private static Bitmap mAnalyzedBitmap = null;
+	/**
+	 * The canvas drawing into the analyzed bitmap.
+	 */
+	private static Canvas mAnalyzedCanvas = null;
+
+	static {
+		for (int i = 0; i < HUE_STEPS; i++) {
+			double angle = 2 * Math.PI * i / HUE_STEPS;
+			HUE_COS[i] = (float) Math.cos(angle);
+			HUE_SIN[i] = (float) Math.sin(angle);
+		}
+		int index = 0;
+		for (double startValue : SLICE_STARTS) {
+			REGION_BOUNDS[index++] = getRegionBounds(startValue, startValue + SLICE_WIDTH, 0, BOUNDARY_THICKNESS);
+			REGION_BOUNDS[index++] = getRegionBounds(1 - BOUNDARY_THICKNESS, 1, startValue, startValue + SLICE_WIDTH);
+			REGION_BOUNDS[index++] = getRegionBounds(1 - startValue - SLICE_WIDTH, 1 - startValue, 1 - BOUNDARY_THICKNESS, 1);
+			REGION_BOUNDS[index++] = getRegionBounds(0, BOUNDARY_THICKNESS, 1 - startValue - SLICE_WIDTH, 1 - startValue);
+		}
+	}
 
 	/**
 	 * Hide default constructor.
@@ -42,38 +131,10 @@ public final class ImageAnalyzer {
 	 * @return The "average color" of this bitmap.
 	 */
 	public static int getAverageImageColor(final Bitmap imageBitmap) {
-		Bitmap shrunkBitmap = Bitmap.createScaledBitmap(imageBitmap, ANALYZED_BITMAP_SIZE, ANALYZED_BITMAP_SIZE, true);
-		float[] hsv = new float[3]; // MAGIC_NUMBER
-		int pixelCount = 0;
-		float hueXSum = 0;
-		float hueYSum = 0;
-		float saturationSum = 0;
-		float valueSum = 0;
-
-		for (int x = 0; x < shrunkBitmap.getWidth(); x++) {
-			for (int y = 0; y < shrunkBitmap.getWidth(); y++) {
-				int color = shrunkBitmap.getPixel(x, y);
-				Color.colorToHSV(color, hsv);
-				hueXSum += Math.cos(hsv[0] * Math.PI / 180); // MAGIC_NUMBER
-				hueYSum += Math.sin(hsv[0] * Math.PI / 180); // MAGIC_NUMBER
-				saturationSum += hsv[1];
-				valueSum += hsv[2];
-				pixelCount++;
-			}
+		synchronized (LOCK) {
+			readPixels(imageBitmap);
+			return calculateAverageColor();
 		}
-
-		float avgHue;
-		try {
-			avgHue = (float) (Math.atan2(hueYSum, hueXSum) * 180 / Math.PI); // MAGIC_NUMBER
-			if (avgHue < 0) {
-				avgHue += 360; // MAGIC_NUMBER
-			}
-		}
-		catch (Exception e) {
-			avgHue = 0;
-		}
-
-		return Color.HSVToColor(new float[] {avgHue, saturationSum / pixelCount, valueSum / pixelCount});
 	}
 
 	/**
@@ -97,56 +158,156 @@ public final class ImageAnalyzer {
 	 * @return A color from this image.
 	 */
 	public static int getColorFromImageBorder(final Bitmap imageBitmap) {
-		Bitmap shrunkBitmap = Bitmap.createScaledBitmap(imageBitmap, ANALYZED_BITMAP_SIZE, ANALYZED_BITMAP_SIZE, true);
+		synchronized (LOCK) {
+			readPixels(imageBitmap);
+			return calculateBorderColor();
+		}
+	}
 
-		// Take regions around the boundary.
-		List<ColorStatistics> statistics = new ArrayList<>();
+	/**
+	 * Get the color signature of an image, containing its average color, its border color and a palette of random colors from the
+	 * image. This requires reading the pixels only once.
+	 *
+	 * @param imageBitmap The image bitmap.
+	 * @return The color signature.
+	 */
+	public static ColorSignature getColorSignature(final Bitmap imageBitmap) {
+		synchronized (LOCK) {
+			readPixels(imageBitmap);
+			Random random = new Random();
+			int[] palette = new int[ColorSignature.PALETTE_SIZE];
+			for (int i = 0; i < palette.length; i++) {
+				palette[i] = PIXELS[random.nextInt(PIXELS.length)];
+			}
+			return new ColorSignature(calculateAverageColor(), calculateBorderColor(), palette);
+		}
+	}
 
-		for (double startValue : SLICE_STARTS) {
-			statistics.add(getColorStatistics(getSubPixels(shrunkBitmap, startValue, startValue + SLICE_WIDTH, 0, BOUNDARY_THICKNESS)));
-			statistics.add(getColorStatistics(getSubPixels(shrunkBitmap, 1 - BOUNDARY_THICKNESS, 1, startValue, startValue + SLICE_WIDTH)));
-			statistics.add(getColorStatistics(getSubPixels(shrunkBitmap, 1 - startValue - SLICE_WIDTH, 1 - startValue, 1 - BOUNDARY_THICKNESS, 1)));
-			statistics.add(getColorStatistics(getSubPixels(shrunkBitmap, 0, BOUNDARY_THICKNESS, 1 - startValue - SLICE_WIDTH, 1 - startValue)));
+	/**
+	 * Calculate some kind of "average color" of the pixel buffer. Must be called within the lock.
+	 *
+	 * @return The "average color".
+	 */
+	private static int calculateAverageColor() {
+		float hueXSum = 0;
+		float hueYSum = 0;
+		long saturationSum = 0;
+		long valueSum = 0;
+
+		for (int color : PIXELS) {
+			int red = (color >> 16) & 0xFF; // MAGIC_NUMBER
+			int green = (color >> 8) & 0xFF; // MAGIC_NUMBER
+			int blue = color & 0xFF; // MAGIC_NUMBER
+			int max = Math.max(red, Math.max(green, blue));
+			int delta = max - Math.min(red, Math.min(green, blue));
+			int hue = getHueStep(red, green, blue, max, delta);
+			hueXSum += HUE_COS[hue];
+			hueYSum += HUE_SIN[hue];
+			if (max > 0) {
+				saturationSum += delta * MAX_COMPONENT / max;
+			}
+			valueSum += max;
 		}
 
-		return ColorForest.getBestColor(statistics);
+		float avgHue = (float) Math.toDegrees(Math.atan2(hueYSum, hueXSum));
+		if (avgHue < 0) {
+			avgHue += 360; // MAGIC_NUMBER
+		}
+		HSV[0] = avgHue;
+		HSV[1] = (float) saturationSum / (PIXELS.length * MAX_COMPONENT);
+		HSV[2] = (float) valueSum / (PIXELS.length * MAX_COMPONENT);
+		return Color.HSVToColor(HSV);
 	}
 
 	/**
-	 * Get an array of pixels from a rectangle region of a bitmap.
+	 * Calculate a color from the border of the pixel buffer, taken from a border area with not too high variance. Must be called
+	 * within the lock.
 	 *
-	 * @param imageBitmap The bitmap.
-	 * @param xFrom       The x percentage of the left side of the rectangle.
-	 * @param xTo         The x percentage of the right side of the rectangle.
-	 * @param yFrom       The y percentage of the top of the rectangle.
-	 * @param yTo         The y percentage of the bottom of the rectangle.
-	 * @return The array of pixels.
-	 */
-	private static int[] getSubPixels(final Bitmap imageBitmap, final double xFrom, final double xTo, final double yFrom, final double yTo) {
-		int xFromAbsolute = Math.max((int) (imageBitmap.getWidth() * xFrom), 0);
-		int xToAbsolute = Math.min((int) (imageBitmap.getWidth() * xTo), imageBitmap.getWidth()) - 1;
-		int yFromAbsolute = Math.max((int) (imageBitmap.getHeight() * yFrom), 0);
-		int yToAbsolute = Math.min((int) (imageBitmap.getHeight() * yTo), imageBitmap.getHeight()) - 1;
-
-		int[] result = new int[(xToAbsolute - xFromAbsolute + 1) * (yToAbsolute - yFromAbsolute + 1)];
-		int arrayCounter = 0;
-
-		for (int x = xFromAbsolute; x <= xToAbsolute; x++) {
-			for (int y = yFromAbsolute; y <= yToAbsolute; y++) {
-				result[arrayCounter++] = imageBitmap.getPixel(x, y);
-			}
+	 * @return The border color.
+	 */
+	private static int calculateBorderColor() {
+		// Take regions around the boundary.
+		for (int i = 0; i < REGION_COUNT; i++) {
+			calculateColorStatistics(i);
+		}
+
+		return COLOR_FOREST.getBestColor(REGION_AVERAGES, REGION_VARIANCES);
+	}
+
+	/**
+	 * Scale an image to the analyzed size and read its pixels into the pixel buffer. Must be called within the lock.
+	 *
+	 * @param imageBitmap The image bitmap.
+	 */
+	private static void readPixels(final Bitmap imageBitmap) {
+		Bitmap sourceBitmap = imageBitmap;
+		if (SystemUtil.isAtLeastVersion(VERSION_CODES.O) && imageBitmap.getConfig() == Config.HARDWARE) {
+			// Hardware bitmaps cannot be drawn in software.
+			sourceBitmap = imageBitmap.copy(Config.ARGB_8888, false);
+		}
+		if (mAnalyzedBitmap == null) {
+			mAnalyzedBitmap = Bitmap.createBitmap(ANALYZED_BITMAP_SIZE, ANALYZED_BITMAP_SIZE, Config.ARGB_8888);
+			mAnalyzedCanvas = new Canvas(mAnalyzedBitmap);
 		}
-		return result;
+		mAnalyzedBitmap.eraseColor(Color.TRANSPARENT);
+		mAnalyzedCanvas.drawBitmap(sourceBitmap, null, TARGET_RECT, SCALING_PAINT);
+		mAnalyzedBitmap.getPixels(PIXELS, 0, ANALYZED_BITMAP_SIZE, 0, 0, ANALYZED_BITMAP_SIZE, ANALYZED_BITMAP_SIZE);
 	}
 
 	/**
-	 * Calculate average and variance of the colors from an array.
+	 * Get the hue step of a color, with the same convention as {@link Color#colorToHSV(int, float[])}.
 	 *
-	 * @param colorArray The array of colors.
-	 * @return The information about average and variance.
+	 * @param red   The red component.
+	 * @param green The green component.
+	 * @param blue  The blue component.
+	 * @param max   The maximum component.
+	 * @param delta The difference between maximum and minimum component.
+	 * @return The hue step, between 0 and HUE_STEPS - 1.
 	 */
-	private static ColorStatistics getColorStatistics(final int[] colorArray) {
-		int sampleSize = colorArray.length;
+	private static int getHueStep(final int red, final int green, final int blue, final int max, final int delta) {
+		if (delta == 0) {
+			return 0;
+		}
+		int hue;
+		if (red == max) {
+			hue = (green - blue) * HUE_SECTOR_STEPS / delta;
+		}
+		else if (green == max) {
+			hue = 2 * HUE_SECTOR_STEPS + (blue - red) * HUE_SECTOR_STEPS / delta;
+		}
+		else {
+			hue = 4 * HUE_SECTOR_STEPS + (red - green) * HUE_SECTOR_STEPS / delta; // MAGIC_NUMBER
+		}
+		if (hue < 0) {
+			hue += HUE_STEPS;
+		}
+		return hue >= HUE_STEPS ? hue - HUE_STEPS : hue;
+	}
+
+	/**
+	 * Get the bounds of a rectangle region of the analyzed bitmap.
+	 *
+	 * @param xFrom The x percentage of the left side of the rectangle.
+	 * @param xTo   The x percentage of the right side of the rectangle.
+	 * @param yFrom The y percentage of the top of the rectangle.
+	 * @param yTo   The y percentage of the bottom of the rectangle.
+	 * @return The bounds (left, right, top, bottom, inclusive).
+	 */
+	private static int[] getRegionBounds(final double xFrom, final double xTo, final double yFrom, final double yTo) {
+		return new int[] {Math.max((int) (ANALYZED_BITMAP_SIZE * xFrom), 0),
+				Math.min((int) (ANALYZED_BITMAP_SIZE * xTo), ANALYZED_BITMAP_SIZE) - 1,
+				Math.max((int) (ANALYZED_BITMAP_SIZE * yFrom), 0),
+				Math.min((int) (ANALYZED_BITMAP_SIZE * yTo), ANALYZED_BITMAP_SIZE) - 1};
+	}
+
+	/**
+	 * Calculate average and variance of the colors of a rectangle region of the pixel buffer, and store them in the region buffers.
+	 * Must be called within the lock.
+	 *
+	 * @param region The index of the region.
+	 */
+	private static void calculateColorStatistics(final int region) {
+		int[] bounds = REGION_BOUNDS[region];
 		long redSum = 0;
 		long redSquareSum = 0;
 		long greenSum = 0;
@@ -154,244 +315,290 @@ public final class ImageAnalyzer {
 		long blueSum = 0;
 		long blueSquareSum = 0;
 
-		for (int color : colorArray) {
-			int red = Color.red(color);
-			redSum += red;
-			redSquareSum += red * red;
-
-			int green = Color.green(color);
-			greenSum += green;
-			greenSquareSum += green * green;
-
-			int blue = Color.blue(color);
-			blueSum += blue;
-			blueSquareSum += blue * blue;
+		for (int y = bounds[2]; y <= bounds[3]; y++) { // MAGIC_NUMBER
+			int offset = y * ANALYZED_BITMAP_SIZE;
+			for (int x = bounds[0]; x <= bounds[1]; x++) {
+				int color = PIXELS[offset + x];
+				int red = (color >> 16) & 0xFF; // MAGIC_NUMBER
+				redSum += red;
+				redSquareSum += red * red;
+
+				int green = (color >> 8) & 0xFF; // MAGIC_NUMBER
+				greenSum += green;
+				greenSquareSum += green * green;
+
+				int blue = color & 0xFF; // MAGIC_NUMBER
+				blueSum += blue;
+				blueSquareSum += blue * blue;
+			}
 		}
 
-		int averageColor = Color.rgb((int) (redSum / sampleSize), (int) (greenSum / sampleSize), (int) (blueSum / sampleSize));
-		long variance = ((redSquareSum + greenSquareSum + blueSquareSum)
+		int sampleSize = (bounds[1] - bounds[0] + 1) * (bounds[3] - bounds[2] + 1); // MAGIC_NUMBER
+		REGION_AVERAGES[region] = Color.rgb((int) (redSum / sampleSize), (int) (greenSum / sampleSize), (int) (blueSum / sampleSize));
+		REGION_VARIANCES[region] = ((redSquareSum + greenSquareSum + blueSquareSum)
 				- (redSum * redSum + greenSum * greenSum + blueSum * blueSum) / sampleSize) / sampleSize;
-
-		return new ColorStatistics(averageColor, variance);
 	}
 
 	/**
-	 * A holder for average and variance of an array of colors.
+	 * Utility class building a tree from an array of color statistics in order to find a color with maximum representation. Pairs of
+	 * trees are joined agglomeratively, always joining the pair with the smallest joined variance. Joined variances are kept in a
+	 * matrix, and each root caches its best partner, so that only roots whose partner got joined need to be rescanned. Nodes are stored in
+	 * preallocated arrays, so that the forest can be reused without allocating memory.
 	 */
-	private static final class ColorStatistics {
+	private static final class ColorForest {
 		/**
-		 * The average color.
+		 * The maximum number of leaves.
 		 */
-		private int mAverageColor;
-
-		private int getAverageColor() {
-			return mAverageColor;
-		}
-
+		private final int mLeafCapacity;
 		/**
-		 * The variance of the array.
+		 * The first child of each node, or -1 for leaves.
 		 */
-		private long mVariance;
-
-		private long getVariance() {
-			return mVariance;
-		}
-
+		private final int[] mChild1;
 		/**
-		 * Constructor for the statistics.
-		 *
-		 * @param averageColor The average color.
-		 * @param variance     The variance.
+		 * The second child of each node, or -1 for leaves.
 		 */
-		private ColorStatistics(final int averageColor, final long variance) {
-			mAverageColor = averageColor;
-			mVariance = variance;
-		}
-	}
-
+		private final int[] mChild2;
+		/**
+		 * The number of leaves in the subtree rooted by each node.
+		 */
+		private final int[] mWeight;
+		/**
+		 * The average of all colors in the subtree rooted by each node.
+		 */
+		private final int[] mAverage;
+		/**
+		 * The total variance of all color leaves in the subtree rooted by each node.
+		 */
+		private final long[] mVariance;
+		/**
+		 * The value of each node for later usage as representative color.
+		 */
+		private final double[] mValue;
+		/**
+		 * Flag indicating if a node is the root of a tree of the forest.
+		 */
+		private final boolean[] mIsRoot;
+		/**
+		 * The joined variances of pairs of roots, indexed by smaller node index times node capacity plus bigger node index.
+		 */
+		private final long[] mPairVariance;
+		/**
+		 * For each root, the root with bigger index having the smallest joined variance with it, or -1 if there is none. As nodes are
+		 * indexed in order of creation, ties are resolved in the same way as when scanning the pairs of the roots ordered by creation.
+		 */
+		private final int[] mBestPartner;
+		/**
+		 * The buffer for HSV values.
+		 */
+		private final float[] mHsv = new float[3]; // MAGIC_NUMBER
+		/**
+		 * The number of nodes.
+		 */
+		private int mNodeCount;
 
-	/**
-	 * Utility class building a tree from an array of color statistics in order to find a color with maximum representation.
-	 */
-	private static final class ColorForest {
 		/**
-		 * The root nodes of a forest of binary trees.
+		 * Create a forest for up to the given number of leaves.
+		 *
+		 * @param leafCapacity The maximum number of leaves.
 		 */
-		private List<ColorNode> mNodes;
+		private ColorForest(final int leafCapacity) {
+			mLeafCapacity = leafCapacity;
+			int nodeCapacity = 2 * leafCapacity - 1;
+			mChild1 = new int[nodeCapacity];
+			mChild2 = new int[nodeCapacity];
+			mWeight = new int[nodeCapacity];
+			mAverage = new int[nodeCapacity];
+			mVariance = new long[nodeCapacity];
+			mValue = new double[nodeCapacity];
+			mIsRoot = new boolean[nodeCapacity];
+			mPairVariance = new long[nodeCapacity * nodeCapacity];
+			mBestPartner = new int[nodeCapacity];
+		}
 
 		/**
 		 * Get the best color out of a list of color statistics.
 		 *
-		 * @param statistics The list of color statistics.
+		 * @param averages  The average colors.
+		 * @param variances The variances of the colors.
 		 * @return The best color.
 		 */
-		private static int getBestColor(final List<ColorStatistics> statistics) {
-			ColorForest colorForest = new ColorForest(statistics);
+		private int getBestColor(final int[] averages, final long[] variances) {
+			int leafCount = Math.min(averages.length, mLeafCapacity);
+			mNodeCount = 0;
+			for (int i = 0; i < leafCount; i++) {
+				addLeaf(averages[i], variances[i]);
+			}
+			for (int i = 0; i < leafCount - 1; i++) {
+				for (int j = i + 1; j < leafCount; j++) {
+					mPairVariance[getPairIndex(i, j)] = getJoinedVariance(i, j);
+				}
+				updateBestPartner(i);
+			}
 
-			while (colorForest.mNodes.size() > 1) {
-				colorForest.joinBestPair();
+			for (int joinCount = 1; joinCount < leafCount; joinCount++) {
+				joinBestPair();
 			}
 
-			return colorForest.mNodes.get(0).getBestLeaf().mAverage;
+			return mAverage[getBestLeaf(mNodeCount - 1)];
 		}
 
 		/**
-		 * Initialize the forest with a list of color statistics. Each statistic will represent a one-node tree.
+		 * Add a leaf - a basic color entry.
 		 *
-		 * @param statistics the list of color statistics.
+		 * @param color    The color of the leaf.
+		 * @param variance The original variance of this entry.
 		 */
-		private ColorForest(final List<ColorStatistics> statistics) {
-			mNodes = new ArrayList<>();
-
-			for (ColorStatistics statistic : statistics) {
-				mNodes.add(new ColorNode(statistic.getAverageColor(), statistic.getVariance()));
-			}
+		private void addLeaf(final int color, final long variance) {
+			int node = mNodeCount++;
+			mChild1[node] = -1;
+			mChild2[node] = -1;
+			mWeight[node] = 1;
+			mAverage[node] = color;
+			mVariance[node] = variance;
+			mValue[node] = calculateValue(node);
+			mIsRoot[node] = true;
+			mBestPartner[node] = -1;
 		}
 
 		/**
 		 * Join the best pair of root nodes (i.e. the ones having the smallest variance when joined).
 		 */
 		private void joinBestPair() {
-			ColorNode bestPair = new ColorNode(0, Long.MAX_VALUE);
-
-			for (int i = 0; i < mNodes.size() - 1; i++) {
-				for (int j = i + 1; j < mNodes.size(); j++) {
-					ColorNode currentPair = new ColorNode(mNodes.get(i), mNodes.get(j));
-					if (currentPair.mVariance < bestPair.mVariance) {
-						bestPair = currentPair;
+			int child1 = -1;
+			long bestVariance = Long.MAX_VALUE;
+			for (int node = 0; node < mNodeCount; node++) {
+				if (mIsRoot[node] && mBestPartner[node] >= 0) {
+					long variance = mPairVariance[getPairIndex(node, mBestPartner[node])];
+					if (variance < bestVariance) {
+						child1 = node;
+						bestVariance = variance;
+					}
+				}
+			}
+			int child2 = mBestPartner[child1];
+
+			int node = mNodeCount++;
+			mChild1[node] = child1;
+			mChild2[node] = child2;
+			mWeight[node] = mWeight[child1] + mWeight[child2];
+			mAverage[node] = getJoinedAverage(child1, child2);
+			mVariance[node] = getJoinedVariance(child1, child2);
+			mValue[node] = Math.max(calculateValue(node), Math.max(mValue[child1], mValue[child2]));
+			mIsRoot[child1] = false;
+			mIsRoot[child2] = false;
+			mIsRoot[node] = true;
+			mBestPartner[node] = -1;
+
+			for (int other = 0; other < node; other++) {
+				if (mIsRoot[other]) {
+					long variance = getJoinedVariance(other, node);
+					mPairVariance[getPairIndex(other, node)] = variance;
+					int partner = mBestPartner[other];
+					if (partner == child1 || partner == child2) {
+						updateBestPartner(other);
+					}
+					else if (partner < 0 || variance < mPairVariance[getPairIndex(other, partner)]) {
+						mBestPartner[other] = node;
 					}
 				}
 			}
-
-			mNodes.remove(bestPair.mChild1);
-			mNodes.remove(bestPair.mChild2);
-			mNodes.add(bestPair);
 		}
 
 		/**
-		 * A node of a binary color tree. Represents either a single color or the root of a tree.
+		 * Determine the best partner of a root by scanning all roots with bigger index.
+		 *
+		 * @param node The root.
 		 */
-		private static final class ColorNode {
-			/**
-			 * The first child, if existing.
-			 */
-			private ColorNode mChild1;
-			/**
-			 * The second child, if existing.
-			 */
-			private ColorNode mChild2;
-			/**
-			 * The number of mNodes in the subtree rooted by this node.
-			 */
-			private int mWeight;
-			/**
-			 * The average of all colors in the subtree rooted by this node.
-			 */
-			private int mAverage;
-			/**
-			 * The total variance of all color mNodes in the subtree rooted by this node.
-			 */
-			private long mVariance;
-			/**
-			 * The value of a node for later usage as representative color.
-			 */
-			private double mValue;
-
-			/**
-			 * Constructor of a leaf - a basic color entry.
-			 *
-			 * @param color    The color of the leaf.
-			 * @param variance The original variance of this entry.
-			 */
-			private ColorNode(final int color, final long variance) {
-				mChild1 = null;
-				mChild2 = null;
-				mWeight = 1;
-				mAverage = color;
-				mVariance = variance;
-				mValue = calculateValue();
-			}
-
-			/**
-			 * Constructor of a non-leaf - join two color entries.
-			 *
-			 * @param child1 The first child.
-			 * @param child2 The second child.
-			 */
-			private ColorNode(final ColorNode child1, final ColorNode child2) {
-				mChild1 = child1;
-				mChild2 = child2;
-				mWeight = child1.mWeight + child2.mWeight;
-				mAverage = Color.rgb((child1.mWeight * Color.red(child1.mAverage) + child2.mWeight * Color.red(child2.mAverage)) / mWeight,
-						(child1.mWeight * Color.green(child1.mAverage) + child2.mWeight * Color.green(child2.mAverage)) / mWeight,
-						(child1.mWeight * Color.blue(child1.mAverage) + child2.mWeight * Color.blue(child2.mAverage)) / mWeight);
-				mVariance = (child1.mWeight * child1.mVariance + child2.mWeight * child2.mVariance) / mWeight
-						+ ((Color.red(child1.mAverage) - Color.red(child2.mAverage)) * (Color.red(child1.mAverage) - Color.red(child2.mAverage)))
-						+ ((Color.green(child1.mAverage) - Color.green(child2.mAverage))
-						* (Color.green(child1.mAverage) - Color.green(child2.mAverage)))
-						+ ((Color.blue(child1.mAverage) - Color.blue(child2.mAverage)) * (Color.blue(child1.mAverage) - Color.blue(child2.mAverage)))
-						* child1.mWeight * child2.mWeight / (mWeight * mWeight);
-				mValue = Math.max(calculateValue(), Math.max(child1.mValue, child2.mValue));
+		private void updateBestPartner(final int node) {
+			int bestPartner = -1;
+			long bestVariance = Long.MAX_VALUE;
+			for (int partner = node + 1; partner < mNodeCount; partner++) {
+				if (mIsRoot[partner]) {
+					long variance = mPairVariance[getPairIndex(node, partner)];
+					if (variance < bestVariance) {
+						bestPartner = partner;
+						bestVariance = variance;
+					}
+				}
 			}
+			mBestPartner[node] = bestPartner;
+		}
 
-			/**
-			 * Calculate the value from weight and variance - this should ensure that collections with low variance are preferred, provided
-			 * they have enough weight. Give slight preference to saturated colors.
-			 *
-			 * @return The calculated value.
-			 */
-			private double calculateValue() {
-				float[] hsv = new float[3]; // MAGIC_NUMBER
-				Color.colorToHSV(mAverage, hsv);
-
-				return mWeight / (50 + Math.sqrt(mVariance)) * (1 + hsv[1] * hsv[2]); // MAGIC_NUMBER
-			}
+		/**
+		 * Get the index of a pair of nodes in the pair variance matrix.
+		 *
+		 * @param node1 The node with smaller index.
+		 * @param node2 The node with bigger index.
+		 * @return The index in the pair variance matrix.
+		 */
+		private int getPairIndex(final int node1, final int node2) {
+			return node1 * mChild1.length + node2;
+		}
 
-			/**
-			 * Check if it is a leaf.
-			 *
-			 * @return true for a leaf.
-			 */
-			private boolean isLeaf() {
-				return mChild1 == null;
-			}
+		/**
+		 * Calculate the average color when joining two nodes.
+		 *
+		 * @param child1 The first node.
+		 * @param child2 The second node.
+		 * @return The joined average color.
+		 */
+		private int getJoinedAverage(final int child1, final int child2) {
+			int weight1 = mWeight[child1];
+			int weight2 = mWeight[child2];
+			int weight = weight1 + weight2;
+			int average1 = mAverage[child1];
+			int average2 = mAverage[child2];
+			return Color.rgb((weight1 * Color.red(average1) + weight2 * Color.red(average2)) / weight,
+					(weight1 * Color.green(average1) + weight2 * Color.green(average2)) / weight,
+					(weight1 * Color.blue(average1) + weight2 * Color.blue(average2)) / weight);
+		}
 
-			/**
-			 * Get the child having the bigger weight. In case of equality, take the one with lower variance.
-			 *
-			 * @return The better child.
-			 */
-			private ColorNode getBestChild() {
-				if (mChild1.mValue >= mChild2.mValue) {
-					return mChild1;
-				}
-				else {
-					return mChild2;
-				}
-			}
+		/**
+		 * Calculate the variance when joining two nodes.
+		 *
+		 * @param child1 The first node.
+		 * @param child2 The second node.
+		 * @return The joined variance.
+		 */
+		private long getJoinedVariance(final int child1, final int child2) {
+			int weight1 = mWeight[child1];
+			int weight2 = mWeight[child2];
+			int weight = weight1 + weight2;
+			int average1 = mAverage[child1];
+			int average2 = mAverage[child2];
+			int redDiff = Color.red(average1) - Color.red(average2);
+			int greenDiff = Color.green(average1) - Color.green(average2);
+			int blueDiff = Color.blue(average1) - Color.blue(average2);
+			return (weight1 * mVariance[child1] + weight2 * mVariance[child2]) / weight
+					+ redDiff * redDiff + greenDiff * greenDiff + blueDiff * blueDiff * weight1 * weight2 / (weight * weight);
+		}
 
+		/**
+		 * Calculate the value from weight and variance - this should ensure that collections with low variance are preferred, provided
+		 * they have enough weight. Give slight preference to saturated colors.
+		 *
+		 * @param node The node.
+		 * @return The calculated value.
+		 */
+		private double calculateValue(final int node) {
+			Color.colorToHSV(mAverage[node], mHsv);
 
-			/**
-			 * Go down the tree via best children to get the best leaf node.
-			 *
-			 * @return The best leaf node.
-			 */
-			private ColorNode getBestLeaf() {
-				if (isLeaf()) {
-					return this;
-				}
-				else {
-					return getBestChild().getBestLeaf();
-				}
-			}
+			return mWeight[node] / (50 + Math.sqrt(mVariance[node])) * (1 + mHsv[1] * mHsv[2]); // MAGIC_NUMBER
+		}
 
-			@Override
-			public String toString() {
-				return "(" + mWeight + "|" + Color.red(mAverage) + "," + Color.green(mAverage) + "," + Color.blue(mAverage) + "|" + mVariance
-						+ "|" + mValue + ")";
+		/**
+		 * Go down the tree via best children to get the best leaf node. The best child is the one with the bigger value, in case of
+		 * equality the first child.
+		 *
+		 * @param root The root of the tree.
+		 * @return The best leaf node.
+		 */
+		private int getBestLeaf(final int root) {
+			int node = root;
+			while (mChild1[node] >= 0) {
+				node = mValue[mChild1[node]] >= mValue[mChild2[node]] ? mChild1[node] : mChild2[node];
 			}
+			return node;
 		}
 	}
-
-
 }
@@ -0,0 +1,373 @@
+package de.jeisfeld.randomimage.util;
+
+import android.os.Build.VERSION_CODES;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Utility class for detecting the image type of a file from its first bytes, without invoking a decoder.
+ */
+public final class ImageHeaderSniffer {
+	/**
+	 * The number of header bytes read from a file.
+	 */
+	private static final int HEADER_SIZE = 32;
+
+	/**
+	 * The maximum number of verdicts kept in the cache.
+	 */
+	private static final int MAX_CACHE_SIZE = 2000;
+
+	/**
+	 * The cache of verdicts, keyed by file path.
+	 */
+	private static final Map<String, HeaderInfo> VERDICT_CACHE = new LinkedHashMap<String, HeaderInfo>(16, 0.75f, true) { // MAGIC_NUMBER
+		/**
+		 * The default serial version id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, HeaderInfo> eldest) {
+			return size() > MAX_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ImageHeaderSniffer() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the header information of a file, using the cached verdict if the file has not been changed.
+	 *
+	 * @param file The file.
+	 * @return The header information. Type is UNKNOWN if the file is not a recognized image.
+	 */
+	public static HeaderInfo getHeaderInfo(final File file) {
+		String path = file.getAbsolutePath();
+		long size = file.length();
+		long lastModified = file.lastModified();
+
+		synchronized (VERDICT_CACHE) {
+			HeaderInfo cachedInfo = VERDICT_CACHE.get(path);
+			if (cachedInfo != null && cachedInfo.mFileSize == size && cachedInfo.mLastModified == lastModified) {
+				return cachedInfo;
+			}
+		}
+
+		HeaderInfo headerInfo = sniff(readHeader(file), size, lastModified);
+		synchronized (VERDICT_CACHE) {
+			VERDICT_CACHE.put(path, headerInfo);
+		}
+		return headerInfo;
+	}
+
+	/**
+	 * Check if a file is an image in one of the recognized formats which can be decoded on this device. HEIF requires Android P and
+	 * AVIF requires Android S.
+	 *
+	 * @param file The file.
+	 * @return true if the file header indicates a decodable image.
+	 */
+	public static boolean isImage(final File file) {
+		switch (getHeaderInfo(file).getType()) {
+		case HEIF:
+			return SystemUtil.isAtLeastVersion(VERSION_CODES.P);
+		case AVIF:
+			return SystemUtil.isAtLeastVersion(VERSION_CODES.S);
+		case UNKNOWN:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Get the image type from header bytes which have already been read.
+	 *
+	 * @param header The buffer containing the header bytes.
+	 * @param length The number of valid bytes in the buffer.
+	 * @return The image type.
+	 */
+	static ImageType getImageType(final byte[] header, final int length) {
+		byte[] headerBytes = new byte[Math.max(Math.min(length, HEADER_SIZE), 0)];
+		System.arraycopy(header, 0, headerBytes, 0, headerBytes.length);
+		return sniff(headerBytes, 0, 0).getType();
+	}
+
+	/**
+	 * Read the header bytes of a file.
+	 *
+	 * @param file The file.
+	 * @return The header bytes. May be shorter than HEADER_SIZE.
+	 */
+	private static byte[] readHeader(final File file) {
+		byte[] buffer = new byte[HEADER_SIZE];
+		int length = 0;
+		try (InputStream inputStream = new FileInputStream(file)) {
+			int count = inputStream.read(buffer, 0, HEADER_SIZE);
+			while (count > 0) {
+				length += count;
+				count = length < HEADER_SIZE ? inputStream.read(buffer, length, HEADER_SIZE - length) : -1;
+			}
+		}
+		catch (IOException e) {
+			return new byte[0];
+		}
+		if (length == HEADER_SIZE) {
+			return buffer;
+		}
+		byte[] result = new byte[length];
+		System.arraycopy(buffer, 0, result, 0, length);
+		return result;
+	}
+
+	/**
+	 * Determine image type and, if available, dimensions from the header bytes.
+	 *
+	 * @param header       The header bytes.
+	 * @param fileSize     The file size.
+	 * @param lastModified The last modification timestamp of the file.
+	 * @return The header information.
+	 */
+	private static HeaderInfo sniff(final byte[] header, final long fileSize, final long lastModified) {
+		if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) { // MAGIC_NUMBER
+			// JPEG dimensions are stored in the SOF segment, which is beyond the header.
+			return new HeaderInfo(ImageType.JPEG, -1, -1, fileSize, lastModified);
+		}
+		if (startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) { // MAGIC_NUMBER
+			return new HeaderInfo(ImageType.PNG, readIntBigEndian(header, 16), readIntBigEndian(header, 20), fileSize, lastModified); // MAGIC_NUMBER
+		}
+		if (startsWith(header, 0, 'G', 'I', 'F', '8')) {
+			return new HeaderInfo(ImageType.GIF, readShortLittleEndian(header, 6), readShortLittleEndian(header, 8), fileSize, lastModified); // MAGIC_NUMBER
+		}
+		if (startsWith(header, 0, 'B', 'M') && header.length >= 26) { // MAGIC_NUMBER
+			return new HeaderInfo(ImageType.BMP, readIntLittleEndian(header, 18), Math.abs(readIntLittleEndian(header, 22)), // MAGIC_NUMBER
+					fileSize, lastModified);
+		}
+		if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) { // MAGIC_NUMBER
+			if (startsWith(header, 12, 'V', 'P', '8', 'X') && header.length >= 30) { // MAGIC_NUMBER
+				return new HeaderInfo(ImageType.WEBP, readInt24LittleEndian(header, 24) + 1, readInt24LittleEndian(header, 27) + 1, // MAGIC_NUMBER
+						fileSize, lastModified);
+			}
+			else if (startsWith(header, 12, 'V', 'P', '8', 'L') && header.length >= 25) { // MAGIC_NUMBER
+				int bits = readIntLittleEndian(header, 21); // MAGIC_NUMBER
+				return new HeaderInfo(ImageType.WEBP, (bits & 0x3FFF) + 1, ((bits >> 14) & 0x3FFF) + 1, fileSize, lastModified); // MAGIC_NUMBER
+			}
+			else if (startsWith(header, 12, 'V', 'P', '8', ' ') && header.length >= 30) { // MAGIC_NUMBER
+				return new HeaderInfo(ImageType.WEBP, readShortLittleEndian(header, 26) & 0x3FFF, readShortLittleEndian(header, 28) & 0x3FFF, // MAGIC_NUMBER
+						fileSize, lastModified);
+			}
+			return new HeaderInfo(ImageType.WEBP, -1, -1, fileSize, lastModified);
+		}
+		if (startsWith(header, 0, 'I', 'I', 0x2A, 0x00) || startsWith(header, 0, 'M', 'M', 0x00, 0x2A)) { // MAGIC_NUMBER
+			// TIFF dimensions are stored in the first IFD, which may be beyond the header.
+			return new HeaderInfo(ImageType.TIFF, -1, -1, fileSize, lastModified);
+		}
+		if (startsWith(header, 4, 'f', 't', 'y', 'p') && header.length >= 12) { // MAGIC_NUMBER
+			// ISO base media file - check major brand and compatible brands within the header.
+			int boxSize = Math.min(readIntBigEndian(header, 0), header.length);
+			ImageType type = getBrandType(header, 8); // MAGIC_NUMBER
+			for (int offset = 16; offset + 4 <= boxSize && type != ImageType.AVIF; offset += 4) { // MAGIC_NUMBER
+				ImageType compatibleType = getBrandType(header, offset);
+				if (compatibleType != ImageType.UNKNOWN) {
+					type = compatibleType;
+				}
+			}
+			return new HeaderInfo(type, -1, -1, fileSize, lastModified);
+		}
+		return new HeaderInfo(ImageType.UNKNOWN, -1, -1, fileSize, lastModified);
+	}
+
+	/**
+	 * Get the image type indicated by an ISO base media file brand.
+	 *
+	 * @param header The header bytes.
+	 * @param offset The offset of the brand.
+	 * @return The image type, or UNKNOWN if the brand does not indicate an image.
+	 */
+	private static ImageType getBrandType(final byte[] header, final int offset) {
+		if (startsWith(header, offset, 'a', 'v', 'i', 'f') || startsWith(header, offset, 'a', 'v', 'i', 's')) {
+			return ImageType.AVIF;
+		}
+		if (startsWith(header, offset, 'h', 'e', 'i', 'c') || startsWith(header, offset, 'h', 'e', 'i', 'x')
+				|| startsWith(header, offset, 'h', 'e', 'v', 'c') || startsWith(header, offset, 'h', 'e', 'v', 'x')
+				|| startsWith(header, offset, 'h', 'e', 'i', 'm') || startsWith(header, offset, 'h', 'e', 'i', 's')
+				|| startsWith(header, offset, 'm', 'i', 'f', '1') || startsWith(header, offset, 'm', 's', 'f', '1')) {
+			return ImageType.HEIF;
+		}
+		return ImageType.UNKNOWN;
+	}
+
+	/**
+	 * Check if the header contains the given bytes at the given offset.
+	 *
+	 * @param header The header bytes.
+	 * @param offset The offset.
+	 * @param bytes  The expected bytes.
+	 * @return true if the bytes match.
+	 */
+	private static boolean startsWith(final byte[] header, final int offset, final int... bytes) {
+		if (header.length < offset + bytes.length) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if ((header[offset + i] & 0xFF) != bytes[i]) { // MAGIC_NUMBER
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read a 32 bit big endian integer from the header.
+	 *
+	 * @param header The header bytes.
+	 * @param offset The offset.
+	 * @return The integer value, or -1 if the header is too short.
+	 */
+	private static int readIntBigEndian(final byte[] header, final int offset) {
+		if (header.length < offset + 4) { // MAGIC_NUMBER
+			return -1;
+		}
+		return (header[offset] & 0xFF) << 24 | (header[offset + 1] & 0xFF) << 16 | (header[offset + 2] & 0xFF) << 8 | (header[offset + 3] & 0xFF); // MAGIC_NUMBER
+	}
+
+	/**
+	 * Read a 32 bit little endian integer from the header.
+	 *
+	 * @param header The header bytes.
+	 * @param offset The offset.
+	 * @return The integer value, or -1 if the header is too short.
+	 */
+	private static int readIntLittleEndian(final byte[] header, final int offset) {
+		if (header.length < offset + 4) { // MAGIC_NUMBER
+			return -1;
+		}
+		return (header[offset + 3] & 0xFF) << 24 | (header[offset + 2] & 0xFF) << 16 | (header[offset + 1] & 0xFF) << 8 | (header[offset] & 0xFF); // MAGIC_NUMBER
+	}
+
+	/**
+	 * Read a 24 bit little endian integer from the header.
+	 *
+	 * @param header The header bytes.
+	 * @param offset The offset.
+	 * @return The integer value, or -1 if the header is too short.
+	 */
+	private static int readInt24LittleEndian(final byte[] header, final int offset) {
+		if (header.length < offset + 3) { // MAGIC_NUMBER
+			return -1;
+		}
+		return (header[offset + 2] & 0xFF) << 16 | (header[offset + 1] & 0xFF) << 8 | (header[offset] & 0xFF); // MAGIC_NUMBER
+	}
+
+	/**
+	 * Read a 16 bit little endian integer from the header.
+	 *
+	 * @param header The header bytes.
+	 * @param offset The offset.
+	 * @return The integer value, or -1 if the header is too short.
+	 */
+	private static int readShortLittleEndian(final byte[] header, final int offset) {
+		if (header.length < offset + 2) {
+			return -1;
+		}
+		return (header[offset + 1] & 0xFF) << 8 | (header[offset] & 0xFF); // MAGIC_NUMBER
+	}
+
+	/**
+	 * The image types recognized from the file header.
+	 */
+	public enum ImageType {
+		// JAVADOC:OFF
+		JPEG, PNG, GIF, WEBP, HEIF, AVIF, BMP, TIFF, UNKNOWN
+		// JAVADOC:ON
+	}
+
+	/**
+	 * Information about an image retrieved from the file header.
+	 */
+	public static final class HeaderInfo {
+		/**
+		 * The image type.
+		 */
+		private final ImageType mType;
+		/**
+		 * The image width, or -1 if not available from the header.
+		 */
+		private final int mWidth;
+		/**
+		 * The image height, or -1 if not available from the header.
+		 */
+		private final int mHeight;
+		/**
+		 * The file size for which this information is valid.
+		 */
+		private final long mFileSize;
+		/**
+		 * The modification timestamp for which this information is valid.
+		 */
+		private final long mLastModified;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param type         The image type.
+		 * @param width        The image width.
+		 * @param height       The image height.
+		 * @param fileSize     The file size.
+		 * @param lastModified The modification timestamp.
+		 */
+		private HeaderInfo(final ImageType type, final int width, final int height, final long fileSize, final long lastModified) {
+			mType = type;
+			mWidth = width;
+			mHeight = height;
+			mFileSize = fileSize;
+			mLastModified = lastModified;
+		}
+
+		/**
+		 * Get the image type.
+		 *
+		 * @return the image type.
+		 */
+		public ImageType getType() {
+			return mType;
+		}
+
+		/**
+		 * Get the image width.
+		 *
+		 * @return the width, or -1 if not available from the header.
+		 */
+		public int getWidth() {
+			return mWidth;
+		}
+
+		/**
+		 * Get the image height.
+		 *
+		 * @return the height, or -1 if not available from the header.
+		 */
+		public int getHeight() {
+			return mHeight;
+		}
+
+		/**
+		 * Check if the dimensions are available from the header.
+		 *
+		 * @return true if width and height are known.
+		 */
+		public boolean hasDimensions() {
+			return mWidth > 0 && mHeight > 0;
+		}
+	}
+}
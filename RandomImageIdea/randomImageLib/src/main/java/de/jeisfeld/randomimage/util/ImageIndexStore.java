@@ -0,0 +1,384 @@
+package de.jeisfeld.randomimage.util;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import de.jeisfeld.randomimage.Application;
+
+/**
+ * App-owned persistent store of values derived from image files. The store is an append-only index file which is loaded into memory on
+ * first access. Entries are valid only as long as modification date and size of the image file are unchanged. Subclasses define the
+ * serialization of the values and how values are determined in the background.
+ *
+ * @param <T> The type of the stored values.
+ */
+abstract class ImageIndexStore<T> {
+	/**
+	 * The version of the index file format.
+	 */
+	private static final int INDEX_VERSION = 1;
+
+	/**
+	 * The suffix of the index file.
+	 */
+	private static final String INDEX_SUFFIX = ".idx";
+
+	/**
+	 * The suffix of temporary files used during compaction.
+	 */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The minimum number of obsolete records in the index file which triggers compaction.
+	 */
+	private static final int MIN_OBSOLETE_RECORDS = 1000;
+
+	/**
+	 * The name of the store, used as name of its folder and index file.
+	 */
+	private final String mName;
+
+	/**
+	 * The number of new entries collected before they are appended to the index file.
+	 */
+	private final int mFlushCount;
+
+	/**
+	 * The maximum number of entries. If exceeded, the store is cleared.
+	 */
+	private final int mMaxEntries;
+
+	/**
+	 * The index of the store.
+	 */
+	private final Map<String, IndexEntry<T>> mIndex = new HashMap<>();
+
+	/**
+	 * The paths of entries which have not yet been written to the index file.
+	 */
+	private final Set<String> mPendingPaths = new LinkedHashSet<>();
+
+	/**
+	 * The paths of images waiting for background processing.
+	 */
+	private final Set<String> mQueue = new LinkedHashSet<>();
+
+	/**
+	 * Flag indicating if the index has been loaded.
+	 */
+	private boolean mIsLoaded = false;
+
+	/**
+	 * The thread doing the background processing.
+	 */
+	private Thread mWorkerThread = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name       The name of the store, used as name of its folder and index file.
+	 * @param flushCount The number of new entries collected before they are appended to the index file.
+	 * @param maxEntries The maximum number of entries. If exceeded, the store is cleared.
+	 */
+	ImageIndexStore(final String name, final int flushCount, final int maxEntries) {
+		mName = name;
+		mFlushCount = flushCount;
+		mMaxEntries = maxEntries;
+	}
+
+	/**
+	 * Write a value to the index.
+	 *
+	 * @param indexStream The index stream.
+	 * @param value       The value.
+	 * @throws IOException thrown if the value cannot be written.
+	 */
+	protected abstract void writeValue(DataOutputStream indexStream, T value) throws IOException;
+
+	/**
+	 * Read a value from the index.
+	 *
+	 * @param indexStream The index stream.
+	 * @return The value.
+	 * @throws IOException thrown if the value cannot be read.
+	 */
+	protected abstract T readValue(DataInputStream indexStream) throws IOException;
+
+	/**
+	 * Determine and store the value of an image queued for background processing.
+	 *
+	 * @param path The file path of the image.
+	 */
+	protected abstract void process(String path);
+
+	/**
+	 * Get the stored value of an image.
+	 *
+	 * @param path The file path of the image.
+	 * @return The value, or null if there is no valid entry.
+	 */
+	final synchronized T get(final String path) {
+		loadIndex();
+		IndexEntry<T> entry = mIndex.get(path);
+		return entry != null && entry.isValidFor(new File(path)) ? entry.mValue : null;
+	}
+
+	/**
+	 * Store the value of an image. The entry is written to the index file together with further entries.
+	 *
+	 * @param path         The file path of the image.
+	 * @param lastModified The last modification date of the image file when determining the value.
+	 * @param size         The size of the image file when determining the value.
+	 * @param value        The value.
+	 */
+	final synchronized void put(final String path, final long lastModified, final long size, final T value) {
+		loadIndex();
+		if (mIndex.size() >= mMaxEntries && !mIndex.containsKey(path)) {
+			reset();
+		}
+		mIndex.put(path, new IndexEntry<>(lastModified, size, value));
+		mPendingPaths.add(path);
+		if (mPendingPaths.size() >= mFlushCount) {
+			flush();
+		}
+	}
+
+	/**
+	 * Write all pending entries to the index file.
+	 */
+	final synchronized void flush() {
+		if (mPendingPaths.isEmpty()) {
+			return;
+		}
+		try (DataOutputStream indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getIndexFile(), true)))) {
+			for (String path : mPendingPaths) {
+				write(indexStream, path, mIndex.get(path));
+			}
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to write " + mName + " index", e);
+		}
+		mPendingPaths.clear();
+	}
+
+	/**
+	 * Clear the store.
+	 */
+	final synchronized void clear() {
+		mIsLoaded = true;
+		reset();
+	}
+
+	/**
+	 * Queue the given images for background processing.
+	 *
+	 * @param paths The file paths of the images.
+	 */
+	final void queue(final Collection<String> paths) {
+		if (paths == null || paths.isEmpty()) {
+			return;
+		}
+		synchronized (mQueue) {
+			mQueue.addAll(paths);
+			mQueue.remove(null);
+			if (mWorkerThread != null) {
+				return;
+			}
+			mWorkerThread = new Thread() {
+				@Override
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					while (true) {
+						String path;
+						synchronized (mQueue) {
+							Iterator<String> iterator = mQueue.iterator();
+							if (!iterator.hasNext()) {
+								mWorkerThread = null;
+								break;
+							}
+							path = iterator.next();
+							iterator.remove();
+						}
+						try {
+							process(path);
+						}
+						catch (Exception e) {
+							Log.w(Application.TAG, "Failed to determine " + mName + " of " + path, e);
+						}
+					}
+					flush();
+				}
+			};
+			mWorkerThread.start();
+		}
+	}
+
+	/**
+	 * Load the index from the index file, if not yet done. Must be called within the lock.
+	 */
+	private void loadIndex() {
+		if (mIsLoaded) {
+			return;
+		}
+		mIsLoaded = true;
+		File indexFile = getIndexFile();
+		if (!indexFile.exists()) {
+			reset();
+			return;
+		}
+
+		int recordCount = 0;
+		boolean isTruncated = false;
+		try (DataInputStream indexStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (indexStream.readInt() != INDEX_VERSION) {
+				reset();
+				return;
+			}
+			while (true) {
+				String path;
+				try {
+					path = indexStream.readUTF();
+				}
+				catch (EOFException e) {
+					break;
+				}
+				long lastModified = indexStream.readLong();
+				long size = indexStream.readLong();
+				// Later entries replace earlier ones.
+				mIndex.put(path, new IndexEntry<>(lastModified, size, readValue(indexStream)));
+				recordCount++;
+			}
+		}
+		catch (IOException e) {
+			// Truncated last entry - ignore it, and rewrite the index so that further entries can be appended.
+			Log.w(Application.TAG, "Incomplete " + mName + " index", e);
+			isTruncated = true;
+		}
+
+		if (isTruncated || recordCount - mIndex.size() >= Math.max(mIndex.size(), MIN_OBSOLETE_RECORDS)) {
+			compact();
+		}
+	}
+
+	/**
+	 * Rewrite the index file, so that it contains only the current entries. Must be called within the lock.
+	 */
+	private void compact() {
+		File tempIndexFile = new File(getIndexFile().getPath() + TEMP_SUFFIX);
+		try (DataOutputStream indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempIndexFile)))) {
+			indexStream.writeInt(INDEX_VERSION);
+			for (Entry<String, IndexEntry<T>> indexEntry : mIndex.entrySet()) {
+				write(indexStream, indexEntry.getKey(), indexEntry.getValue());
+			}
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to compact " + mName + " index", e);
+			return;
+		}
+		if (!tempIndexFile.renameTo(getIndexFile())) {
+			reset();
+		}
+	}
+
+	/**
+	 * Reset the store to empty state. Must be called within the lock.
+	 */
+	private void reset() {
+		mIndex.clear();
+		mPendingPaths.clear();
+		try (DataOutputStream indexStream = new DataOutputStream(new FileOutputStream(getIndexFile()))) {
+			indexStream.writeInt(INDEX_VERSION);
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to create " + mName + " index", e);
+		}
+	}
+
+	/**
+	 * Write an entry to the index.
+	 *
+	 * @param indexStream The index stream.
+	 * @param path        The file path of the image.
+	 * @param entry       The entry.
+	 * @throws IOException thrown if the entry cannot be written.
+	 */
+	private void write(final DataOutputStream indexStream, final String path, final IndexEntry<T> entry) throws IOException {
+		indexStream.writeUTF(path);
+		indexStream.writeLong(entry.mLastModified);
+		indexStream.writeLong(entry.mSize);
+		writeValue(indexStream, entry.mValue);
+	}
+
+	/**
+	 * Get the index file of the store.
+	 *
+	 * @return The index file.
+	 */
+	private File getIndexFile() {
+		File folder = new File(Application.getAppContext().getCacheDir(), mName);
+		if (!folder.exists() && !folder.mkdirs()) {
+			Log.w(Application.TAG, "Failed to create " + mName + " folder");
+		}
+		return new File(folder, mName + INDEX_SUFFIX);
+	}
+
+	/**
+	 * An entry of the index.
+	 *
+	 * @param <T> The type of the stored value.
+	 */
+	private static final class IndexEntry<T> {
+		/**
+		 * The last modification date of the image file.
+		 */
+		private final long mLastModified;
+		/**
+		 * The size of the image file.
+		 */
+		private final long mSize;
+		/**
+		 * The value.
+		 */
+		private final T mValue;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param lastModified The last modification date of the image file.
+		 * @param size         The size of the image file.
+		 * @param value        The value.
+		 */
+		private IndexEntry(final long lastModified, final long size, final T value) {
+			mLastModified = lastModified;
+			mSize = size;
+			mValue = value;
+		}
+
+		/**
+		 * Check if the entry is valid for the given image file.
+		 *
+		 * @param file The image file.
+		 * @return true if the file is unchanged since creation of the entry.
+		 */
+		private boolean isValidFor(final File file) {
+			return file.lastModified() == mLastModified && file.length() == mSize;
+		}
+	}
+}
@@ -625,6 +625,8 @@ public abstract class ImageList implements RandomFileProvider {
 			}
 
 			writer.close();
+			// Images prepared for widgets and notifications may not fit the changed list.
+			PreparedImageStore.clear();
 
 			if (backupFile.exists()) {
 				boolean success = backupFile.delete();
@@ -726,7 +728,7 @@ public abstract class ImageList implements RandomFileProvider {
 	}
 
 	/**
-	 * Add a file name. This does not yet update the list of all images!
+	 * Add a file name. This does not yet update the list of all images! The file header is checked to be an image.
 	 *
 	 * @param fileName The file name to be added.
 	 * @return true if the file was not in the list before and hence has been added.
@@ -737,7 +739,7 @@ public abstract class ImageList implements RandomFileProvider {
 		}
 
 		File file = new File(fileName);
-		if (!file.exists() || file.isDirectory()) {
+		if (!ImageUtil.isImage(file, true)) {
 			return false;
 		}
 		ListElement element = new ListElement(FILE, fileName);
@@ -798,7 +800,7 @@ public abstract class ImageList implements RandomFileProvider {
 			else {
 				mElements.add(element);
 				if (isRecursive) {
-					ImageUtil.checkForQuickParsing(folderName);
+					ImageUtil.measureParsingDuration(folderName);
 				}
 				return true;
 			}
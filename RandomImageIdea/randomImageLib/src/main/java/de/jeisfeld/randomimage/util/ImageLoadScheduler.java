@@ -0,0 +1,264 @@
+package de.jeisfeld.randomimage.util;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.jeisfeld.randomimage.Application;
+
+/**
+ * Scheduler for loading bitmaps in the background, using a fixed pool of worker threads. The most recent requests are served first,
+ * as they usually belong to the currently visible views. Requests for the same key are done only once, and requests may be
+ * cancelled while waiting or running.
+ */
+public final class ImageLoadScheduler {
+	/**
+	 * The number of worker threads.
+	 */
+	private static final int WORKER_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The executor running the load tasks. The queue is LIFO, so that the most recent request is executed first.
+	 */
+	private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 0, TimeUnit.MILLISECONDS,
+			new LinkedBlockingDeque<Runnable>() {
+				/**
+				 * The default serial version id.
+				 */
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public boolean offer(final Runnable runnable) {
+					return super.offerFirst(runnable);
+				}
+			}, runnable -> {
+		Thread thread = new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			runnable.run();
+		});
+		thread.setName("ImageLoadScheduler");
+		return thread;
+	});
+
+	/**
+	 * The tasks that are waiting or running, by key.
+	 */
+	private static final Map<String, LoadTask> PENDING_TASKS = new HashMap<>();
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ImageLoadScheduler() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Submit a load request. If there is already a pending request with the same key, then the bitmap is loaded only once.
+	 *
+	 * @param key      The key identifying the requested bitmap (typically file path and size). If null, no deduplication is done.
+	 * @param loader   The loader of the bitmap, executed in the background.
+	 * @param listener The listener notified in the background after loading. Not called if the request is cancelled.
+	 * @return The request, which may be used for cancellation.
+	 */
+	public static Request submit(final String key, final BitmapLoader loader, final LoadListener listener) {
+		Request request = new Request(listener);
+		LoadTask task;
+		synchronized (PENDING_TASKS) {
+			task = key == null ? null : PENDING_TASKS.get(key);
+			if (task != null && task.addRequest(request)) {
+				request.mTask = task;
+				return request;
+			}
+			task = new LoadTask(key, loader);
+			task.addRequest(request);
+			request.mTask = task;
+			if (key != null) {
+				PENDING_TASKS.put(key, task);
+			}
+		}
+		EXECUTOR.execute(task);
+		return request;
+	}
+
+	/**
+	 * Interface for loading a bitmap.
+	 */
+	public interface BitmapLoader {
+		/**
+		 * Load the bitmap.
+		 *
+		 * @return The bitmap.
+		 */
+		Bitmap load();
+	}
+
+	/**
+	 * Listener for loaded bitmaps.
+	 */
+	public interface LoadListener {
+		/**
+		 * Callback called after loading the bitmap.
+		 *
+		 * @param bitmap The bitmap. It is owned by the listener.
+		 */
+		void onBitmapLoaded(Bitmap bitmap);
+	}
+
+	/**
+	 * A load request.
+	 */
+	public static final class Request {
+		/**
+		 * The listener of the request.
+		 */
+		private final LoadListener mListener;
+		/**
+		 * The task executing the request.
+		 */
+		private LoadTask mTask;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param listener The listener of the request.
+		 */
+		private Request(final LoadListener listener) {
+			mListener = listener;
+		}
+
+		/**
+		 * Cancel the request. If this was the only request of the task, the task is removed from the queue.
+		 */
+		public void cancel() {
+			LoadTask task = mTask;
+			if (task != null) {
+				task.removeRequest(this);
+			}
+		}
+	}
+
+	/**
+	 * A task loading a bitmap for one or more requests.
+	 */
+	private static final class LoadTask implements Runnable {
+		/**
+		 * The key of the task.
+		 */
+		private final String mKey;
+		/**
+		 * The loader of the bitmap.
+		 */
+		private final BitmapLoader mLoader;
+		/**
+		 * The requests waiting for this task.
+		 */
+		private final List<Request> mRequests = new ArrayList<>();
+		/**
+		 * Flag indicating if the task has completed loading, so that no more requests can be added.
+		 */
+		private boolean mIsCompleted = false;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param key    The key of the task.
+		 * @param loader The loader of the bitmap.
+		 */
+		private LoadTask(final String key, final BitmapLoader loader) {
+			mKey = key;
+			mLoader = loader;
+		}
+
+		/**
+		 * Add a request to this task.
+		 *
+		 * @param request The request.
+		 * @return false if the task is already completed.
+		 */
+		private synchronized boolean addRequest(final Request request) {
+			if (mIsCompleted) {
+				return false;
+			}
+			mRequests.add(request);
+			return true;
+		}
+
+		/**
+		 * Remove a request from this task. If there are no more requests, the task is cancelled.
+		 *
+		 * @param request The request.
+		 */
+		private void removeRequest(final Request request) {
+			boolean isObsolete;
+			synchronized (this) {
+				mRequests.remove(request);
+				isObsolete = mRequests.isEmpty() && !mIsCompleted;
+			}
+			if (isObsolete && EXECUTOR.remove(this)) {
+				removeFromPendingTasks();
+			}
+		}
+
+		/**
+		 * Remove the task from the pending tasks.
+		 */
+		private void removeFromPendingTasks() {
+			if (mKey != null) {
+				synchronized (PENDING_TASKS) {
+					if (PENDING_TASKS.get(mKey) == this) {
+						PENDING_TASKS.remove(mKey);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			boolean isCancelled;
+			synchronized (this) {
+				isCancelled = mRequests.isEmpty();
+			}
+			Bitmap bitmap = null;
+			if (!isCancelled) {
+				try {
+					bitmap = mLoader.load();
+				}
+				catch (Exception e) {
+					Log.w(Application.TAG, "Failed to load bitmap " + mKey, e);
+				}
+			}
+
+			List<Request> requests;
+			synchronized (this) {
+				mIsCompleted = true;
+				requests = new ArrayList<>(mRequests);
+			}
+			removeFromPendingTasks();
+
+			if (bitmap == null) {
+				return;
+			}
+			if (requests.isEmpty()) {
+				BitmapPool.release(bitmap);
+				return;
+			}
+			// Each listener owns its bitmap, so further listeners get a copy.
+			Bitmap[] bitmaps = new Bitmap[requests.size()];
+			bitmaps[0] = bitmap;
+			for (int i = 1; i < bitmaps.length; i++) {
+				bitmaps[i] = bitmap.copy(bitmap.getConfig() == null ? Bitmap.Config.ARGB_8888 : bitmap.getConfig(), true);
+			}
+			for (int i = 0; i < bitmaps.length; i++) {
+				requests.get(i).mListener.onBitmapLoaded(bitmaps[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package de.jeisfeld.randomimage.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * App-owned persistent store of image metadata (EXIF rotation, capture date and dimensions), so that image headers need to be parsed
+ * only once per image. Entries are added whenever an image header is parsed. The store is an append-only index file which is loaded
+ * into memory on first access. Entries are valid only as long as modification date and size of the image file are unchanged.
+ */
+public final class ImageMetadataStore {
+	/**
+	 * The number of new entries collected before they are appended to the index file.
+	 */
+	private static final int FLUSH_COUNT = 32;
+
+	/**
+	 * The maximum number of entries. If exceeded, the store is cleared.
+	 */
+	private static final int MAX_ENTRIES = 100000;
+
+	/**
+	 * The underlying index store.
+	 */
+	private static final ImageIndexStore<ImageMetadata> STORE = new ImageIndexStore<ImageMetadata>("metadata", FLUSH_COUNT, MAX_ENTRIES) {
+		@Override
+		protected void writeValue(final DataOutputStream indexStream, final ImageMetadata metadata) throws IOException {
+			indexStream.writeInt(metadata.mRotation);
+			indexStream.writeInt(metadata.mWidth);
+			indexStream.writeInt(metadata.mHeight);
+			indexStream.writeLong(metadata.mDate);
+		}
+
+		@Override
+		protected ImageMetadata readValue(final DataInputStream indexStream) throws IOException {
+			ImageMetadata metadata = new ImageMetadata();
+			metadata.mRotation = indexStream.readInt();
+			metadata.mWidth = indexStream.readInt();
+			metadata.mHeight = indexStream.readInt();
+			metadata.mDate = indexStream.readLong();
+			return metadata;
+		}
+
+		@Override
+		protected void process(final String path) {
+			ImageUtil.getImageMetadata(path);
+		}
+	};
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ImageMetadataStore() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the stored metadata of an image.
+	 *
+	 * @param path The file path of the image.
+	 * @return The metadata, or null if there is no valid entry.
+	 */
+	static ImageMetadata getMetadata(final String path) {
+		return STORE.get(path);
+	}
+
+	/**
+	 * Store the metadata of an image. The entry is written to the index file together with further entries.
+	 *
+	 * @param path         The file path of the image.
+	 * @param lastModified The last modification date of the image file when reading the metadata.
+	 * @param size         The size of the image file when reading the metadata.
+	 * @param metadata     The metadata.
+	 */
+	static void putMetadata(final String path, final long lastModified, final long size, final ImageMetadata metadata) {
+		STORE.put(path, lastModified, size, metadata);
+	}
+
+	/**
+	 * Write all pending entries to the index file.
+	 */
+	public static void flush() {
+		STORE.flush();
+	}
+
+	/**
+	 * Clear the store.
+	 */
+	public static void clear() {
+		STORE.clear();
+	}
+
+	/**
+	 * Metadata of an image file.
+	 */
+	static final class ImageMetadata {
+		/**
+		 * The rotation in degrees, as stored in the EXIF data.
+		 */
+		int mRotation = 0;
+		/**
+		 * The width of the image, as stored in the file.
+		 */
+		int mWidth = 0;
+		/**
+		 * The height of the image, as stored in the file.
+		 */
+		int mHeight = 0;
+		/**
+		 * The capture date in milliseconds, as stored in the EXIF data. 0 if not available.
+		 */
+		long mDate = 0;
+	}
+}
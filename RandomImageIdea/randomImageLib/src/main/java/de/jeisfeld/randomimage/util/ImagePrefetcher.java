@@ -0,0 +1,340 @@
+package de.jeisfeld.randomimage.util;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import de.jeisfeld.randomimage.Application;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
+
+/**
+ * Prefetcher decoding the upcoming images of a slideshow in the background, together with their background color, so that they can
+ * be displayed instantly. The number of prefetched images is limited by a memory budget and by the available heap, and is reduced
+ * after memory trim signals.
+ */
+public final class ImagePrefetcher {
+	/**
+	 * The fraction of the large memory class to be used for prefetched bitmaps.
+	 */
+	private static final int MEMORY_CLASS_FRACTION = 4;
+
+	/**
+	 * The number of bytes per megabyte.
+	 */
+	private static final long BYTES_PER_MB = 1024 * 1024;
+
+	/**
+	 * The number of bytes per pixel assumed for estimating bitmap sizes.
+	 */
+	private static final long BYTES_PER_PIXEL = 4;
+
+	/**
+	 * The lock for access to the prefetched data.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * The prefetched bitmaps.
+	 */
+	private static final Map<String, Bitmap> BITMAPS = new HashMap<>();
+
+	/**
+	 * The prefetched background colors.
+	 */
+	private static final Map<String, Integer> COLORS = new HashMap<>();
+
+	/**
+	 * The owners (e.g. activities) which have requested prefetching and have not yet released the prefetcher.
+	 */
+	private static final Set<Object> OWNERS = new HashSet<>();
+
+	/**
+	 * The file names to be prefetched, in order of priority.
+	 */
+	private static List<String> mFileNames = new ArrayList<>();
+
+	/**
+	 * The maximum size of the prefetched bitmaps.
+	 */
+	private static int mMaxSize = 0;
+
+	/**
+	 * The calculator of the background color.
+	 */
+	private static ColorCalculator mColorCalculator = null;
+
+	/**
+	 * The owner which has requested the current prefetching.
+	 */
+	private static Object mCurrentOwner = null;
+
+	/**
+	 * The file currently being decoded.
+	 */
+	private static String mLoadingFileName = null;
+
+	/**
+	 * The thread doing the prefetching.
+	 */
+	private static Thread mPrefetchThread = null;
+
+	/**
+	 * Flag indicating if memory is low, so that only one image is prefetched.
+	 */
+	private static boolean mIsLowMemory = false;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ImagePrefetcher() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Set the images to be prefetched. Previously prefetched images not contained in the list are discarded.
+	 *
+	 * @param owner           The owner requesting the prefetching. It has to call {@link #release(Object)} when it is destroyed.
+	 * @param fileNames       The file names, in order of priority.
+	 * @param maxSize         The maximum size of the bitmaps.
+	 * @param colorCalculator The calculator of the background color. May be null.
+	 */
+	public static void prefetch(final Object owner, final List<String> fileNames, final int maxSize, final ColorCalculator colorCalculator) {
+		synchronized (LOCK) {
+			OWNERS.add(owner);
+			mCurrentOwner = owner;
+			if (maxSize != mMaxSize) {
+				BITMAPS.clear();
+				mMaxSize = maxSize;
+			}
+			mColorCalculator = colorCalculator;
+			mFileNames = new ArrayList<>();
+			for (String fileName : fileNames) {
+				if (fileName != null && !mFileNames.contains(fileName)) {
+					mFileNames.add(fileName);
+				}
+			}
+			if (mIsLowMemory && mFileNames.size() > 1) {
+				mFileNames = new ArrayList<>(mFileNames.subList(0, 1));
+			}
+			BITMAPS.keySet().retainAll(mFileNames);
+			COLORS.keySet().retainAll(mFileNames);
+
+			if (mPrefetchThread == null && !mFileNames.isEmpty()) {
+				mPrefetchThread = new Thread(ImagePrefetcher::runPrefetch);
+				mPrefetchThread.start();
+			}
+		}
+	}
+
+	/**
+	 * Get a prefetched bitmap. If the bitmap is currently being decoded, wait for it.
+	 *
+	 * @param fileName The file name.
+	 * @param maxSize  The maximum size of the bitmap.
+	 * @return The bitmap, or null if not prefetched.
+	 */
+	public static Bitmap getBitmap(final String fileName, final int maxSize) {
+		synchronized (LOCK) {
+			while (fileName.equals(mLoadingFileName) && maxSize == mMaxSize) {
+				try {
+					LOCK.wait();
+				}
+				catch (InterruptedException e) {
+					return null;
+				}
+			}
+			return maxSize == mMaxSize ? BITMAPS.get(fileName) : null;
+		}
+	}
+
+	/**
+	 * Get a prefetched bitmap without waiting.
+	 *
+	 * @param fileName The file name.
+	 * @param maxSize  The maximum size of the bitmap.
+	 * @return The bitmap, or null if not available.
+	 */
+	public static Bitmap getBitmapIfAvailable(final String fileName, final int maxSize) {
+		synchronized (LOCK) {
+			return maxSize == mMaxSize ? BITMAPS.get(fileName) : null;
+		}
+	}
+
+	/**
+	 * Offer a bitmap which has been decoded elsewhere, so that it does not need to be prefetched again.
+	 *
+	 * @param fileName The file name.
+	 * @param maxSize  The maximum size used for decoding.
+	 * @param bitmap   The bitmap.
+	 */
+	public static void offerBitmap(final String fileName, final int maxSize, final Bitmap bitmap) {
+		synchronized (LOCK) {
+			if (bitmap != null && maxSize == mMaxSize && mFileNames.contains(fileName) && !BITMAPS.containsKey(fileName)) {
+				BITMAPS.put(fileName, bitmap);
+			}
+		}
+	}
+
+	/**
+	 * Get a prefetched background color.
+	 *
+	 * @param fileName The file name.
+	 * @return The background color, or null if not prefetched.
+	 */
+	public static Integer getColor(final String fileName) {
+		synchronized (LOCK) {
+			return COLORS.get(fileName);
+		}
+	}
+
+	/**
+	 * Release memory depending on the trim level signaled by the system.
+	 *
+	 * @param level The trim level from {@link ComponentCallbacks2}.
+	 */
+	public static void trimMemory(final int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+				|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			synchronized (LOCK) {
+				mIsLowMemory = true;
+				if (mFileNames.size() > 1) {
+					mFileNames = new ArrayList<>(mFileNames.subList(0, 1));
+				}
+				BITMAPS.keySet().retainAll(mFileNames);
+			}
+		}
+	}
+
+	/**
+	 * Release the prefetcher by an owner which is destroyed. Prefetched data is discarded when the last owner releases the prefetcher,
+	 * as it may still be used by other owners before.
+	 *
+	 * @param owner The owner.
+	 */
+	public static void release(final Object owner) {
+		synchronized (LOCK) {
+			OWNERS.remove(owner);
+			if (OWNERS.isEmpty()) {
+				mFileNames = new ArrayList<>();
+				BITMAPS.clear();
+				COLORS.clear();
+				mColorCalculator = null;
+				mCurrentOwner = null;
+				mIsLowMemory = false;
+			}
+			else if (owner == mCurrentOwner) {
+				// Do not keep calculating colors via the released owner.
+				mColorCalculator = null;
+				mCurrentOwner = null;
+			}
+		}
+	}
+
+	/**
+	 * Prefetch the images one after the other, until all are done or memory is insufficient.
+	 */
+	private static void runPrefetch() {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+		while (true) {
+			String fileName = null;
+			boolean needsBitmap = false;
+			int maxSize;
+			ColorCalculator colorCalculator;
+			synchronized (LOCK) {
+				colorCalculator = mColorCalculator;
+				maxSize = mMaxSize;
+				Iterator<String> iterator = mFileNames.iterator();
+				while (fileName == null && iterator.hasNext()) {
+					String candidate = iterator.next();
+					needsBitmap = !BITMAPS.containsKey(candidate) && !candidate.toLowerCase(Locale.ENGLISH).endsWith(".gif");
+					if (needsBitmap && !isMemoryAvailable(maxSize)) {
+						break;
+					}
+					if (needsBitmap || colorCalculator != null && !COLORS.containsKey(candidate)) {
+						fileName = candidate;
+					}
+				}
+				if (fileName == null) {
+					mPrefetchThread = null;
+					return;
+				}
+				if (needsBitmap) {
+					mLoadingFileName = fileName;
+				}
+			}
+
+			Bitmap bitmap = null;
+			Integer color = null;
+			try {
+				if (needsBitmap) {
+					bitmap = ImageUtil.getImageBitmap(fileName, maxSize, BitmapUsage.DISPLAY);
+				}
+				if (colorCalculator != null) {
+					color = colorCalculator.getBackgroundColor(fileName);
+				}
+			}
+			catch (Exception e) {
+				Log.w(Application.TAG, "Failed to prefetch " + fileName, e);
+			}
+
+			synchronized (LOCK) {
+				mLoadingFileName = null;
+				LOCK.notifyAll();
+				if (mFileNames.contains(fileName)) {
+					if (needsBitmap && maxSize == mMaxSize) {
+						BITMAPS.put(fileName, bitmap);
+					}
+					if (colorCalculator != null) {
+						// Failures are stored as null color, to avoid endless retries.
+						COLORS.put(fileName, color);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if there is sufficient memory for prefetching another bitmap. Must be called within the lock.
+	 *
+	 * @param maxSize The maximum size of the bitmap.
+	 * @return true if another bitmap may be prefetched.
+	 */
+	private static boolean isMemoryAvailable(final int maxSize) {
+		long estimatedSize = (long) maxSize * maxSize * BYTES_PER_PIXEL;
+		long usedSize = 0;
+		for (Bitmap bitmap : BITMAPS.values()) {
+			if (bitmap != null) {
+				usedSize += bitmap.getAllocationByteCount();
+			}
+		}
+		if (usedSize + estimatedSize > SystemUtil.getLargeMemoryClass() * BYTES_PER_MB / MEMORY_CLASS_FRACTION) {
+			return false;
+		}
+		Runtime runtime = Runtime.getRuntime();
+		long availableHeap = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+		return availableHeap > 2 * estimatedSize;
+	}
+
+	/**
+	 * Calculator of the background color of an image.
+	 */
+	public interface ColorCalculator {
+		/**
+		 * Calculate the background color.
+		 *
+		 * @param fileName The file name of the image.
+		 * @return The background color.
+		 */
+		int getBackgroundColor(String fileName);
+	}
+}
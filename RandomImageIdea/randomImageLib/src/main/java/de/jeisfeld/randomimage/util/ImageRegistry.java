@@ -7,12 +7,15 @@ import android.util.Log;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import androidx.annotation.RequiresApi;
 import androidx.documentfile.provider.DocumentFile;
@@ -134,7 +137,7 @@ public final class ImageRegistry {
 	 * @return The filtered list.
 	 */
 	private static ArrayList<String> filterNameList(final ArrayList<String> nameList, final ListFiltering listFiltering) {
-		Collections.sort(nameList, Collator.getInstance());
+		CollationUtil.sort(nameList);
 		switch (listFiltering) {
 		case HIDE_BY_REGEXP:
 			String hiddenListsPattern = PreferenceUtil.getSharedPreferenceString(R.string.key_pref_hidden_lists_pattern);
@@ -168,7 +171,7 @@ public final class ImageRegistry {
 			}
 		}
 
-		Collections.sort(nameList, Collator.getInstance());
+		CollationUtil.sort(nameList);
 		return filterNameList(nameList, listFiltering);
 	}
 
@@ -261,31 +264,68 @@ public final class ImageRegistry {
 	 * @return the backup file path if successful.
 	 */
 	public static String backupImageList(final String name) {
-		File configFile = getConfigFile(name);
-		if (configFile == null) {
-			Log.e(Application.TAG, "Could not find config file of " + name + " for backup.");
-			return null;
-		}
+		return backupImageLists(Collections.singletonList(name)).get(name);
+	}
+
+	/**
+	 * Backup the image lists of the given names. The backup folder is enumerated only once for all lists. Lists which are unchanged
+	 * since their last backup by this app are skipped.
+	 *
+	 * @param names The names of the lists
+	 * @return the backup file paths of the successfully backed up lists, by list name.
+	 */
+	public static Map<String, String> backupImageLists(final List<String> names) {
+		Map<String, String> backupFilePaths = new LinkedHashMap<>();
 
 		if (SystemUtil.isAtLeastVersion(VERSION_CODES.Q)) {
-			if (getBackupDocumentFolder() == null) {
-				return null;
-			}
-			DocumentFile oldBackupFile = getBackupDocumentFolder().findFile(configFile.getName());
-			if (oldBackupFile != null) {
-				FileUtil.deleteFile(oldBackupFile);
-			}
-			ImageListInfo oldImageListInfo = parseConfigFiles(getBackupDocumentFolder()).get(name);
-			oldBackupFile = oldImageListInfo == null ? null : oldImageListInfo.getConfigDocumentFile();
-			if (oldBackupFile != null) {
-				FileUtil.deleteFile(oldBackupFile);
+			DocumentFile backupFolder = getBackupDocumentFolder();
+			if (backupFolder == null) {
+				return backupFilePaths;
 			}
-			DocumentFile backupFile = getBackupDocumentFolder().createFile("*", configFile.getName());
-			if (backupFile == null) {
-				return null;
+			String backupFolderId = backupFolder.getUri().toString();
+			DocumentFile[] allBackupFiles = backupFolder.listFiles();
+			Map<String, DocumentFile> backupFilesByFileName = new HashMap<>();
+			for (DocumentFile file : allBackupFiles) {
+				if (file.getName() != null) {
+					backupFilesByFileName.put(file.getName(), file);
+				}
 			}
-			else {
-				return FileUtil.copyFile(configFile, backupFile) ? backupFile.getName() : null;
+			Map<String, ImageListInfo> backupInfoMap = null;
+
+			for (String name : names) {
+				File configFile = getConfigFile(name);
+				if (configFile == null) {
+					Log.e(Application.TAG, "Could not find config file of " + name + " for backup.");
+					continue;
+				}
+				String upToDateBackupFileName =
+						BackupManifest.getUpToDateBackupFileName(backupFolderId, name, configFile, backupFilesByFileName.keySet());
+				if (upToDateBackupFileName != null) {
+					backupFilePaths.put(name, upToDateBackupFileName);
+					continue;
+				}
+				if (backupInfoMap == null) {
+					// Old backups need to be parsed only if some list is written.
+					backupInfoMap = parseConfigFiles(allBackupFiles);
+				}
+				DocumentFile oldBackupFile = backupFilesByFileName.remove(configFile.getName());
+				if (oldBackupFile != null) {
+					FileUtil.deleteFile(oldBackupFile);
+				}
+				ImageListInfo oldImageListInfo = backupInfoMap.get(name);
+				DocumentFile oldListBackupFile = oldImageListInfo == null ? null : oldImageListInfo.getConfigDocumentFile();
+				if (oldListBackupFile != null && oldListBackupFile != oldBackupFile) {
+					FileUtil.deleteFile(oldListBackupFile);
+				}
+				DocumentFile backupFile = backupFolder.createFile("*", configFile.getName());
+				if (backupFile != null && FileUtil.copyFile(configFile, backupFile)) {
+					String backupFileName = backupFile.getName();
+					BackupManifest.registerBackup(backupFolderId, name, configFile, backupFileName);
+					backupFilePaths.put(name, backupFileName);
+				}
+				else {
+					BackupManifest.removeBackup(backupFolderId, name);
+				}
 			}
 		}
 		else {
@@ -293,18 +333,47 @@ public final class ImageRegistry {
 				boolean success = BACKUP_FILE_FOLDER.mkdir();
 				if (!success) {
 					Log.e(Application.TAG, "Could not create backup dir " + BACKUP_FILE_FOLDER.getAbsolutePath());
-					return null;
+					return backupFilePaths;
 				}
 			}
-
-			File backupFile = new File(BACKUP_FILE_FOLDER, configFile.getName());
-			ImageListInfo oldImageListInfo = parseConfigFiles(BACKUP_FILE_FOLDER).get(name);
-			File oldBackupFile = oldImageListInfo == null ? null : oldImageListInfo.getConfigFile();
-			if (oldBackupFile != null && !oldBackupFile.equals(backupFile)) {
-				FileUtil.deleteFile(oldBackupFile);
+			String backupFolderId = BACKUP_FILE_FOLDER.getAbsolutePath();
+			String[] backupFileNames = BACKUP_FILE_FOLDER.list();
+			Set<String> existingBackupFileNames =
+					backupFileNames == null ? new HashSet<String>() : new HashSet<>(Arrays.asList(backupFileNames));
+			Map<String, ImageListInfo> backupInfoMap = null;
+
+			for (String name : names) {
+				File configFile = getConfigFile(name);
+				if (configFile == null) {
+					Log.e(Application.TAG, "Could not find config file of " + name + " for backup.");
+					continue;
+				}
+				String upToDateBackupFileName =
+						BackupManifest.getUpToDateBackupFileName(backupFolderId, name, configFile, existingBackupFileNames);
+				if (upToDateBackupFileName != null) {
+					backupFilePaths.put(name, new File(BACKUP_FILE_FOLDER, upToDateBackupFileName).getAbsolutePath());
+					continue;
+				}
+				if (backupInfoMap == null) {
+					backupInfoMap = parseConfigFiles(BACKUP_FILE_FOLDER);
+				}
+				File backupFile = new File(BACKUP_FILE_FOLDER, configFile.getName());
+				ImageListInfo oldImageListInfo = backupInfoMap.get(name);
+				File oldBackupFile = oldImageListInfo == null ? null : oldImageListInfo.getConfigFile();
+				if (oldBackupFile != null && !oldBackupFile.equals(backupFile)) {
+					FileUtil.deleteFile(oldBackupFile);
+				}
+				if (FileUtil.copyFile(configFile, backupFile)) {
+					BackupManifest.registerBackup(backupFolderId, name, configFile, backupFile.getName());
+					backupFilePaths.put(name, backupFile.getAbsolutePath());
+				}
+				else {
+					BackupManifest.removeBackup(backupFolderId, name);
+				}
 			}
-			return FileUtil.copyFile(configFile, backupFile) ? backupFile.getAbsolutePath() : null;
 		}
+		BackupManifest.save();
+		return backupFilePaths;
 	}
 
 	/**
@@ -314,45 +383,36 @@ public final class ImageRegistry {
 	 * @return true if successful.
 	 */
 	public static boolean restoreImageList(final String name) {
-		if (SystemUtil.isAtLeastVersion(VERSION_CODES.Q)) {
-			if (getBackupDocumentFolder() == null) {
-				return false;
-			}
-			ImageListInfo backupFileInfo = parseConfigFiles(getBackupDocumentFolder()).get(name);
-			DocumentFile backupFile = backupFileInfo == null ? null : backupFileInfo.getConfigDocumentFile();
-
-			if (backupFile == null) {
-				Log.e(Application.TAG, "Could not find backup file of " + name + " for restore.");
-				return false;
-			}
+		return restoreImageLists(Collections.singletonList(name)).contains(name);
+	}
 
-			File oldConfigFile = getConfigFile(name);
-			File tempBackupFile = null;
-			if (oldConfigFile != null) {
-				tempBackupFile = new File(getConfigFileFolder(), oldConfigFile.getName() + ".bak");
-				//noinspection ResultOfMethodCallIgnored
-				oldConfigFile.renameTo(tempBackupFile);
-			}
+	/**
+	 * Restore the image lists of the given names. The backup folder is enumerated only once for all lists. After restore, the last
+	 * restored list becomes the current list.
+	 *
+	 * @param names The names of the lists
+	 * @return the names of the successfully restored lists.
+	 */
+	public static List<String> restoreImageLists(final List<String> names) {
+		List<String> restoredNames = new ArrayList<>();
+		Map<String, ImageListInfo> backupInfoMap;
 
-			File newConfigFile = getFileForListName(name);
-			boolean success = FileUtil.copyFile(backupFile, newConfigFile);
-			if (success) {
-				if (tempBackupFile != null) {
-					//noinspection ResultOfMethodCallIgnored
-					tempBackupFile.delete();
-				}
-				parseConfigFiles();
-				switchToImageList(name, CreationStyle.NONE, true);
+		if (SystemUtil.isAtLeastVersion(VERSION_CODES.Q)) {
+			DocumentFile backupFolder = getBackupDocumentFolder();
+			if (backupFolder == null) {
+				return restoredNames;
 			}
-			return success;
+			backupInfoMap = parseConfigFiles(backupFolder);
 		}
 		else {
-			ImageListInfo backupFileInfo = parseConfigFiles(BACKUP_FILE_FOLDER).get(name);
-			File backupFile = backupFileInfo == null ? null : backupFileInfo.getConfigFile();
+			backupInfoMap = parseConfigFiles(BACKUP_FILE_FOLDER);
+		}
 
-			if (backupFile == null) {
+		for (String name : names) {
+			ImageListInfo backupFileInfo = backupInfoMap.get(name);
+			if (backupFileInfo == null) {
 				Log.e(Application.TAG, "Could not find backup file of " + name + " for restore.");
-				return false;
+				continue;
 			}
 
 			File oldConfigFile = getConfigFile(name);
@@ -364,17 +424,23 @@ public final class ImageRegistry {
 			}
 
 			File newConfigFile = getFileForListName(name);
-			boolean success = FileUtil.copyFile(backupFile, newConfigFile);
+			boolean success = SystemUtil.isAtLeastVersion(VERSION_CODES.Q)
+					? FileUtil.copyFile(backupFileInfo.getConfigDocumentFile(), newConfigFile)
+					: FileUtil.copyFile(backupFileInfo.getConfigFile(), newConfigFile);
 			if (success) {
 				if (tempBackupFile != null) {
 					//noinspection ResultOfMethodCallIgnored
 					tempBackupFile.delete();
 				}
-				parseConfigFiles();
-				switchToImageList(name, CreationStyle.NONE, true);
+				restoredNames.add(name);
 			}
-			return success;
 		}
+
+		if (restoredNames.size() > 0) {
+			parseConfigFiles();
+			switchToImageList(restoredNames.get(restoredNames.size() - 1), CreationStyle.NONE, true);
+		}
+		return restoredNames;
 	}
 
 	/**
@@ -551,8 +617,16 @@ public final class ImageRegistry {
 	 * @return The map from list names to image list files.
 	 */
 	private static Map<String, ImageListInfo> parseConfigFiles(final DocumentFile configFileFolder) {
-		DocumentFile[] allFiles = configFileFolder.listFiles();
+		return parseConfigFiles(configFileFolder.listFiles());
+	}
 
+	/**
+	 * Get the image lists from the files of a config file folder.
+	 *
+	 * @param allFiles the files of the config file folder.
+	 * @return The map from list names to image list files.
+	 */
+	private static Map<String, ImageListInfo> parseConfigFiles(final DocumentFile[] allFiles) {
 		List<DocumentFile> configFiles = new ArrayList<>();
 		for (DocumentFile file : allFiles) {
 			if (file.isFile() && file.getName() != null && file.getName().endsWith(CONFIG_FILE_SUFFIX)) {
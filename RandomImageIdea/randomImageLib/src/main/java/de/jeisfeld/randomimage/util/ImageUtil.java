@@ -14,25 +14,31 @@ import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.ColorMatrix;
 import android.graphics.ColorMatrixColorFilter;
+import android.graphics.ImageDecoder;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.media.MediaScannerConnection.OnScanCompletedListener;
 import android.net.Uri;
-import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.os.Handler;
 import android.util.Log;
+import android.util.LruCache;
+import android.util.Size;
+import android.util.SparseArray;
 import android.webkit.MimeTypeMap;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.text.Collator;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -42,9 +48,12 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
+import androidx.annotation.RequiresApi;
 import androidx.core.content.ContextCompat;
 import androidx.exifinterface.media.ExifInterface;
 import de.jeisfeld.randomimage.Application;
+import de.jeisfeld.randomimage.util.ImageHeaderSniffer.ImageType;
+import de.jeisfeld.randomimage.util.ImageMetadataStore.ImageMetadata;
 import de.jeisfeld.randomimagelib.R;
 
 /**
@@ -64,11 +73,6 @@ public final class ImageUtil {
 	 */
 	public static final int MAX_BITMAP_SIZE;
 
-	/**
-	 * The number of milliseconds below which parsing of image folders is considered as "quick".
-	 */
-	private static final long QUICK_PARSING_MILLIS = 500;
-
 	/**
 	 * The number of milliseconds after which the app again parses image folders.
 	 */
@@ -79,11 +83,21 @@ public final class ImageUtil {
 	 */
 	private static final long REPARSING_INTERVAL_2 = TimeUnit.MINUTES.toMillis(1);
 
+	/**
+	 * The maximum number of bytes read as header of an image file. This contains the EXIF data of JPEG files.
+	 */
+	private static final int IMAGE_HEADER_SIZE = 128 * 1024; // MAGIC_NUMBER
+
+	/**
+	 * The number of bytes initially read as header of an image file. JPEG headers are read further up to the frame header.
+	 */
+	private static final int IMAGE_HEADER_PREFIX_SIZE = 4096;
+
 	/**
 	 * The file endings considered as image files.
 	 */
-	private static final List<String> IMAGE_SUFFIXES = Arrays.asList(
-			"JPG", "JPEG", "PNG", "BMP", "GIF", "TIFF", "WEBP");
+	private static final List<String> IMAGE_SUFFIXES = new ArrayList<>(Arrays.asList(
+			"JPG", "JPEG", "PNG", "BMP", "GIF", "TIFF", "WEBP"));
 
 	/**
 	 * Suffix used to indicate recursive folders.
@@ -103,6 +117,18 @@ public final class ImageUtil {
 	 */
 	private static long mLastParsingTimestamp = 0;
 
+	/**
+	 * The maximum number of recolored resource bitmaps kept in memory.
+	 */
+	private static final int MAX_COLORED_RESOURCE_BITMAPS = 32;
+	/**
+	 * The decoded resource bitmaps used as source for recoloring, by resource id.
+	 */
+	private static final SparseArray<Bitmap> RESOURCE_BITMAPS = new SparseArray<>();
+	/**
+	 * The recolored resource bitmaps, by resource id and colors.
+	 */
+	private static final LruCache<String, Bitmap> COLORED_RESOURCE_BITMAPS = new LruCache<>(MAX_COLORED_RESOURCE_BITMAPS);
 
 	/**
 	 * Hide default constructor.
@@ -126,6 +152,14 @@ public final class ImageUtil {
 		else {
 			MAX_BITMAP_SIZE = 2048;
 		}
+
+		// Formats supported natively by ImageDecoder.
+		if (SystemUtil.isAtLeastVersion(VERSION_CODES.P)) {
+			IMAGE_SUFFIXES.addAll(Arrays.asList("HEIC", "HEIF"));
+		}
+		if (SystemUtil.isAtLeastVersion(VERSION_CODES.S)) {
+			IMAGE_SUFFIXES.add("AVIF");
+		}
 	}
 
 	/**
@@ -135,66 +169,67 @@ public final class ImageUtil {
 	 * @return the date stored in the EXIF data.
 	 */
 	public static Date getExifDate(final String path) {
-		Date retrievedDate = null;
-		try {
-			ExifInterface exif = new ExifInterface(path);
-			String dateString = exif.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
-
-			retrievedDate = DateUtil.parse(dateString, "yyyy:MM:dd HH:mm:ss");
+		ImageMetadata metadata = getImageMetadata(path);
+		if (metadata != null && metadata.mDate != 0) {
+			return new Date(metadata.mDate);
 		}
-		catch (Exception e) {
-			try {
-				ExifInterface exif = new ExifInterface(path);
-				String dateString = exif.getAttribute(ExifInterface.TAG_DATETIME);
+		return new Date(new File(path).lastModified());
+	}
 
-				retrievedDate = DateUtil.parse(dateString, "yyyy:MM:dd HH:mm:ss");
-			}
-			catch (Exception e2) {
-				Log.w(Application.TAG, e2 + " - Cannot retrieve EXIF date for " + path);
-			}
+	/**
+	 * Get the rotation of an image as stored in the EXIF data.
+	 *
+	 * @param path The file path of the image.
+	 * @return the rotation in degrees.
+	 */
+	public static int getExifRotation(final String path) {
+		ImageMetadata metadata = getImageMetadata(path);
+		return metadata == null ? 0 : metadata.mRotation;
+	}
+
+	/**
+	 * Get the metadata of an image, preferably from the {@link ImageMetadataStore}. If not stored yet, it is read from the file and
+	 * stored.
+	 *
+	 * @param path The file path of the image.
+	 * @return The metadata, or null if the file cannot be read.
+	 */
+	static ImageMetadata getImageMetadata(final String path) {
+		ImageMetadata metadata = ImageMetadataStore.getMetadata(path);
+		if (metadata != null) {
+			return metadata;
 		}
-		if (retrievedDate == null) {
-			File f = new File(path);
-			retrievedDate = new Date(f.lastModified());
+		File file = new File(path);
+		long lastModified = file.lastModified();
+		long size = file.length();
+		try (FileInputStream inputStream = new FileInputStream(file)) {
+			metadata = readImageMetadata(inputStream);
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to read image file " + path, e);
+			return null;
 		}
-		return retrievedDate;
+		ImageMetadataStore.putMetadata(path, lastModified, size, metadata);
+		return metadata;
 	}
 
 	/**
-	 * Retrieve the rotation angle from the Exif data of an image.
+	 * Map an EXIF orientation into a rotation angle.
 	 *
-	 * @param path The file path of the image
-	 * @return the rotation stored in the exif data, mapped into degrees.
+	 * @param orientation The EXIF orientation.
+	 * @return the rotation in degrees.
 	 */
-	private static int getExifRotation(final String path) {
-		int rotation = 0;
-		try {
-			ExifInterface exif = new ExifInterface(path);
-			int orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED);
-
-			// if (orientation == ExifInterface.ORIENTATION_UNDEFINED) {
-			// // Use custom implementation, as the previous one is not always reliable
-			// orientation = JpegMetadataUtil.getExifOrientation(new File(path));
-			// }
-
-			switch (orientation) {
-			case ExifInterface.ORIENTATION_ROTATE_270:
-				rotation = ROTATION_270;
-				break;
-			case ExifInterface.ORIENTATION_ROTATE_180:
-				rotation = ROTATION_180;
-				break;
-			case ExifInterface.ORIENTATION_ROTATE_90:
-				rotation = ROTATION_90;
-				break;
-			default:
-				break;
-			}
-		}
-		catch (Exception e) {
-			Log.w(Application.TAG, "Exception when getting EXIF rotation");
+	private static int getRotationFromOrientation(final int orientation) {
+		switch (orientation) {
+		case ExifInterface.ORIENTATION_ROTATE_270:
+			return ROTATION_270;
+		case ExifInterface.ORIENTATION_ROTATE_180:
+			return ROTATION_180;
+		case ExifInterface.ORIENTATION_ROTATE_90:
+			return ROTATION_90;
+		default:
+			return 0;
 		}
-		return rotation;
 	}
 
 	/**
@@ -215,16 +250,49 @@ public final class ImageUtil {
 	}
 
 	/**
-	 * Return a bitmap of this photo.
+	 * Return a bitmap of this photo, allowing pixel access.
 	 *
 	 * @param path    The file path of the image.
 	 * @param maxSize The maximum size of this bitmap. If bigger, it will be resized.
 	 * @return the bitmap.
 	 */
 	public static Bitmap getImageBitmap(final String path, final int maxSize) {
-		// Ensure that image is in media store.
-		MediaStoreUtil.getUriFromFile(path);
-		return getImageBitmap(path, maxSize, maxSize, false);
+		return getImageBitmap(path, maxSize, BitmapUsage.PIXEL_ACCESS);
+	}
+
+	/**
+	 * Return a bitmap of this photo, with a bitmap config suitable for the given usage.
+	 *
+	 * @param path    The file path of the image.
+	 * @param maxSize The maximum size of this bitmap. If bigger, it will be resized.
+	 * @param usage   The usage of the bitmap.
+	 * @return the bitmap.
+	 */
+	public static Bitmap getImageBitmap(final String path, final int maxSize, final BitmapUsage usage) {
+		return getImageBitmap(path, maxSize, maxSize, false, usage);
+	}
+
+	/**
+	 * Return a thumbnail bitmap of this photo, reusing memory from the {@link BitmapPool}. The bitmap is not taken from or put into
+	 * the {@link BitmapCache}, so it is owned by the caller and may be released to the pool when it is no longer displayed.
+	 *
+	 * @param path    The file path of the image.
+	 * @param maxSize The maximum size of this bitmap. If bigger, it will be resized.
+	 * @return the bitmap.
+	 */
+	public static Bitmap getPooledImageBitmap(final String path, final int maxSize) {
+		Bitmap bitmap = null;
+		if (maxSize <= ThumbnailStore.THUMBNAIL_SIZE) {
+			bitmap = getBitmapFromThumbnail(path, maxSize, maxSize, false, false, true, BitmapUsage.THUMBNAIL);
+		}
+		if (bitmap == null) {
+			bitmap = decodeImageBitmapWithBitmapFactory(path, maxSize, maxSize, false, false, true, BitmapUsage.THUMBNAIL);
+		}
+		if (bitmap == null) {
+			// BitmapFactory may not support the format - fall back to standard decoding.
+			bitmap = decodeImageBitmap(path, maxSize, maxSize, false, false, BitmapUsage.THUMBNAIL);
+		}
+		return bitmap == null ? getDummyBitmap() : bitmap;
 	}
 
 	/**
@@ -234,69 +302,36 @@ public final class ImageUtil {
 	 * @param maxWidth       The maximum width of this bitmap. If bigger, it will be resized.
 	 * @param maxHeight      The maximum height of this bitmap. If bigger, it will be resized.
 	 * @param growIfRequired Flag indicating if the image size should be increased if required.
+	 * @param usage          The usage of the bitmap.
 	 * @return the bitmap.
 	 */
-	private static Bitmap getImageBitmap(final String path, final int maxWidth, final int maxHeight, final boolean growIfRequired) {
-		Bitmap bitmap = null;
-		boolean foundThumbInMediaStore = false;
-		int rotation = getExifRotation(path);
-
+	private static Bitmap getImageBitmap(final String path, final int maxWidth, final int maxHeight, final boolean growIfRequired,
+										 final BitmapUsage usage) {
 		if (maxWidth <= 0 || maxHeight <= 0) {
-			bitmap = BitmapFactory.decodeFile(path);
-			bitmap = rotateBitmap(bitmap, rotation);
+			Bitmap bitmap = decodeImageBitmap(path, 0, 0, false, false, usage);
+			return bitmap == null ? getDummyBitmap() : bitmap;
 		}
-		else {
-			if ((maxWidth <= MediaStoreUtil.MINI_THUMB_SIZE || maxHeight <= MediaStoreUtil.MINI_THUMB_SIZE)
-					&& !(path.toUpperCase().endsWith(".PNG") || path.toUpperCase().endsWith(".GIF"))) {
-				bitmap = MediaStoreUtil.getThumbnailFromPath(path);
-				if (bitmap != null) {
-					foundThumbInMediaStore = true;
-				}
-			}
 
-			if (bitmap == null) {
-				BitmapFactory.Options options = new BitmapFactory.Options();
-				options.inSampleSize = getBitmapFactor(path, maxWidth, maxHeight, rotation == ROTATION_90 || rotation == ROTATION_270, false);
-				if (path.toUpperCase().endsWith(".PNG") || path.toUpperCase().endsWith(".GIF")) {
-					options.inPreferredConfig = Config.ARGB_8888;
-				}
+		Bitmap bitmap = BitmapCache.getBitmap(path, maxWidth, maxHeight, false, growIfRequired, usage);
+		if (bitmap != null) {
+			return bitmap;
+		}
+		long lastModified = new File(path).lastModified();
 
-				// options.inPurgeable = true;
-				bitmap = BitmapFactory.decodeFile(path, options);
-				if (bitmap == null) {
-					// cannot create bitmap - return dummy
-					Log.w(Application.TAG, "Cannot create bitmap from path " + path + " - return dummy bitmap");
-					return getDummyBitmap();
-				}
-				if (VERSION.SDK_INT >= VERSION_CODES.Q && rotation != 0) {
-					bitmap = rotateBitmap(bitmap, rotation);
-				}
-			}
-			if (bitmap.getWidth() == 0 || bitmap.getHeight() == 0) {
+		if (maxWidth <= ThumbnailStore.THUMBNAIL_SIZE && maxHeight <= ThumbnailStore.THUMBNAIL_SIZE) {
+			bitmap = getBitmapFromThumbnail(path, maxWidth, maxHeight, false, growIfRequired, false, usage);
+			if (bitmap != null) {
+				BitmapCache.putBitmap(path, lastModified, maxWidth, maxHeight, false, growIfRequired, usage, bitmap,
+						BitmapCache.isFullResolution(bitmap, maxWidth, maxHeight, false, growIfRequired));
 				return bitmap;
 			}
-			if (VERSION.SDK_INT < VERSION_CODES.Q && rotation != 0) {
-				bitmap = rotateBitmap(bitmap, rotation);
-			}
-
-			if (bitmap.getWidth() > maxWidth || bitmap.getHeight() > maxHeight || foundThumbInMediaStore || growIfRequired) {
-				// Only if bitmap is bigger than maxSize, then resize it - but don't trust the thumbs from media store.
-				if ((long) bitmap.getWidth() * maxHeight > (long) bitmap.getHeight() * maxWidth) {
-					// noinspection UnnecessaryLocalVariable
-					int targetWidth = maxWidth;
-					int targetHeight = bitmap.getHeight() * maxWidth / bitmap.getWidth();
-					bitmap = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, false);
-				}
-				else {
-					int targetWidth = bitmap.getWidth() * maxHeight / bitmap.getHeight();
-					// noinspection UnnecessaryLocalVariable
-					int targetHeight = maxHeight;
-					bitmap = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, false);
-				}
-			}
-
 		}
-
+		bitmap = decodeImageBitmap(path, maxWidth, maxHeight, false, growIfRequired, usage);
+		if (bitmap == null) {
+			return getDummyBitmap();
+		}
+		BitmapCache.putBitmap(path, lastModified, maxWidth, maxHeight, false, growIfRequired, usage, bitmap,
+				BitmapCache.isFullResolution(bitmap, maxWidth, maxHeight, false, growIfRequired));
 		return bitmap;
 	}
 
@@ -306,53 +341,480 @@ public final class ImageUtil {
 	 * @param path      The file path of the image.
 	 * @param minWidth  The minimum width of this bitmap. If smaller, it will be resized.
 	 * @param minHeight The minimum height of this bitmap. If smaller, it will be resized.
+	 * @param usage     The usage of the bitmap.
 	 * @return the bitmap.
 	 */
-	private static Bitmap getImageBitmapOfMinimumSize(final String path, final int minWidth, final int minHeight) {
-		Bitmap bitmap = null;
-		int rotation = getExifRotation(path);
-
+	private static Bitmap getImageBitmapOfMinimumSize(final String path, final int minWidth, final int minHeight, final BitmapUsage usage) {
 		if (minWidth <= 0 || minHeight <= 0) {
-			bitmap = BitmapFactory.decodeFile(path);
+			Bitmap bitmap = decodeImageBitmap(path, 0, 0, true, false, usage);
+			return bitmap == null ? getDummyBitmap() : bitmap;
 		}
-		else {
-			if (minWidth <= MediaStoreUtil.MINI_THUMB_SIZE && minHeight <= MediaStoreUtil.MINI_THUMB_SIZE) {
-				bitmap = MediaStoreUtil.getThumbnailFromPath(path);
+
+		Bitmap bitmap = BitmapCache.getBitmap(path, minWidth, minHeight, true, true, usage);
+		if (bitmap != null) {
+			return bitmap;
+		}
+		long lastModified = new File(path).lastModified();
+
+		if (minWidth <= ThumbnailStore.THUMBNAIL_SIZE && minHeight <= ThumbnailStore.THUMBNAIL_SIZE) {
+			bitmap = getBitmapFromThumbnail(path, minWidth, minHeight, true, true, false, usage);
+			if (bitmap != null) {
+				BitmapCache.putBitmap(path, lastModified, minWidth, minHeight, true, true, usage, bitmap, false);
+				return bitmap;
 			}
+		}
+		bitmap = decodeImageBitmap(path, minWidth, minHeight, true, true, usage);
+		if (bitmap == null) {
+			return getDummyBitmap();
+		}
+		BitmapCache.putBitmap(path, lastModified, minWidth, minHeight, true, true, usage, bitmap, false);
+		return bitmap;
+	}
 
-			if (bitmap == null) {
-				BitmapFactory.Options options = new BitmapFactory.Options();
-				options.inSampleSize = getBitmapFactor(path, minWidth, minHeight, rotation == ROTATION_90 || rotation == ROTATION_270, true);
-				// options.inPurgeable = true;
-				bitmap = BitmapFactory.decodeFile(path, options);
-				if (bitmap == null) {
-					// cannot create bitmap - return dummy
-					Log.w(Application.TAG, "Cannot create bitmap from path " + path + " - return dummy bitmap");
-					return getDummyBitmap();
+	/**
+	 * Decode an image file into a bitmap of the target size. On Android P and higher, ImageDecoder is used, with fallback to
+	 * BitmapFactory.
+	 *
+	 * @param path           The file path of the image.
+	 * @param targetWidth    The target width. If 0, the image is not resized.
+	 * @param targetHeight   The target height. If 0, the image is not resized.
+	 * @param minimum        Flag indicating if the target dimensions are minimum dimensions rather than maximum dimensions.
+	 * @param growIfRequired Flag indicating if the image size should be increased if required.
+	 * @param usage          The usage of the bitmap.
+	 * @return the bitmap, or null if the image cannot be decoded.
+	 */
+	private static Bitmap decodeImageBitmap(final String path, final int targetWidth, final int targetHeight, final boolean minimum,
+											final boolean growIfRequired, final BitmapUsage usage) {
+		if (SystemUtil.isAtLeastVersion(VERSION_CODES.P)) {
+			try {
+				return decodeImageBitmapWithImageDecoder(path, targetWidth, targetHeight, minimum, growIfRequired, usage);
+			}
+			catch (IOException e) {
+				Log.w(Application.TAG, "Failed to decode " + path + " with ImageDecoder - fall back to BitmapFactory", e);
+			}
+		}
+		return decodeImageBitmapWithBitmapFactory(path, targetWidth, targetHeight, minimum, growIfRequired, false, usage);
+	}
+
+	/**
+	 * Decode an image file into a bitmap of the target size using ImageDecoder. The bitmap is decoded directly into the target size,
+	 * and EXIF orientation is applied by the decoder.
+	 *
+	 * @param path           The file path of the image.
+	 * @param targetWidth    The target width. If 0, the image is not resized.
+	 * @param targetHeight   The target height. If 0, the image is not resized.
+	 * @param minimum        Flag indicating if the target dimensions are minimum dimensions rather than maximum dimensions.
+	 * @param growIfRequired Flag indicating if the image size should be increased if required.
+	 * @param usage          The usage of the bitmap.
+	 * @return the bitmap.
+	 * @throws IOException thrown if the image cannot be decoded.
+	 */
+	@RequiresApi(api = VERSION_CODES.P)
+	private static Bitmap decodeImageBitmapWithImageDecoder(final String path, final int targetWidth, final int targetHeight,
+															final boolean minimum, final boolean growIfRequired, final BitmapUsage usage)
+			throws IOException {
+		ImageDecoder.Source source = ImageDecoder.createSource(new File(path));
+		Config config = usage.getConfig(mayHaveAlpha(path));
+		return ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+			if (config == Config.HARDWARE) {
+				decoder.setAllocator(ImageDecoder.ALLOCATOR_HARDWARE);
+			}
+			else {
+				// Software bitmaps are required for drawing on canvas, for pixel access and for RemoteViews.
+				decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+				if (config == Config.RGB_565) {
+					// Low RAM policy decodes opaque images to RGB_565.
+					decoder.setMemorySizePolicy(ImageDecoder.MEMORY_POLICY_LOW_RAM);
 				}
-				if (rotation != 0) {
-					bitmap = rotateBitmap(bitmap, rotation);
+			}
+			Size size = info.getSize();
+			int[] targetSize = getTargetSize(size.getWidth(), size.getHeight(), targetWidth, targetHeight, minimum, growIfRequired);
+			if (targetSize[0] > 0 && targetSize[1] > 0 && (targetSize[0] != size.getWidth() || targetSize[1] != size.getHeight())) {
+				decoder.setTargetSize(targetSize[0], targetSize[1]);
+			}
+		});
+	}
+
+	/**
+	 * Decode an image file into a bitmap of the target size using BitmapFactory. The file is opened only once - EXIF data and image
+	 * bounds are taken from a buffered header where possible, and rotation and scaling are applied in a single pass.
+	 *
+	 * @param path           The file path of the image.
+	 * @param targetWidth    The target width. If 0, the image is not resized.
+	 * @param targetHeight   The target height. If 0, the image is not resized.
+	 * @param minimum        Flag indicating if the target dimensions are minimum dimensions rather than maximum dimensions.
+	 * @param growIfRequired Flag indicating if the image size should be increased if required.
+	 * @param pooled         Flag indicating if bitmaps from the {@link BitmapPool} should be reused.
+	 * @param usage          The usage of the bitmap.
+	 * @return the bitmap, or null if the image cannot be decoded.
+	 */
+	private static Bitmap decodeImageBitmapWithBitmapFactory(final String path, final int targetWidth, final int targetHeight,
+															 final boolean minimum, final boolean growIfRequired, final boolean pooled,
+															 final BitmapUsage usage) {
+		Bitmap bitmap = null;
+		File file = new File(path);
+		long lastModified = file.lastModified();
+		long size = file.length();
+		ImageMetadata metadata = ImageMetadataStore.getMetadata(path);
+		try (FileInputStream inputStream = new FileInputStream(file)) {
+			if (metadata == null) {
+				metadata = readImageMetadata(inputStream);
+				ImageMetadataStore.putMetadata(path, lastModified, size, metadata);
+			}
+
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			if (targetWidth > 0 && targetHeight > 0) {
+				options.inSampleSize = getSampleSize(metadata, targetWidth, targetHeight, minimum);
+			}
+			// Decode in software, as rotation and scaling are applied by drawing on canvas.
+			options.inPreferredConfig = usage.getSoftwareConfig(mayHaveAlpha(path));
+			if (pooled && metadata.mWidth > 0 && metadata.mHeight > 0) {
+				// The decoder rounds the sample size down to a power of 2.
+				int sampleSize = Integer.highestOneBit(Math.max(options.inSampleSize, 1));
+				BitmapPool.prepareDecodeOptions(options, (metadata.mWidth + sampleSize - 1) / sampleSize,
+						(metadata.mHeight + sampleSize - 1) / sampleSize);
+			}
+			inputStream.getChannel().position(0);
+			try {
+				bitmap = BitmapFactory.decodeFileDescriptor(inputStream.getFD(), null, options);
+			}
+			catch (IllegalArgumentException e) {
+				// The pooled bitmap cannot be reused - decode into a new bitmap.
+				if (!BitmapPool.releaseDecodeBitmap(options)) {
+					throw e;
 				}
+				inputStream.getChannel().position(0);
+				bitmap = BitmapFactory.decodeFileDescriptor(inputStream.getFD(), null, options);
 			}
-			if (bitmap.getWidth() == 0 || bitmap.getHeight() == 0) {
-				return bitmap;
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to read image file " + path, e);
+		}
+
+		if (bitmap == null) {
+			// cannot create bitmap - caller will use dummy
+			Log.w(Application.TAG, "Cannot create bitmap from path " + path + " - return dummy bitmap");
+			return null;
+		}
+		if (bitmap.getWidth() == 0 || bitmap.getHeight() == 0) {
+			return bitmap;
+		}
+		bitmap = transformBitmap(bitmap, metadata.mRotation, targetWidth, targetHeight, minimum, growIfRequired, pooled);
+		return pooled ? bitmap : convertToUsageConfig(bitmap, path, usage);
+	}
+
+	/**
+	 * Read the metadata (rotation, capture date and bounds) of an image from an input stream. Afterwards, the stream position is undefined.
+	 *
+	 * @param inputStream The input stream of the image file.
+	 * @return The metadata.
+	 * @throws IOException thrown if the file cannot be read.
+	 */
+	private static ImageMetadata readImageMetadata(final FileInputStream inputStream) throws IOException {
+		byte[] header = new byte[IMAGE_HEADER_PREFIX_SIZE];
+		int length = readFully(inputStream, header, 0);
+		ImageType imageType = ImageHeaderSniffer.getImageType(header, length);
+		if (imageType == ImageType.JPEG) {
+			// Grow the header only as far as required for EXIF segment and frame header.
+			int requiredLength = getJpegHeaderLength(header, length);
+			while (requiredLength > length && length == header.length && header.length < IMAGE_HEADER_SIZE) {
+				header = Arrays.copyOf(header, Math.min(IMAGE_HEADER_SIZE, Math.max(requiredLength, 2 * header.length)));
+				length = readFully(inputStream, header, length);
+				requiredLength = getJpegHeaderLength(header, length);
 			}
+		}
+
+		ImageMetadata metadata = new ImageMetadata();
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(header, 0, length, options);
+		if (options.outWidth <= 0 || options.outHeight <= 0) {
+			inputStream.getChannel().position(0);
+			BitmapFactory.decodeFileDescriptor(inputStream.getFD(), null, options);
+		}
+		metadata.mWidth = options.outWidth;
+		metadata.mHeight = options.outHeight;
 
-			if ((long) bitmap.getWidth() * minHeight > (long) bitmap.getHeight() * minWidth) {
-				int targetWidth = bitmap.getWidth() * minHeight / bitmap.getHeight();
-				// noinspection UnnecessaryLocalVariable
-				int targetHeight = minHeight;
-				bitmap = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, false);
+		ExifInterface exif = null;
+		try {
+			switch (imageType) {
+			case JPEG:
+				// The EXIF segment of JPEG files is located at the beginning of the file.
+				exif = new ExifInterface(new ByteArrayInputStream(header, 0, length));
+				break;
+			case GIF:
+			case BMP:
+				break;
+			default:
+				inputStream.getChannel().position(0);
+				exif = new ExifInterface(inputStream.getFD());
+				break;
+			}
+		}
+		catch (Exception e) {
+			Log.w(Application.TAG, "Exception when getting EXIF data");
+		}
+		if (exif != null) {
+			metadata.mRotation = getRotationFromOrientation(
+					exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED));
+			metadata.mDate = getExifDate(exif, ExifInterface.TAG_DATETIME_ORIGINAL);
+			if (metadata.mDate == 0) {
+				metadata.mDate = getExifDate(exif, ExifInterface.TAG_DATETIME);
+			}
+		}
+		return metadata;
+	}
+
+	/**
+	 * Read from an input stream until the buffer is full or the stream ends.
+	 *
+	 * @param inputStream The input stream.
+	 * @param buffer      The buffer.
+	 * @param offset      The number of bytes already in the buffer.
+	 * @return The number of bytes in the buffer.
+	 * @throws IOException thrown if the stream cannot be read.
+	 */
+	private static int readFully(final InputStream inputStream, final byte[] buffer, final int offset) throws IOException {
+		int length = offset;
+		int count = length < buffer.length ? inputStream.read(buffer, length, buffer.length - length) : -1;
+		while (count > 0) {
+			length += count;
+			count = length < buffer.length ? inputStream.read(buffer, length, buffer.length - length) : -1;
+		}
+		return length;
+	}
+
+	/**
+	 * Get the number of bytes of a JPEG file up to the end of its frame header, which includes all segments required for EXIF data and
+	 * bounds.
+	 *
+	 * @param header The header bytes read so far.
+	 * @param length The number of valid bytes in the header.
+	 * @return The required header length. If bigger than length, more bytes have to be read.
+	 */
+	private static int getJpegHeaderLength(final byte[] header, final int length) {
+		int offset = 2;
+		while (offset + 4 <= length) { // MAGIC_NUMBER
+			if ((header[offset] & 0xFF) != 0xFF) { // MAGIC_NUMBER
+				// Invalid segment structure - read no further.
+				return offset;
+			}
+			int marker = header[offset + 1] & 0xFF; // MAGIC_NUMBER
+			if (marker == 0xFF) { // MAGIC_NUMBER
+				// Fill byte.
+				offset++;
+				continue;
+			}
+			if (marker == 0xDA) { // MAGIC_NUMBER
+				// Start of scan - the frame header has been passed.
+				return offset;
+			}
+			int segmentEnd = offset + 2 + ((header[offset + 2] & 0xFF) << 8 | (header[offset + 3] & 0xFF)); // MAGIC_NUMBER
+			if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) { // MAGIC_NUMBER
+				// Start of frame.
+				return segmentEnd;
+			}
+			offset = segmentEnd;
+		}
+		return offset + 4; // MAGIC_NUMBER
+	}
+
+	/**
+	 * Get a date from EXIF data.
+	 *
+	 * @param exif The EXIF data.
+	 * @param tag  The EXIF tag of the date.
+	 * @return The date in milliseconds, or 0 if not available.
+	 */
+	private static long getExifDate(final ExifInterface exif, final String tag) {
+		String dateString = exif.getAttribute(tag);
+		if (dateString == null) {
+			return 0;
+		}
+		try {
+			return DateUtil.parse(dateString, "yyyy:MM:dd HH:mm:ss").getTime();
+		}
+		catch (Exception e) {
+			Log.w(Application.TAG, e + " - Cannot parse EXIF date " + dateString);
+			return 0;
+		}
+	}
+
+	/**
+	 * Get a bitmap of the given size from the thumbnail of an image. If there is no stored thumbnail, it is decoded and stored.
+	 *
+	 * @param path         The file path of the image.
+	 * @param targetWidth  The target width.
+	 * @param targetHeight The target height.
+	 * @param minimum      Flag indicating if the target dimensions are minimum dimensions rather than maximum dimensions.
+	 * @param forceScaling Flag indicating if the image should be resized also if it is smaller than the maximum dimensions.
+	 * @param pooled       Flag indicating if bitmaps from the {@link BitmapPool} should be reused.
+	 * @param usage        The usage of the bitmap.
+	 * @return the bitmap, or null if the thumbnail is not of sufficient size.
+	 */
+	private static Bitmap getBitmapFromThumbnail(final String path, final int targetWidth, final int targetHeight, final boolean minimum,
+												 final boolean forceScaling, final boolean pooled, final BitmapUsage usage) {
+		Bitmap thumbnail = ThumbnailStore.getThumbnail(path, pooled, usage.getSoftwareConfig(mayHaveAlpha(path)));
+		if (thumbnail == null) {
+			// Decode the thumbnail here and hand it over for storing in the background, so that it is not decoded a second time.
+			thumbnail = decodeThumbnailBitmap(path);
+			if (thumbnail == null) {
+				return null;
+			}
+			ThumbnailStore.storeThumbnail(path, thumbnail);
+		}
+		boolean isFullResolution = BitmapCache.isFullResolution(thumbnail, ThumbnailStore.THUMBNAIL_SIZE, ThumbnailStore.THUMBNAIL_SIZE,
+				false, false);
+		int[] size = getDerivedSize(thumbnail, isFullResolution, targetWidth, targetHeight, minimum, forceScaling);
+		if (size == null) {
+			if (pooled) {
+				BitmapPool.release(thumbnail);
 			}
 			else {
-				// noinspection UnnecessaryLocalVariable
-				int targetWidth = minWidth;
-				int targetHeight = bitmap.getHeight() * minWidth / bitmap.getWidth();
-				bitmap = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, false);
+				thumbnail.recycle();
 			}
+			return null;
 		}
+		Bitmap bitmap = transformBitmap(thumbnail, 0, size[0], size[1], false, true, pooled);
+		return pooled ? bitmap : convertToUsageConfig(bitmap, path, usage);
+	}
 
-		return bitmap;
+	/**
+	 * Decode the bitmap of an image to be stored as thumbnail.
+	 *
+	 * @param path The file path of the image.
+	 * @return the bitmap, or null if the image cannot be decoded.
+	 */
+	static Bitmap decodeThumbnailBitmap(final String path) {
+		// Full color depth, as the thumbnail is compressed again.
+		return decodeImageBitmap(path, ThumbnailStore.THUMBNAIL_SIZE, ThumbnailStore.THUMBNAIL_SIZE, false, false,
+				BitmapUsage.PIXEL_ACCESS);
+	}
+
+	/**
+	 * Check if a file may have transparency, based on the file name.
+	 *
+	 * @param path The file path.
+	 * @return true if PNG, GIF or WebP.
+	 */
+	private static boolean mayHaveAlpha(final String path) {
+		String upperCasePath = path.toUpperCase(Locale.getDefault());
+		return upperCasePath.endsWith(".PNG") || upperCasePath.endsWith(".GIF") || upperCasePath.endsWith(".WEBP");
+	}
+
+	/**
+	 * Convert a software bitmap into the bitmap config of its usage, if this is a hardware config.
+	 *
+	 * @param bitmap The bitmap. Will be recycled if converted.
+	 * @param path   The file path of the image.
+	 * @param usage  The usage of the bitmap.
+	 * @return the bitmap in the config of the usage.
+	 */
+	private static Bitmap convertToUsageConfig(final Bitmap bitmap, final String path, final BitmapUsage usage) {
+		if (bitmap == null || usage.getConfig(mayHaveAlpha(path)) != Config.HARDWARE || bitmap.getConfig() == Config.HARDWARE) {
+			return bitmap;
+		}
+		Bitmap hardwareBitmap = bitmap.copy(Config.HARDWARE, false);
+		if (hardwareBitmap == null) {
+			return bitmap;
+		}
+		bitmap.recycle();
+		return hardwareBitmap;
+	}
+
+	/**
+	 * Rotate and resize a bitmap in a single pass.
+	 *
+	 * @param source       The original bitmap. Will be recycled or released to the pool if a new bitmap is created.
+	 * @param rotation     The rotation angle.
+	 * @param targetWidth  The target width. If 0, the bitmap is not resized.
+	 * @param targetHeight The target height. If 0, the bitmap is not resized.
+	 * @param minimum      Flag indicating if the target dimensions are minimum dimensions rather than maximum dimensions.
+	 * @param forceScaling Flag indicating if the bitmap should be resized also if it is smaller than the maximum dimensions.
+	 * @param pooled       Flag indicating if bitmaps from the {@link BitmapPool} should be reused.
+	 * @return the transformed bitmap.
+	 */
+	private static Bitmap transformBitmap(final Bitmap source, final int rotation, final int targetWidth, final int targetHeight,
+										  final boolean minimum, final boolean forceScaling, final boolean pooled) {
+		boolean swapAxes = rotation == ROTATION_90 || rotation == ROTATION_270;
+		int rotatedWidth = swapAxes ? source.getHeight() : source.getWidth();
+		int rotatedHeight = swapAxes ? source.getWidth() : source.getHeight();
+		int[] targetSize = getTargetSize(rotatedWidth, rotatedHeight, targetWidth, targetHeight, minimum, forceScaling);
+		int resultWidth = targetSize[0];
+		int resultHeight = targetSize[1];
+
+		if (resultWidth <= 0 || resultHeight <= 0
+				|| (rotation == 0 && resultWidth == source.getWidth() && resultHeight == source.getHeight())) {
+			return source;
+		}
+
+		Matrix matrix = new Matrix();
+		matrix.postRotate(rotation);
+		RectF bounds = new RectF(0, 0, source.getWidth(), source.getHeight());
+		matrix.mapRect(bounds);
+		matrix.postTranslate(-bounds.left, -bounds.top);
+		matrix.postScale((float) resultWidth / rotatedWidth, (float) resultHeight / rotatedHeight);
+
+		Config config = source.getConfig() == null ? Config.ARGB_8888 : source.getConfig();
+		Bitmap result = pooled ? BitmapPool.getBitmap(resultWidth, resultHeight, config) : Bitmap.createBitmap(resultWidth, resultHeight, config);
+		Canvas canvas = new Canvas(result);
+		canvas.drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+		if (pooled) {
+			BitmapPool.release(source);
+		}
+		else {
+			source.recycle();
+		}
+		return result;
+	}
+
+	/**
+	 * Get the size to which an image should be scaled.
+	 *
+	 * @param width        The width of the (rotated) image.
+	 * @param height       The height of the (rotated) image.
+	 * @param targetWidth  The target width. If 0, the image is not resized.
+	 * @param targetHeight The target height. If 0, the image is not resized.
+	 * @param minimum      Flag indicating if the target dimensions are minimum dimensions rather than maximum dimensions.
+	 * @param forceScaling Flag indicating if the image should be resized also if it is smaller than the maximum dimensions.
+	 * @return An array containing width and height of the scaled image.
+	 */
+	static int[] getTargetSize(final int width, final int height, final int targetWidth, final int targetHeight,
+							   final boolean minimum, final boolean forceScaling) {
+		if (targetWidth <= 0 || targetHeight <= 0 || width <= 0 || height <= 0
+				|| !(minimum || forceScaling || width > targetWidth || height > targetHeight)) {
+			return new int[]{width, height};
+		}
+		boolean isWider = (long) width * targetHeight > (long) height * targetWidth;
+		if (isWider == minimum) {
+			return new int[]{(int) ((long) width * targetHeight / height), targetHeight};
+		}
+		else {
+			return new int[]{targetWidth, (int) ((long) height * targetWidth / width)};
+		}
+	}
+
+	/**
+	 * Get the size of a bitmap for the given target dimensions if it can be derived by downscaling a given bitmap of the same image.
+	 *
+	 * @param source           The given bitmap.
+	 * @param isFullResolution Flag indicating if the given bitmap has the original resolution of the image.
+	 * @param targetWidth      The target width.
+	 * @param targetHeight     The target height.
+	 * @param minimum          Flag indicating if the target dimensions are minimum dimensions rather than maximum dimensions.
+	 * @param forceScaling     Flag indicating if the image should be resized also if it is smaller than the maximum dimensions.
+	 * @return An array containing width and height of the derived bitmap, or null if the given bitmap is too small.
+	 */
+	static int[] getDerivedSize(final Bitmap source, final boolean isFullResolution, final int targetWidth, final int targetHeight,
+								final boolean minimum, final boolean forceScaling) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int[] size = getTargetSize(width, height, targetWidth, targetHeight, minimum, true);
+		if (size[0] <= width && size[1] <= height) {
+			return size;
+		}
+		// The source would need to be enlarged. This is only correct if it is the original image, which is not to be enlarged.
+		return isFullResolution && !minimum && !forceScaling ? new int[]{width, height} : null;
 	}
 
 	/**
@@ -364,7 +826,8 @@ public final class ImageUtil {
 	 * @return the sized bitmap.
 	 */
 	private static Bitmap extendToBitmapOfSize(final Bitmap baseBitmap, final int width, final int height) {
-		Bitmap targetBitmap = Bitmap.createBitmap(width, height, baseBitmap.getConfig());
+		// The surrounding space requires alpha.
+		Bitmap targetBitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
 		Paint paint = new Paint();
 		Canvas canvas = new Canvas(targetBitmap);
 		canvas.drawBitmap(baseBitmap, (width - baseBitmap.getWidth()) / 2f, (height - baseBitmap.getHeight()) / 2f, paint);
@@ -372,7 +835,7 @@ public final class ImageUtil {
 	}
 
 	/**
-	 * Return a bitmap of this photo, where the Bitmap object has the exact given size.
+	 * Return a bitmap of this photo for widgets or notifications, where the Bitmap object has the exact given size.
 	 *
 	 * @param path   The file path of the image.
 	 * @param width  The width of the target bitmap.
@@ -382,11 +845,11 @@ public final class ImageUtil {
 	 */
 	public static Bitmap getBitmapOfExactSize(final String path, final int width, final int height, final int border) {
 		if (border >= 0) {
-			Bitmap baseBitmap = getImageBitmap(path, width - 2 * border, height - 2 * border, true);
+			Bitmap baseBitmap = getImageBitmap(path, width - 2 * border, height - 2 * border, true, BitmapUsage.REMOTE);
 			return extendToBitmapOfSize(baseBitmap, width, height);
 		}
 		else {
-			Bitmap baseBitmap = getImageBitmapOfMinimumSize(path, width, height);
+			Bitmap baseBitmap = getImageBitmapOfMinimumSize(path, width, height, BitmapUsage.REMOTE);
 			Bitmap targetBitmap = Bitmap.createBitmap(width, height, baseBitmap.getConfig());
 			Paint paint = new Paint();
 			Canvas canvas = new Canvas(targetBitmap);
@@ -405,7 +868,8 @@ public final class ImageUtil {
 	}
 
 	/**
-	 * Return a bitmap of this photo, where the Bitmap object has the exact given width and the minimum given height.
+	 * Return a bitmap of this photo for widgets or notifications, where the Bitmap object has the exact given width and the minimum
+	 * given height.
 	 *
 	 * @param path      The file path of the image.
 	 * @param width     The width of the target bitmap.
@@ -413,7 +877,7 @@ public final class ImageUtil {
 	 * @return the bitmap.
 	 */
 	public static Bitmap getBitmapOfMinimumHeight(final String path, final int width, final int minHeight) {
-		Bitmap baseBitmap = getImageBitmap(path, width, Integer.MAX_VALUE, true);
+		Bitmap baseBitmap = getImageBitmap(path, width, Integer.MAX_VALUE, true, BitmapUsage.REMOTE);
 		if (baseBitmap.getHeight() >= minHeight) {
 			return baseBitmap;
 		}
@@ -423,46 +887,27 @@ public final class ImageUtil {
 	}
 
 	/**
-	 * Utility to retrieve the sample size for BitmapFactory.decodeFile.
+	 * Utility to retrieve the sample size for BitmapFactory decoding.
 	 *
-	 * @param filepath     the path of the bitmap.
+	 * @param metadata     the metadata of the image, containing its bounds and rotation.
 	 * @param targetWidth  the target width of the bitmap
 	 * @param targetHeight the target height of the bitmap
-	 * @param rotate       flag indicating if the bitmap should be 90 degrees rotated.
 	 * @param minimum      flag indicating if the dimensions are minimum dimensions.
 	 * @return the sample size to be used.
 	 */
-	private static int getBitmapFactor(final String filepath, final int targetWidth, final int targetHeight, final boolean rotate,
-									   final boolean minimum) {
-		BitmapFactory.Options options = new BitmapFactory.Options();
-		options.inJustDecodeBounds = true;
-		BitmapFactory.decodeFile(filepath, options);
-
-		if (rotate) {
+	private static int getSampleSize(final ImageMetadata metadata, final int targetWidth, final int targetHeight, final boolean minimum) {
+		if (metadata.mRotation == ROTATION_90 || metadata.mRotation == ROTATION_270) {
 			return minimum
-					? Math.min(options.outHeight / targetWidth, options.outWidth / targetHeight)
-					: Math.max(options.outHeight / targetWidth, options.outWidth / targetHeight);
+					? Math.min(metadata.mHeight / targetWidth, metadata.mWidth / targetHeight)
+					: Math.max(metadata.mHeight / targetWidth, metadata.mWidth / targetHeight);
 		}
 		else {
 			return minimum
-					? Math.min(options.outWidth / targetWidth, options.outHeight / targetHeight)
-					: Math.max(options.outWidth / targetWidth, options.outHeight / targetHeight);
+					? Math.min(metadata.mWidth / targetWidth, metadata.mHeight / targetHeight)
+					: Math.max(metadata.mWidth / targetWidth, metadata.mHeight / targetHeight);
 		}
 	}
 
-	/**
-	 * Rotate a bitmap.
-	 *
-	 * @param source The original bitmap
-	 * @param angle  The rotation angle
-	 * @return the rotated bitmap.
-	 */
-	private static Bitmap rotateBitmap(final Bitmap source, final float angle) {
-		Matrix matrix = new Matrix();
-		matrix.postRotate(angle);
-		return Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
-	}
-
 	/**
 	 * Get Mime type from URI.
 	 *
@@ -489,7 +934,7 @@ public final class ImageUtil {
 	 * Check if a file is an image file.
 	 *
 	 * @param file   The file
-	 * @param strict if true, then the file content will be checked, otherwise the suffix is sufficient.
+	 * @param strict if true, then the file header will be checked, otherwise the suffix is sufficient.
 	 * @return true if it is an image file.
 	 */
 	public static boolean isImage(final File file, final boolean strict) {
@@ -497,10 +942,13 @@ public final class ImageUtil {
 			return false;
 		}
 		if (strict) {
+			if (ImageHeaderSniffer.getHeaderInfo(file).getType() != ImageType.UNKNOWN) {
+				return ImageHeaderSniffer.isImage(file);
+			}
+			// Header not recognized - check if BitmapFactory can handle the file.
 			BitmapFactory.Options options = new BitmapFactory.Options();
 			options.inJustDecodeBounds = true;
 			BitmapFactory.decodeFile(file.getPath(), options);
-
 			return options.outWidth > 0 && options.outHeight > 0;
 		}
 		else {
@@ -703,7 +1151,7 @@ public final class ImageUtil {
 				}
 			}
 
-			Collections.sort(fileNames, Collator.getInstance());
+			CollationUtil.sort(fileNames);
 			return fileNames;
 		}
 	}
@@ -830,7 +1278,7 @@ public final class ImageUtil {
 		if (children == null) {
 			return result;
 		}
-		Arrays.sort(children, FileComparator.getInstance());
+		CollationUtil.sortByName(children);
 
 		for (File aChildren : children) {
 			List<String> imageFolders = getAllImageSubfolders(aChildren, handler, listener);
@@ -890,31 +1338,39 @@ public final class ImageUtil {
 	 * @return The image subfolders of this folder.
 	 */
 	public static ArrayList<String> getImageSubfolders(final String parentFolder) {
-		ArrayList<String> quickParsingFolders = PreferenceUtil.getSharedPreferenceStringList(R.string.key_quick_parsing_image_folders);
 		String pathPrefix = parentFolder;
 		if (parentFolder.endsWith(RECURSIVE_SUFFIX)) {
 			pathPrefix = parentFolder.substring(0, parentFolder.length() - RECURSIVE_SUFFIX.length());
 		}
-		if (quickParsingFolders.contains(pathPrefix)) {
-			return getAllImageSubfolders(new File(pathPrefix), null, null);
+
+		ArrayList<String> storedFolders = new ArrayList<>();
+		for (String folder : getAllStoredImageFolders()) {
+			if (folder.equals(pathPrefix) || (folder.startsWith(pathPrefix + "/") && !folder.endsWith(RECURSIVE_SUFFIX))) {
+				storedFolders.add(folder);
+			}
+		}
+
+		if (FolderScanCostModel.preferLiveScan(pathPrefix, storedFolders.size())) {
+			// Each live scan also serves as new sample, kept in memory until the next measurement.
+			long startParsingTimestamp = System.currentTimeMillis();
+			ArrayList<String> result = getAllImageSubfolders(new File(pathPrefix), null, null);
+			FolderScanCostModel.recordLiveScan(pathPrefix, System.currentTimeMillis() - startParsingTimestamp, result.size());
+			return result;
 		}
 		else {
-			ArrayList<String> result = new ArrayList<>();
-			for (String folder : getAllStoredImageFolders()) {
-				if (folder.equals(pathPrefix) || (folder.startsWith(pathPrefix + "/") && !folder.endsWith(RECURSIVE_SUFFIX))) {
-					result.add(folder);
-				}
+			if (FolderScanCostModel.isRemeasureRequired(pathPrefix)) {
+				measureParsingDuration(parentFolder);
 			}
-			return result;
+			return storedFolders;
 		}
 	}
 
 	/**
-	 * Check if parsing of subfolders of a given parent folder goes quickly.
+	 * Measure the parsing duration of subfolders of a given parent folder in a separate thread, and store it in the cost model.
 	 *
 	 * @param parentFolder The parent folder.
 	 */
-	public static void checkForQuickParsing(final String parentFolder) {
+	public static void measureParsingDuration(final String parentFolder) {
 		final String pathPrefix;
 		if (parentFolder.endsWith(RECURSIVE_SUFFIX)) {
 			pathPrefix = parentFolder.substring(0, parentFolder.length() - RECURSIVE_SUFFIX.length());
@@ -922,21 +1378,16 @@ public final class ImageUtil {
 		else {
 			pathPrefix = parentFolder;
 		}
+		if (!FolderScanCostModel.startMeasurement(pathPrefix)) {
+			return;
+		}
 
 		new Thread() {
 			@Override
 			public void run() {
 				long startParsingTimestamp = System.currentTimeMillis();
-				getAllImageSubfolders(new File(pathPrefix), null, null);
-				long parsingDuration = System.currentTimeMillis() - startParsingTimestamp;
-				ArrayList<String> quickParsingFolders = PreferenceUtil.getSharedPreferenceStringList(R.string.key_quick_parsing_image_folders);
-				if (parsingDuration > QUICK_PARSING_MILLIS) {
-					quickParsingFolders.remove(pathPrefix);
-				}
-				else {
-					quickParsingFolders.add(pathPrefix);
-				}
-				PreferenceUtil.setSharedPreferenceStringList(R.string.key_quick_parsing_image_folders, quickParsingFolders);
+				List<String> imageFolders = getAllImageSubfolders(new File(pathPrefix), null, null);
+				FolderScanCostModel.recordMeasurement(pathPrefix, System.currentTimeMillis() - startParsingTimestamp, imageFolders.size());
 			}
 		}.start();
 	}
@@ -1037,11 +1488,42 @@ public final class ImageUtil {
 	 * @return the colorized image bitmap
 	 */
 	public static Bitmap getColorizedBitmap(final int resourceId, final int colorBlackId, final int colorWhiteId) {
-		return changeBitmapColor(getBitmapFromResource(resourceId),
+		return getColoredResourceBitmap(resourceId,
 				Application.getAppContext().getResources().getColor(colorBlackId),
 				Application.getAppContext().getResources().getColor(colorWhiteId));
 	}
 
+	/**
+	 * Get a black/white bitmap resource with changed colours. The result is cached, so it must not be modified by the caller.
+	 *
+	 * @param resourceId The bitmap resource id.
+	 * @param colorBlack The target color of the black parts
+	 * @param colorWhite The target color of the white parts
+	 * @return the bitmap with the target color.
+	 */
+	public static Bitmap getColoredResourceBitmap(final int resourceId, final int colorBlack, final int colorWhite) {
+		String key = resourceId + "|" + colorBlack + "|" + colorWhite;
+		Bitmap coloredBitmap = COLORED_RESOURCE_BITMAPS.get(key);
+		if (coloredBitmap != null) {
+			return coloredBitmap;
+		}
+
+		Bitmap sourceBitmap;
+		synchronized (RESOURCE_BITMAPS) {
+			sourceBitmap = RESOURCE_BITMAPS.get(resourceId);
+			if (sourceBitmap == null) {
+				sourceBitmap = BitmapFactory.decodeResource(Application.getAppContext().getResources(), resourceId);
+				if (sourceBitmap == null) {
+					return null;
+				}
+				RESOURCE_BITMAPS.put(resourceId, sourceBitmap);
+			}
+		}
+		coloredBitmap = changeBitmapColor(sourceBitmap, colorBlack, colorWhite);
+		COLORED_RESOURCE_BITMAPS.put(key, coloredBitmap);
+		return coloredBitmap;
+	}
+
 	/**
 	 * Get a transparent icon from a resource id.
 	 *
@@ -1056,23 +1538,48 @@ public final class ImageUtil {
 	}
 
 	/**
-	 * Retrieve a part of a bitmap in full resolution.
-	 *
-	 * @param fullBitmap The bitmap from which to get the part.
-	 * @param minX       The minimum X position to retrieve.
-	 * @param maxX       The maximum X position to retrieve.
-	 * @param minY       The minimum Y position to retrieve.
-	 * @param maxY       The maximum Y position to retrieve.
-	 * @return The bitmap.
-	 */
-	public static Bitmap getPartialBitmap(final Bitmap fullBitmap, final float minX, final float maxX,
-										  final float minY,
-										  final float maxY) {
-
-		return Bitmap.createBitmap(fullBitmap, Math.round(minX * fullBitmap.getWidth()),
-				Math.round(minY * fullBitmap.getHeight()),
-				Math.round((maxX - minX) * fullBitmap.getWidth()),
-				Math.round((maxY - minY) * fullBitmap.getHeight()));
+	 * The usage of a bitmap, determining its bitmap config.
+	 */
+	public enum BitmapUsage {
+		/**
+		 * Bitmap only displayed in a view of the app.
+		 */
+		DISPLAY,
+		/**
+		 * Thumbnail displayed in a view of the app.
+		 */
+		THUMBNAIL,
+		/**
+		 * Bitmap passed to widgets or notifications via RemoteViews.
+		 */
+		REMOTE,
+		/**
+		 * Bitmap whose pixels are read or which is drawn on.
+		 */
+		PIXEL_ACCESS;
+
+		/**
+		 * Get the bitmap config for this usage.
+		 *
+		 * @param hasAlpha Flag indicating if the image may have transparency.
+		 * @return The bitmap config.
+		 */
+		public Config getConfig(final boolean hasAlpha) {
+			if (this == DISPLAY && SystemUtil.isAtLeastVersion(VERSION_CODES.O)) {
+				return Config.HARDWARE;
+			}
+			return getSoftwareConfig(hasAlpha);
+		}
+
+		/**
+		 * Get the bitmap config for this usage, for cases where a software bitmap is required.
+		 *
+		 * @param hasAlpha Flag indicating if the image may have transparency.
+		 * @return The bitmap config.
+		 */
+		public Config getSoftwareConfig(final boolean hasAlpha) {
+			return hasAlpha || this == DISPLAY || this == PIXEL_ACCESS ? Config.ARGB_8888 : Config.RGB_565;
+		}
 	}
 
 	/**
@@ -1094,28 +1601,4 @@ public final class ImageUtil {
 		void handleImageFolder(String imageFolder);
 	}
 
-	/**
-	 * A comparator comparing files by localized name.
-	 */
-	private static class FileComparator implements Comparator<File> {
-		/**
-		 * A singleton instance.
-		 */
-		private static final FileComparator INSTANCE = new FileComparator();
-
-		/**
-		 * Get the singleton instance.
-		 *
-		 * @return The singleton instance.
-		 */
-		private static FileComparator getInstance() {
-			return INSTANCE;
-		}
-
-		@Override
-		public int compare(final File o1, final File o2) {
-			return Collator.getInstance().compare(o1.getName(), o2.getName());
-		}
-	}
-
 }
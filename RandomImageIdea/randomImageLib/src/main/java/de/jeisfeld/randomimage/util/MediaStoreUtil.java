@@ -3,8 +3,6 @@ package de.jeisfeld.randomimage.util;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.media.MediaScannerConnection;
 import android.media.MediaScannerConnection.OnScanCompletedListener;
 import android.net.Uri;
@@ -171,28 +169,6 @@ public final class MediaStoreUtil {
 		return result;
 	}
 
-	/**
-	 * Retrieve a thumbnail of a bitmap from the mediastore.
-	 *
-	 * @param path The path of the image
-	 * @return the thumbnail.
-	 */
-	public static Bitmap getThumbnailFromPath(final String path) {
-		ContentResolver resolver = Application.getAppContext().getContentResolver();
-
-		try {
-			int imageId = getImageId(path);
-
-			BitmapFactory.Options options = new BitmapFactory.Options();
-			options.inDither = true;
-			options.inSampleSize = 1;
-			return MediaStore.Images.Thumbnails.getThumbnail(resolver, imageId, MediaStore.Images.Thumbnails.MINI_KIND, options);
-		}
-		catch (Exception e) {
-			return null;
-		}
-	}
-
 	/**
 	 * Trigger the media scanner for all files.
 	 *
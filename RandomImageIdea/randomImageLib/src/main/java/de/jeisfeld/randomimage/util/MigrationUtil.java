@@ -84,6 +84,9 @@ public final class MigrationUtil {
 		case 68: // MAGIC_NUMBER
 			doMigrationToVersion68();
 			break;
+		case 71: // MAGIC_NUMBER
+			doMigrationToVersion71();
+			break;
 		default:
 			break;
 		}
@@ -245,4 +248,12 @@ public final class MigrationUtil {
 			}
 		}
 	}
+
+	/**
+	 * Do the migration steps for migration into app version 71.
+	 */
+	private static void doMigrationToVersion71() {
+		// The quick parsing folders have been replaced by the folder scan statistics.
+		PreferenceUtil.removeSharedPreference(R.string.key_quick_parsing_image_folders);
+	}
 }
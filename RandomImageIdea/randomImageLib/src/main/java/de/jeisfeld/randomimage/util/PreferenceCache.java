@@ -0,0 +1,306 @@
+package de.jeisfeld.randomimage.util;
+
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.Editor;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import android.util.SparseArray;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import de.jeisfeld.randomimage.Application;
+
+/**
+ * In-memory cache of the default shared preferences. All values are loaded once, reads are served from memory, resolved preference
+ * keys and parsed numeric strings are kept, and writes are coalesced into one batched persist on the main thread. Changes done
+ * directly via the SharedPreferences (e.g. by preference screens) are taken over via a change listener.
+ */
+final class PreferenceCache implements OnSharedPreferenceChangeListener {
+	/**
+	 * Marker for a pending removal of a preference.
+	 */
+	private static final Object REMOVED = new Object();
+
+	/**
+	 * The instance of the cache.
+	 */
+	private static PreferenceCache mInstance = null;
+
+	/**
+	 * The shared preferences.
+	 */
+	private final SharedPreferences mSharedPreferences;
+
+	/**
+	 * The preference values, by key.
+	 */
+	private final Map<String, Object> mValues;
+
+	/**
+	 * The numeric values parsed from String preferences, by key. Null values indicate that the value is not numeric.
+	 */
+	private final Map<String, Long> mParsedValues = new HashMap<>();
+
+	/**
+	 * The writes not yet persisted, by key.
+	 */
+	private final Map<String, Object> mPendingWrites = new HashMap<>();
+
+	/**
+	 * The preference keys, by preference id.
+	 */
+	private final SparseArray<String> mKeys = new SparseArray<>();
+
+	/**
+	 * The indexed preference keys, by preference id and index.
+	 */
+	private final SparseArray<Map<Object, String>> mIndexedKeys = new SparseArray<>();
+
+	/**
+	 * The handler used for persisting the pending writes.
+	 */
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Flag indicating if persisting the pending writes is scheduled.
+	 */
+	private boolean mIsFlushScheduled = false;
+
+	/**
+	 * Constructor.
+	 */
+	private PreferenceCache() {
+		mSharedPreferences = PreferenceManager.getDefaultSharedPreferences(Application.getAppContext());
+		mValues = new HashMap<>(mSharedPreferences.getAll());
+		mSharedPreferences.registerOnSharedPreferenceChangeListener(this);
+	}
+
+	/**
+	 * Get the instance of the cache. The preferences are loaded on first access.
+	 *
+	 * @return The instance.
+	 */
+	static synchronized PreferenceCache getInstance() {
+		if (mInstance == null) {
+			mInstance = new PreferenceCache();
+		}
+		return mInstance;
+	}
+
+	/**
+	 * Get the key of a preference.
+	 *
+	 * @param preferenceId The id of the preference.
+	 * @return The key.
+	 */
+	synchronized String getKey(final int preferenceId) {
+		String key = mKeys.get(preferenceId);
+		if (key == null) {
+			key = Application.getAppContext().getString(preferenceId);
+			mKeys.put(preferenceId, key);
+		}
+		return key;
+	}
+
+	/**
+	 * Get the key of an indexed preference.
+	 *
+	 * @param preferenceId The id of the preference.
+	 * @param index        The index.
+	 * @return The key.
+	 */
+	synchronized String getIndexedKey(final int preferenceId, final Object index) {
+		Map<Object, String> keys = mIndexedKeys.get(preferenceId);
+		if (keys == null) {
+			keys = new HashMap<>();
+			mIndexedKeys.put(preferenceId, keys);
+		}
+		String key = keys.get(index);
+		if (key == null) {
+			key = getKey(preferenceId) + "[" + index + "]";
+			keys.put(index, key);
+		}
+		return key;
+	}
+
+	/**
+	 * Get the value of a preference.
+	 *
+	 * @param key The key of the preference.
+	 * @return The value, or null if not set.
+	 */
+	synchronized Object get(final String key) {
+		return mValues.get(key);
+	}
+
+	/**
+	 * Check the existence of a preference.
+	 *
+	 * @param key The key of the preference.
+	 * @return True if the preference exists.
+	 */
+	synchronized boolean contains(final String key) {
+		return mValues.containsKey(key);
+	}
+
+	/**
+	 * Get the numeric value of a String preference.
+	 *
+	 * @param key The key of the preference.
+	 * @return The numeric value, or null if the preference is not set or not numeric.
+	 */
+	synchronized Long getParsedLong(final String key) {
+		if (mParsedValues.containsKey(key)) {
+			return mParsedValues.get(key);
+		}
+		Object value = mValues.get(key);
+		Long parsedValue = null;
+		if (value instanceof String && ((String) value).length() > 0) {
+			try {
+				parsedValue = Long.parseLong((String) value);
+			}
+			catch (NumberFormatException e) {
+				parsedValue = null;
+			}
+		}
+		mParsedValues.put(key, parsedValue);
+		return parsedValue;
+	}
+
+	/**
+	 * Set the value of a preference. The value is persisted asynchronously, together with other writes.
+	 *
+	 * @param key   The key of the preference.
+	 * @param value The value (String, Boolean, Integer, Long, Float or Set of Strings). Null removes the preference.
+	 */
+	synchronized void put(final String key, final Object value) {
+		if (value == null) {
+			mValues.remove(key);
+			mPendingWrites.put(key, REMOVED);
+		}
+		else {
+			mValues.put(key, value);
+			mPendingWrites.put(key, value);
+		}
+		mParsedValues.remove(key);
+
+		if (!mIsFlushScheduled) {
+			mIsFlushScheduled = true;
+			mHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Persist all pending writes in one batch.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized void flush() {
+		mIsFlushScheduled = false;
+		if (mPendingWrites.isEmpty()) {
+			return;
+		}
+		Editor editor = mSharedPreferences.edit();
+		for (Entry<String, Object> entry : mPendingWrites.entrySet()) {
+			String key = entry.getKey();
+			Object value = entry.getValue();
+			if (value instanceof String) {
+				editor.putString(key, (String) value);
+			}
+			else if (value instanceof Boolean) {
+				editor.putBoolean(key, (Boolean) value);
+			}
+			else if (value instanceof Integer) {
+				editor.putInt(key, (Integer) value);
+			}
+			else if (value instanceof Long) {
+				editor.putLong(key, (Long) value);
+			}
+			else if (value instanceof Float) {
+				editor.putFloat(key, (Float) value);
+			}
+			else if (value instanceof Set) {
+				editor.putStringSet(key, (Set<String>) value);
+			}
+			else {
+				editor.remove(key);
+			}
+		}
+		mPendingWrites.clear();
+		editor.apply();
+	}
+
+	@Override
+	public synchronized void onSharedPreferenceChanged(final SharedPreferences sharedPreferences, final String key) {
+		if (key == null) {
+			// All preferences have been cleared.
+			Map<String, Object> pendingValues = new HashMap<>();
+			for (String pendingKey : mPendingWrites.keySet()) {
+				pendingValues.put(pendingKey, mValues.get(pendingKey));
+			}
+			mValues.clear();
+			mValues.putAll(sharedPreferences.getAll());
+			for (Entry<String, Object> entry : pendingValues.entrySet()) {
+				if (entry.getValue() == null) {
+					mValues.remove(entry.getKey());
+				}
+				else {
+					mValues.put(entry.getKey(), entry.getValue());
+				}
+			}
+			mParsedValues.clear();
+		}
+		else if (!mPendingWrites.containsKey(key)) {
+			// Values written via this cache are already up to date - otherwise take over the value.
+			Object value = readValue(sharedPreferences, key, mValues.get(key));
+			if (value == null) {
+				mValues.remove(key);
+			}
+			else {
+				mValues.put(key, value);
+			}
+			mParsedValues.remove(key);
+		}
+	}
+
+	/**
+	 * Read the value of a preference from the shared preferences.
+	 *
+	 * @param sharedPreferences The shared preferences.
+	 * @param key               The key of the preference.
+	 * @param cachedValue       The cached value, used for guessing the type of the preference.
+	 * @return The value, or null if not set.
+	 */
+	private static Object readValue(final SharedPreferences sharedPreferences, final String key, final Object cachedValue) {
+		if (!sharedPreferences.contains(key)) {
+			return null;
+		}
+		try {
+			if (cachedValue instanceof String) {
+				return sharedPreferences.getString(key, null);
+			}
+			else if (cachedValue instanceof Boolean) {
+				return sharedPreferences.getBoolean(key, false);
+			}
+			else if (cachedValue instanceof Integer) {
+				return sharedPreferences.getInt(key, 0);
+			}
+			else if (cachedValue instanceof Long) {
+				return sharedPreferences.getLong(key, 0);
+			}
+		}
+		catch (ClassCastException e) {
+			// type has changed - read via getAll.
+		}
+		return sharedPreferences.getAll().get(key);
+	}
+}
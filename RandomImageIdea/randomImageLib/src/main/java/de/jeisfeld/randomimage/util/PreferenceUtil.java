@@ -1,9 +1,6 @@
 package de.jeisfeld.randomimage.util;
 
-import android.content.SharedPreferences;
-import android.content.SharedPreferences.Editor;
 import android.net.Uri;
-import android.preference.PreferenceManager;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,12 +34,36 @@ public final class PreferenceUtil {
 	}
 
 	/**
-	 * Retrieve the default shared preferences of the application.
+	 * Retrieve the in-memory cache of the default shared preferences of the application.
 	 *
-	 * @return the default shared preferences.
+	 * @return the preference cache.
 	 */
-	private static SharedPreferences getSharedPreferences() {
-		return PreferenceManager.getDefaultSharedPreferences(Application.getAppContext());
+	private static PreferenceCache getCache() {
+		return PreferenceCache.getInstance();
+	}
+
+	/**
+	 * Get the key of a shared preference.
+	 *
+	 * @param preferenceId the id of the shared preference.
+	 * @return the key.
+	 */
+	private static String getKey(final int preferenceId) {
+		return getCache().getKey(preferenceId);
+	}
+
+	/**
+	 * Retrieve a shared preference value of a given type.
+	 *
+	 * @param key          the key of the shared preference.
+	 * @param type         the type of the preference.
+	 * @param defaultValue the default value.
+	 * @param <T>          the type of the preference.
+	 * @return the corresponding preference value, or the default value if not set or of a different type.
+	 */
+	private static <T> T getValue(final String key, final Class<T> type, final T defaultValue) {
+		Object value = getCache().get(key);
+		return type.isInstance(value) ? type.cast(value) : defaultValue;
 	}
 
 	/**
@@ -52,7 +73,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static String getSharedPreferenceString(final int preferenceId) {
-		return getSharedPreferences().getString(Application.getAppContext().getString(preferenceId), null);
+		return getValue(getKey(preferenceId), String.class, null);
 	}
 
 	/**
@@ -78,9 +99,7 @@ public final class PreferenceUtil {
 	 * @param s            the target value of the preference.
 	 */
 	public static void setSharedPreferenceString(final int preferenceId, final String s) {
-		Editor editor = getSharedPreferences().edit();
-		editor.putString(Application.getAppContext().getString(preferenceId), s);
-		editor.apply();
+		getCache().put(getKey(preferenceId), s);
 	}
 
 	/**
@@ -90,7 +109,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static boolean getSharedPreferenceBoolean(final int preferenceId) {
-		return getSharedPreferences().getBoolean(Application.getAppContext().getString(preferenceId), false);
+		return getValue(getKey(preferenceId), Boolean.class, false);
 	}
 
 	/**
@@ -100,9 +119,7 @@ public final class PreferenceUtil {
 	 * @param b            the target value of the preference.
 	 */
 	public static void setSharedPreferenceBoolean(final int preferenceId, final boolean b) {
-		Editor editor = getSharedPreferences().edit();
-		editor.putBoolean(Application.getAppContext().getString(preferenceId), b);
-		editor.apply();
+		getCache().put(getKey(preferenceId), b);
 	}
 
 	/**
@@ -113,7 +130,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static int getSharedPreferenceInt(final int preferenceId, final int defaultValue) {
-		return getSharedPreferences().getInt(Application.getAppContext().getString(preferenceId), defaultValue);
+		return getValue(getKey(preferenceId), Integer.class, defaultValue);
 	}
 
 	/**
@@ -123,9 +140,7 @@ public final class PreferenceUtil {
 	 * @param i            the target value of the preference.
 	 */
 	public static void setSharedPreferenceInt(final int preferenceId, final int i) {
-		Editor editor = getSharedPreferences().edit();
-		editor.putInt(Application.getAppContext().getString(preferenceId), i);
-		editor.apply();
+		getCache().put(getKey(preferenceId), i);
 	}
 
 	/**
@@ -148,23 +163,12 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static int getSharedPreferenceIntString(final int preferenceId, @Nullable final Integer defaultId) {
-		String resultString;
-
-		if (defaultId == null) {
-			resultString = getSharedPreferenceString(preferenceId);
-		}
-		else {
-			resultString = getSharedPreferenceString(preferenceId, defaultId);
-		}
-		if (resultString == null || resultString.length() == 0) {
-			return -1;
-		}
-		try {
-			return Integer.parseInt(resultString);
-		}
-		catch (NumberFormatException e) {
-			return -1;
+		if (defaultId != null) {
+			// Set the default value if not yet set.
+			getSharedPreferenceString(preferenceId, defaultId);
 		}
+		Long result = getCache().getParsedLong(getKey(preferenceId));
+		return result == null || result < Integer.MIN_VALUE || result > Integer.MAX_VALUE ? -1 : result.intValue();
 	}
 
 	/**
@@ -185,7 +189,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static long getSharedPreferenceLong(final int preferenceId, final long defaultValue) {
-		return getSharedPreferences().getLong(Application.getAppContext().getString(preferenceId), defaultValue);
+		return getValue(getKey(preferenceId), Long.class, defaultValue);
 	}
 
 	/**
@@ -195,9 +199,7 @@ public final class PreferenceUtil {
 	 * @param i            the target value of the preference.
 	 */
 	public static void setSharedPreferenceLong(final int preferenceId, final long i) {
-		Editor editor = getSharedPreferences().edit();
-		editor.putLong(Application.getAppContext().getString(preferenceId), i);
-		editor.apply();
+		getCache().put(getKey(preferenceId), i);
 	}
 
 	/**
@@ -206,8 +208,9 @@ public final class PreferenceUtil {
 	 * @param preferenceId the id of the shared preference.
 	 * @return the corresponding preference value.
 	 */
+	@SuppressWarnings("unchecked")
 	public static Set<String> getSharedPreferenceStringSet(final int preferenceId) {
-		return getSharedPreferences().getStringSet(Application.getAppContext().getString(preferenceId), new HashSet<String>());
+		return getValue(getKey(preferenceId), Set.class, new HashSet<String>());
 	}
 
 
@@ -219,23 +222,12 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static long getSharedPreferenceLongString(final int preferenceId, @Nullable final Integer defaultId) {
-		String resultString;
-
-		if (defaultId == null) {
-			resultString = getSharedPreferenceString(preferenceId);
-		}
-		else {
-			resultString = getSharedPreferenceString(preferenceId, defaultId);
-		}
-		if (resultString == null || resultString.length() == 0) {
-			return -1;
-		}
-		try {
-			return Long.parseLong(resultString);
-		}
-		catch (NumberFormatException e) {
-			return -1;
+		if (defaultId != null) {
+			// Set the default value if not yet set.
+			getSharedPreferenceString(preferenceId, defaultId);
 		}
+		Long result = getCache().getParsedLong(getKey(preferenceId));
+		return result == null ? -1 : result;
 	}
 
 	/**
@@ -293,7 +285,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static Uri getSharedPreferenceUri(final int preferenceId) {
-		String uriString = getSharedPreferences().getString(Application.getAppContext().getString(preferenceId), null);
+		String uriString = getValue(getKey(preferenceId), String.class, null);
 
 		if (uriString == null) {
 			return null;
@@ -311,14 +303,7 @@ public final class PreferenceUtil {
 	 * @param uri          the target value of the preference.
 	 */
 	public static void setSharedPreferenceUri(final int preferenceId, @Nullable final Uri uri) {
-		Editor editor = getSharedPreferences().edit();
-		if (uri == null) {
-			editor.putString(Application.getAppContext().getString(preferenceId), null);
-		}
-		else {
-			editor.putString(Application.getAppContext().getString(preferenceId), uri.toString());
-		}
-		editor.apply();
+		getCache().put(getKey(preferenceId), uri == null ? null : uri.toString());
 	}
 
 	/**
@@ -327,9 +312,7 @@ public final class PreferenceUtil {
 	 * @param preferenceId the id of the shared preference.
 	 */
 	public static void removeSharedPreference(final int preferenceId) {
-		Editor editor = getSharedPreferences().edit();
-		editor.remove(Application.getAppContext().getString(preferenceId));
-		editor.apply();
+		getCache().put(getKey(preferenceId), null);
 	}
 
 	/**
@@ -340,7 +323,7 @@ public final class PreferenceUtil {
 	 * @return The indexed preference key.
 	 */
 	private static String getIndexedPreferenceKey(final int preferenceId, final Object index) {
-		return Application.getAppContext().getString(preferenceId) + "[" + index + "]";
+		return getCache().getIndexedKey(preferenceId, index);
 	}
 
 	/**
@@ -351,7 +334,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static String getIndexedSharedPreferenceString(final int preferenceId, final Object index) {
-		return getSharedPreferences().getString(getIndexedPreferenceKey(preferenceId, index), null);
+		return getValue(getIndexedPreferenceKey(preferenceId, index), String.class, null);
 	}
 
 	/**
@@ -362,9 +345,7 @@ public final class PreferenceUtil {
 	 * @param s            the target value of the preference.
 	 */
 	public static void setIndexedSharedPreferenceString(final int preferenceId, final Object index, final String s) {
-		Editor editor = getSharedPreferences().edit();
-		editor.putString(getIndexedPreferenceKey(preferenceId, index), s);
-		editor.apply();
+		getCache().put(getIndexedPreferenceKey(preferenceId, index), s);
 	}
 
 	/**
@@ -376,7 +357,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static boolean getIndexedSharedPreferenceBoolean(final int preferenceId, final Object index, final boolean defaultValue) {
-		return getSharedPreferences().getBoolean(getIndexedPreferenceKey(preferenceId, index), defaultValue);
+		return getValue(getIndexedPreferenceKey(preferenceId, index), Boolean.class, defaultValue);
 	}
 
 	/**
@@ -387,9 +368,7 @@ public final class PreferenceUtil {
 	 * @param b            the target value of the preference.
 	 */
 	public static void setIndexedSharedPreferenceBoolean(final int preferenceId, final Object index, final boolean b) {
-		Editor editor = getSharedPreferences().edit();
-		editor.putBoolean(getIndexedPreferenceKey(preferenceId, index), b);
-		editor.apply();
+		getCache().put(getIndexedPreferenceKey(preferenceId, index), b);
 	}
 
 	/**
@@ -401,7 +380,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static int getIndexedSharedPreferenceInt(final int preferenceId, final Object index, final int defaultValue) {
-		return getSharedPreferences().getInt(getIndexedPreferenceKey(preferenceId, index), defaultValue);
+		return getValue(getIndexedPreferenceKey(preferenceId, index), Integer.class, defaultValue);
 	}
 
 	/**
@@ -412,9 +391,7 @@ public final class PreferenceUtil {
 	 * @param i            the target value of the preference.
 	 */
 	public static void setIndexedSharedPreferenceInt(final int preferenceId, final Object index, final int i) {
-		Editor editor = getSharedPreferences().edit();
-		editor.putInt(getIndexedPreferenceKey(preferenceId, index), i);
-		editor.apply();
+		getCache().put(getIndexedPreferenceKey(preferenceId, index), i);
 	}
 
 	/**
@@ -426,7 +403,7 @@ public final class PreferenceUtil {
 	 * @return the corresponding preference value.
 	 */
 	public static long getIndexedSharedPreferenceLong(final int preferenceId, final Object index, final long defaultValue) {
-		return getSharedPreferences().getLong(getIndexedPreferenceKey(preferenceId, index), defaultValue);
+		return getValue(getIndexedPreferenceKey(preferenceId, index), Long.class, defaultValue);
 	}
 
 	/**
@@ -437,9 +414,7 @@ public final class PreferenceUtil {
 	 * @param i            the target value of the preference.
 	 */
 	public static void setIndexedSharedPreferenceLong(final int preferenceId, final Object index, final long i) {
-		Editor editor = getSharedPreferences().edit();
-		editor.putLong(getIndexedPreferenceKey(preferenceId, index), i);
-		editor.apply();
+		getCache().put(getIndexedPreferenceKey(preferenceId, index), i);
 	}
 
 	/**
@@ -489,9 +464,7 @@ public final class PreferenceUtil {
 	 * @param index        The index
 	 */
 	public static void removeIndexedSharedPreference(final int preferenceId, final Object index) {
-		Editor editor = getSharedPreferences().edit();
-		editor.remove(getIndexedPreferenceKey(preferenceId, index));
-		editor.apply();
+		getCache().put(getIndexedPreferenceKey(preferenceId, index), null);
 	}
 
 	/**
@@ -502,7 +475,7 @@ public final class PreferenceUtil {
 	 * @return True if the preference exists.
 	 */
 	public static boolean hasIndexedSharedPreference(final int preferenceId, final Object index) {
-		return getSharedPreferences().contains(getIndexedPreferenceKey(preferenceId, index));
+		return getCache().contains(getIndexedPreferenceKey(preferenceId, index));
 	}
 
 	/**
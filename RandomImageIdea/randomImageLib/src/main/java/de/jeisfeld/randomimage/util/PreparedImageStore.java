@@ -0,0 +1,348 @@
+package de.jeisfeld.randomimage.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.jeisfeld.randomimage.Application;
+
+/**
+ * Store of images prepared ahead of time for scheduled widget and notification updates. After an update, the next image is chosen and
+ * its bitmaps are decoded in the background and stored on disk. The next scheduled update then only needs to publish them, without
+ * loading the image list or decoding the image - also if the process has been restarted in between.
+ */
+public final class PreparedImageStore {
+	/**
+	 * The version of the info file format.
+	 */
+	private static final int INFO_VERSION = 1;
+
+	/**
+	 * The name of the folder containing the store.
+	 */
+	private static final String FOLDER_NAME = "prepared";
+
+	/**
+	 * The suffix of the info files.
+	 */
+	private static final String INFO_SUFFIX = ".info";
+
+	/**
+	 * The suffix of the bitmap files.
+	 */
+	private static final String BITMAP_SUFFIX = ".png";
+
+	/**
+	 * The suffix of temporary files.
+	 */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The quality parameter for storing bitmaps (ignored for PNG).
+	 */
+	private static final int PNG_QUALITY = 100;
+
+	/**
+	 * Lock for access to the store files.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * The executor preparing the images in the background.
+	 */
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+		runnable.run();
+	}));
+
+	/**
+	 * The image lists used by the pending preparations, by list name. Each list is loaded only once while preparations are pending.
+	 */
+	private static final Map<String, ImageList> IMAGE_LISTS = new HashMap<>();
+
+	/**
+	 * The number of pending preparations. Guarded by the image lists.
+	 */
+	private static int mPendingCount = 0;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private PreparedImageStore() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Prepare the next image for a key in the background. A previously prepared image for this key is replaced.
+	 *
+	 * @param key            The key, identifying the widget or notification.
+	 * @param listName       The name of the image list from which the image is chosen.
+	 * @param imageList      The image list, if already loaded by the caller. Otherwise null.
+	 * @param specification  A specification of the bitmaps (e.g. their sizes). A prepared image is used only for the same specification.
+	 * @param bitmapCreator  The creator of the bitmaps of the chosen image.
+	 */
+	public static void prepareNextImage(final String key, final String listName, final ImageList imageList, final String specification,
+										final BitmapCreator bitmapCreator) {
+		synchronized (IMAGE_LISTS) {
+			if (imageList != null) {
+				IMAGE_LISTS.put(listName, imageList);
+			}
+			mPendingCount++;
+		}
+		EXECUTOR.execute(() -> {
+			try {
+				ImageList usedImageList = getImageList(listName);
+				if (usedImageList == null) {
+					return;
+				}
+				usedImageList.waitUntilReady();
+				String fileName = usedImageList.getRandomFileName();
+				if (fileName == null) {
+					return;
+				}
+				storePreparedImage(key, listName, specification, fileName, bitmapCreator.createBitmaps(fileName));
+			}
+			catch (Exception e) {
+				Log.w(Application.TAG, "Failed to prepare next image for " + key, e);
+			}
+			finally {
+				synchronized (IMAGE_LISTS) {
+					if (--mPendingCount == 0) {
+						IMAGE_LISTS.clear();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Get an image list for the pending preparations. The list is loaded only if not provided by a caller or loaded before.
+	 *
+	 * @param listName The list name.
+	 * @return The image list, or null if it cannot be loaded.
+	 */
+	private static ImageList getImageList(final String listName) {
+		synchronized (IMAGE_LISTS) {
+			if (IMAGE_LISTS.containsKey(listName)) {
+				return IMAGE_LISTS.get(listName);
+			}
+		}
+		// Load outside the lock - lists are loaded only by the executor thread.
+		ImageList imageList = ImageRegistry.getImageListByName(listName, false);
+		synchronized (IMAGE_LISTS) {
+			IMAGE_LISTS.put(listName, imageList);
+		}
+		return imageList;
+	}
+
+	/**
+	 * Take the prepared image for a key. The prepared image is removed from the store.
+	 *
+	 * @param key           The key, identifying the widget or notification.
+	 * @param listName      The name of the image list from which the image should be taken.
+	 * @param specification The specification of the bitmaps.
+	 * @return The prepared image, or null if there is no valid prepared image.
+	 */
+	public static PreparedImage takePreparedImage(final String key, final String listName, final String specification) {
+		synchronized (LOCK) {
+			File infoFile = getFile(key + INFO_SUFFIX);
+			if (!infoFile.exists()) {
+				return null;
+			}
+			PreparedImage preparedImage = null;
+			try (DataInputStream infoStream = new DataInputStream(new BufferedInputStream(new FileInputStream(infoFile)))) {
+				if (infoStream.readInt() == INFO_VERSION && infoStream.readUTF().equals(listName)
+						&& infoStream.readUTF().equals(specification)) {
+					String fileName = infoStream.readUTF();
+					long lastModified = infoStream.readLong();
+					Bitmap[] bitmaps = new Bitmap[infoStream.readInt()];
+					for (int i = 0; i < bitmaps.length; i++) {
+						if (infoStream.readBoolean()) {
+							bitmaps[i] = BitmapFactory.decodeFile(getFile(key + "." + i + BITMAP_SUFFIX).getAbsolutePath());
+						}
+					}
+					if (new File(fileName).lastModified() == lastModified) {
+						preparedImage = new PreparedImage(fileName, bitmaps);
+					}
+				}
+			}
+			catch (IOException e) {
+				Log.w(Application.TAG, "Failed to read prepared image for " + key, e);
+			}
+			remove(key);
+			return preparedImage;
+		}
+	}
+
+	/**
+	 * Store a prepared image.
+	 *
+	 * @param key           The key, identifying the widget or notification.
+	 * @param listName      The name of the image list from which the image was chosen.
+	 * @param specification The specification of the bitmaps.
+	 * @param fileName      The file name of the image.
+	 * @param bitmaps       The bitmaps of the image.
+	 * @throws IOException thrown if the files cannot be written.
+	 */
+	private static void storePreparedImage(final String key, final String listName, final String specification, final String fileName,
+										   final Bitmap[] bitmaps) throws IOException {
+		synchronized (LOCK) {
+			remove(key);
+			for (int i = 0; i < bitmaps.length; i++) {
+				if (bitmaps[i] != null) {
+					File bitmapFile = getFile(key + "." + i + BITMAP_SUFFIX);
+					try (OutputStream bitmapStream = new BufferedOutputStream(new FileOutputStream(bitmapFile))) {
+						bitmaps[i].compress(CompressFormat.PNG, PNG_QUALITY, bitmapStream);
+					}
+				}
+			}
+
+			// The info file is written last, so that the entry becomes valid only when complete.
+			File tempInfoFile = getFile(key + INFO_SUFFIX + TEMP_SUFFIX);
+			try (DataOutputStream infoStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempInfoFile)))) {
+				infoStream.writeInt(INFO_VERSION);
+				infoStream.writeUTF(listName);
+				infoStream.writeUTF(specification);
+				infoStream.writeUTF(fileName);
+				infoStream.writeLong(new File(fileName).lastModified());
+				infoStream.writeInt(bitmaps.length);
+				for (Bitmap bitmap : bitmaps) {
+					infoStream.writeBoolean(bitmap != null);
+				}
+			}
+			if (!tempInfoFile.renameTo(getFile(key + INFO_SUFFIX))) {
+				Log.w(Application.TAG, "Failed to store prepared image for " + key);
+			}
+		}
+	}
+
+	/**
+	 * Remove the prepared image for a key.
+	 *
+	 * @param key The key, identifying the widget or notification.
+	 */
+	public static void remove(final String key) {
+		synchronized (LOCK) {
+			File[] files = getFolder().listFiles();
+			if (files != null) {
+				for (File file : files) {
+					if (file.getName().startsWith(key + ".") && !file.delete()) {
+						Log.w(Application.TAG, "Failed to delete prepared file " + file.getName());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove all prepared images. To be called when image lists change.
+	 */
+	public static void clear() {
+		synchronized (LOCK) {
+			File[] files = getFolder().listFiles();
+			if (files != null) {
+				for (File file : files) {
+					if (!file.delete()) {
+						Log.w(Application.TAG, "Failed to delete prepared file " + file.getName());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the folder of the store.
+	 *
+	 * @return The folder.
+	 */
+	private static File getFolder() {
+		File folder = new File(Application.getAppContext().getCacheDir(), FOLDER_NAME);
+		if (!folder.exists() && !folder.mkdirs()) {
+			Log.w(Application.TAG, "Failed to create prepared image folder");
+		}
+		return folder;
+	}
+
+	/**
+	 * Get a file of the store.
+	 *
+	 * @param name The file name.
+	 * @return The file.
+	 */
+	private static File getFile(final String name) {
+		return new File(getFolder(), name);
+	}
+
+	/**
+	 * An image prepared ahead of time.
+	 */
+	public static final class PreparedImage {
+		/**
+		 * The file name of the image.
+		 */
+		private final String mFileName;
+		/**
+		 * The bitmaps of the image.
+		 */
+		private final Bitmap[] mBitmaps;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param fileName The file name of the image.
+		 * @param bitmaps  The bitmaps of the image.
+		 */
+		private PreparedImage(final String fileName, final Bitmap[] bitmaps) {
+			mFileName = fileName;
+			mBitmaps = bitmaps;
+		}
+
+		/**
+		 * Get the file name of the image.
+		 *
+		 * @return The file name.
+		 */
+		public String getFileName() {
+			return mFileName;
+		}
+
+		/**
+		 * Get one of the bitmaps of the image.
+		 *
+		 * @param index The index of the bitmap, as returned by the {@link BitmapCreator}.
+		 * @return The bitmap, or null if not available.
+		 */
+		public Bitmap getBitmap(final int index) {
+			return index < mBitmaps.length ? mBitmaps[index] : null;
+		}
+	}
+
+	/**
+	 * Creator of the bitmaps of a prepared image.
+	 */
+	public interface BitmapCreator {
+		/**
+		 * Create the bitmaps of an image. Further data such as color signatures may be precalculated here as well.
+		 *
+		 * @param fileName The file name of the image.
+		 * @return The bitmaps. Entries may be null.
+		 */
+		Bitmap[] createBitmaps(String fileName);
+	}
+}
@@ -2,6 +2,8 @@ package de.jeisfeld.randomimage.util;
 
 import android.os.Parcelable;
 
+import java.util.List;
+
 /**
  * An interface that may provide random files as a list.
  */
@@ -23,6 +25,15 @@ public interface RandomFileListProvider extends RandomFileProvider, Parcelable {
 	 */
 	void goBackward();
 
+	/**
+	 * Get the file names following the current file, without changing the current position.
+	 *
+	 * @param count    The maximum number of file names.
+	 * @param backward Flag indicating if the file names before the current file should be returned.
+	 * @return The file names, starting with the nearest one. May contain less than count file names.
+	 */
+	List<String> getUpcomingFileNames(int count, boolean backward);
+
 	/**
 	 * Remove the current file from the list.
 	 *
@@ -0,0 +1,747 @@
+package de.jeisfeld.randomimage.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.BitmapFactory;
+import android.os.Build.VERSION_CODES;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import de.jeisfeld.randomimage.Application;
+
+/**
+ * App-owned persistent store of image thumbnails. Thumbnails are stored as WebP data in a single packed blob file, which is
+ * memory-mapped for reading, together with an index file mapping the image path to the position in the blob. Entries are valid only
+ * as long as modification date and size of the image file are unchanged.
+ */
+public final class ThumbnailStore {
+	/**
+	 * The maximum width and height of the stored thumbnails.
+	 */
+	public static final int THUMBNAIL_SIZE = MediaStoreUtil.MINI_THUMB_SIZE;
+
+	/**
+	 * The WebP compression quality.
+	 */
+	private static final int WEBP_QUALITY = 80;
+
+	/**
+	 * The maximum number of decoded thumbnails waiting to be stored in the background.
+	 */
+	private static final int MAX_PENDING_THUMBNAILS = 20;
+
+	/**
+	 * The maximum size of the blob file.
+	 */
+	private static final long MAX_BLOB_SIZE = 256L * 1024 * 1024; // MAGIC_NUMBER
+
+	/**
+	 * The version of the index file format.
+	 */
+	private static final int INDEX_VERSION = 1;
+
+	/**
+	 * The name of the folder containing the store.
+	 */
+	private static final String FOLDER_NAME = "thumbnails";
+
+	/**
+	 * The name of the blob file.
+	 */
+	private static final String BLOB_FILE_NAME = "thumbnails.blob";
+
+	/**
+	 * The name of the index file.
+	 */
+	private static final String INDEX_FILE_NAME = "thumbnails.idx";
+
+	/**
+	 * The suffix of temporary files used during compaction.
+	 */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The index of the store, in order of last access.
+	 */
+	private static final Map<String, IndexEntry> INDEX = new LinkedHashMap<>(16, 0.75f, true); // MAGIC_NUMBER
+
+	/**
+	 * The paths of images for which thumbnails are waiting for generation.
+	 */
+	private static final Set<String> GENERATION_QUEUE = new LinkedHashSet<>();
+
+	/**
+	 * The thumbnails already decoded by the caller which wait for being stored in the background. Guarded by the generation queue.
+	 */
+	private static final Map<String, PendingThumbnail> PENDING_THUMBNAILS = new HashMap<>();
+
+	/**
+	 * Lock for access to the store files.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * Flag indicating if the index has been loaded.
+	 */
+	private static boolean mIsLoaded = false;
+
+	/**
+	 * The current size of the blob file.
+	 */
+	private static long mBlobSize = 0;
+
+	/**
+	 * The memory-mapped blob file.
+	 */
+	private static MappedByteBuffer mMappedBlob = null;
+
+	/**
+	 * Flag indicating if a compaction is running.
+	 */
+	private static boolean mIsCompacting = false;
+
+	/**
+	 * The number of resets of the store, used to detect a reset during compaction.
+	 */
+	private static int mResetCount = 0;
+
+	/**
+	 * The thread generating thumbnails.
+	 */
+	private static Thread mGeneratorThread = null;
+
+	/**
+	 * Hide default constructor.
+	 */
+	private ThumbnailStore() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Get the stored thumbnail of an image. If there is no valid thumbnail, the caller is responsible for decoding the image and may
+	 * store the result via {@link #storeThumbnail(String, Bitmap)}.
+	 *
+	 * @param path   The file path of the image.
+	 * @param pooled Flag indicating if a bitmap from the {@link BitmapPool} should be reused for decoding.
+	 * @param config The preferred bitmap config.
+	 * @return The thumbnail, or null if not available.
+	 */
+	public static Bitmap getThumbnail(final String path, final boolean pooled, final Config config) {
+		File file = new File(path);
+		byte[] data = null;
+		synchronized (LOCK) {
+			loadIndex();
+			IndexEntry entry = INDEX.get(path);
+			if (entry != null && entry.isValidFor(file)) {
+				try {
+					if (mMappedBlob == null || mMappedBlob.capacity() < entry.mOffset + entry.mLength) {
+						mapBlob();
+					}
+					data = new byte[entry.mLength];
+					ByteBuffer buffer = mMappedBlob.duplicate();
+					buffer.position((int) entry.mOffset);
+					buffer.get(data);
+				}
+				catch (Exception e) {
+					Log.w(Application.TAG, "Failed to read thumbnail of " + path, e);
+					data = null;
+				}
+			}
+		}
+
+		return data == null ? null : decode(data, pooled, config);
+	}
+
+	/**
+	 * Decode thumbnail data.
+	 *
+	 * @param data   The thumbnail data.
+	 * @param pooled Flag indicating if a bitmap from the {@link BitmapPool} should be reused for decoding.
+	 * @param config The preferred bitmap config.
+	 * @return The thumbnail.
+	 */
+	private static Bitmap decode(final byte[] data, final boolean pooled, final Config config) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inPreferredConfig = config;
+		if (!pooled) {
+			return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+		}
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(data, 0, data.length, options);
+		options.inJustDecodeBounds = false;
+		BitmapPool.prepareDecodeOptions(options, options.outWidth, options.outHeight);
+		try {
+			return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+		}
+		catch (IllegalArgumentException e) {
+			BitmapPool.releaseDecodeBitmap(options);
+			return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+		}
+	}
+
+	/**
+	 * Queue the generation of thumbnails in the background for the given images. Images with valid thumbnail are skipped.
+	 *
+	 * @param paths The file paths of the images.
+	 */
+	public static void generateThumbnails(final Collection<String> paths) {
+		if (paths == null || paths.isEmpty()) {
+			return;
+		}
+		synchronized (GENERATION_QUEUE) {
+			GENERATION_QUEUE.addAll(paths);
+			GENERATION_QUEUE.remove(null);
+			startGenerator();
+		}
+	}
+
+	/**
+	 * Store the thumbnail of an image which has been decoded by the caller, so that the image is not decoded again. A copy of the
+	 * bitmap is compressed and stored in the background, so the bitmap may be recycled by the caller.
+	 *
+	 * @param path   The file path of the image.
+	 * @param bitmap The thumbnail, as decoded by {@link ImageUtil#decodeThumbnailBitmap(String)}.
+	 */
+	static void storeThumbnail(final String path, final Bitmap bitmap) {
+		synchronized (GENERATION_QUEUE) {
+			if (PENDING_THUMBNAILS.size() >= MAX_PENDING_THUMBNAILS || PENDING_THUMBNAILS.containsKey(path)) {
+				return;
+			}
+		}
+		File file = new File(path);
+		long lastModified = file.lastModified();
+		long size = file.length();
+		Bitmap copy = bitmap.copy(bitmap.getConfig() == null ? Config.ARGB_8888 : bitmap.getConfig(), false);
+		if (copy == null) {
+			return;
+		}
+		synchronized (GENERATION_QUEUE) {
+			PendingThumbnail previous = PENDING_THUMBNAILS.put(path, new PendingThumbnail(copy, lastModified, size));
+			if (previous != null) {
+				previous.mBitmap.recycle();
+			}
+			GENERATION_QUEUE.add(path);
+			startGenerator();
+		}
+	}
+
+	/**
+	 * Start the thread generating the queued thumbnails, if not yet running. Must be called synchronized on the generation queue.
+	 */
+	private static void startGenerator() {
+		if (mGeneratorThread != null) {
+			return;
+		}
+		mGeneratorThread = new Thread() {
+			@Override
+			public void run() {
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				while (true) {
+					String path;
+					PendingThumbnail pendingThumbnail;
+					synchronized (GENERATION_QUEUE) {
+						Iterator<String> iterator = GENERATION_QUEUE.iterator();
+						if (!iterator.hasNext()) {
+							mGeneratorThread = null;
+							return;
+						}
+						path = iterator.next();
+						iterator.remove();
+						pendingThumbnail = PENDING_THUMBNAILS.remove(path);
+					}
+					try {
+						generateThumbnail(path, pendingThumbnail);
+					}
+					catch (Exception e) {
+						Log.w(Application.TAG, "Failed to generate thumbnail of " + path, e);
+					}
+				}
+			}
+		};
+		mGeneratorThread.start();
+	}
+
+	/**
+	 * Generate and store the thumbnail of an image, if there is no valid thumbnail.
+	 *
+	 * @param path             The file path of the image.
+	 * @param pendingThumbnail The thumbnail already decoded by the caller, or null if it has to be decoded. It is recycled here.
+	 */
+	private static void generateThumbnail(final String path, final PendingThumbnail pendingThumbnail) {
+		File file = new File(path);
+		try {
+			synchronized (LOCK) {
+				loadIndex();
+				IndexEntry entry = INDEX.get(path);
+				if (entry != null && entry.isValidFor(file)) {
+					return;
+				}
+			}
+			if (pendingThumbnail != null) {
+				compressAndStore(path, pendingThumbnail.mLastModified, pendingThumbnail.mSize, pendingThumbnail.mBitmap);
+				return;
+			}
+			long lastModified = file.lastModified();
+			long size = file.length();
+			Bitmap bitmap = ImageUtil.decodeThumbnailBitmap(path);
+			if (bitmap != null) {
+				compressAndStore(path, lastModified, size, bitmap);
+				bitmap.recycle();
+			}
+		}
+		finally {
+			if (pendingThumbnail != null) {
+				pendingThumbnail.mBitmap.recycle();
+			}
+		}
+	}
+
+	/**
+	 * Compress a thumbnail and append it to the store.
+	 *
+	 * @param path         The file path of the image.
+	 * @param lastModified The last modification date of the image file.
+	 * @param size         The size of the image file.
+	 * @param bitmap       The thumbnail.
+	 */
+	private static void compressAndStore(final String path, final long lastModified, final long size, final Bitmap bitmap) {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		@SuppressWarnings("deprecation")
+		CompressFormat format = SystemUtil.isAtLeastVersion(VERSION_CODES.R) ? CompressFormat.WEBP_LOSSY : CompressFormat.WEBP;
+		if (bitmap.compress(format, WEBP_QUALITY, outputStream)) {
+			store(path, lastModified, size, outputStream.toByteArray());
+		}
+	}
+
+	/**
+	 * Append a thumbnail to the store.
+	 *
+	 * @param path         The file path of the image.
+	 * @param lastModified The last modification date of the image file.
+	 * @param size         The size of the image file.
+	 * @param data         The compressed thumbnail data.
+	 */
+	private static void store(final String path, final long lastModified, final long size, final byte[] data) {
+		synchronized (LOCK) {
+			loadIndex();
+			if (mBlobSize + data.length <= MAX_BLOB_SIZE) {
+				append(path, lastModified, size, data);
+				return;
+			}
+		}
+		// Compact without holding the lock, so that thumbnails can be read and stored meanwhile.
+		compact();
+		synchronized (LOCK) {
+			if (mBlobSize + data.length <= MAX_BLOB_SIZE) {
+				append(path, lastModified, size, data);
+			}
+		}
+	}
+
+	/**
+	 * Append a thumbnail to the blob and index files. Must be called within the lock.
+	 *
+	 * @param path         The file path of the image.
+	 * @param lastModified The last modification date of the image file.
+	 * @param size         The size of the image file.
+	 * @param data         The compressed thumbnail data.
+	 */
+	private static void append(final String path, final long lastModified, final long size, final byte[] data) {
+		IndexEntry entry = new IndexEntry(lastModified, size, mBlobSize, data.length);
+		try (RandomAccessFile blobFile = new RandomAccessFile(getFile(BLOB_FILE_NAME), "rw")) {
+			blobFile.seek(mBlobSize);
+			blobFile.write(data);
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to write thumbnail blob", e);
+			return;
+		}
+		try (DataOutputStream indexStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(getFile(INDEX_FILE_NAME), true)))) {
+			entry.write(indexStream, path);
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to write thumbnail index", e);
+			return;
+		}
+		mBlobSize += data.length;
+		INDEX.put(path, entry);
+	}
+
+	/**
+	 * Load the index from the index file, if not yet done. Must be called within the lock.
+	 */
+	private static void loadIndex() {
+		if (mIsLoaded) {
+			return;
+		}
+		mIsLoaded = true;
+		File indexFile = getFile(INDEX_FILE_NAME);
+		mBlobSize = getFile(BLOB_FILE_NAME).length();
+		if (!indexFile.exists()) {
+			reset();
+			return;
+		}
+
+		try (DataInputStream indexStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (indexStream.readInt() != INDEX_VERSION) {
+				reset();
+				return;
+			}
+			while (true) {
+				String path;
+				try {
+					path = indexStream.readUTF();
+				}
+				catch (EOFException e) {
+					break;
+				}
+				IndexEntry entry = IndexEntry.read(indexStream);
+				if (entry.mOffset + entry.mLength <= mBlobSize) {
+					// Later entries replace earlier ones.
+					INDEX.put(path, entry);
+				}
+			}
+		}
+		catch (IOException e) {
+			// Truncated last entry - ignore it.
+			Log.w(Application.TAG, "Incomplete thumbnail index", e);
+		}
+	}
+
+	/**
+	 * Reset the store to empty state. Must be called within the lock.
+	 */
+	private static void reset() {
+		mResetCount++;
+		INDEX.clear();
+		mMappedBlob = null;
+		mBlobSize = 0;
+		if (!getFile(BLOB_FILE_NAME).delete()) {
+			Log.d(Application.TAG, "No thumbnail blob to delete");
+		}
+		try (DataOutputStream indexStream = new DataOutputStream(new FileOutputStream(getFile(INDEX_FILE_NAME)))) {
+			indexStream.writeInt(INDEX_VERSION);
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Failed to create thumbnail index", e);
+		}
+	}
+
+	/**
+	 * Memory-map the blob file. Must be called within the lock.
+	 *
+	 * @throws IOException thrown if the blob file cannot be mapped.
+	 */
+	private static void mapBlob() throws IOException {
+		try (RandomAccessFile blobFile = new RandomAccessFile(getFile(BLOB_FILE_NAME), "r")) {
+			mMappedBlob = blobFile.getChannel().map(MapMode.READ_ONLY, 0, blobFile.length());
+		}
+	}
+
+	/**
+	 * Remove outdated entries from the store. If the store is still too big afterwards, the least recently used entries are removed.
+	 * The remaining entries are copied into new files without holding the lock, and the new files replace the old ones within the lock.
+	 * Must be called outside the lock.
+	 */
+	private static void compact() {
+		Map<String, IndexEntry> snapshot;
+		long snapshotSize;
+		int resetCount;
+		synchronized (LOCK) {
+			if (mIsCompacting) {
+				return;
+			}
+			mIsCompacting = true;
+			snapshot = new LinkedHashMap<>(INDEX);
+			snapshotSize = mBlobSize;
+			resetCount = mResetCount;
+		}
+
+		try {
+			List<String> validPaths = new ArrayList<>();
+			long validSize = 0;
+			for (Entry<String, IndexEntry> indexEntry : snapshot.entrySet()) {
+				if (indexEntry.getValue().isValidFor(new File(indexEntry.getKey()))) {
+					validPaths.add(indexEntry.getKey());
+					validSize += indexEntry.getValue().mLength;
+				}
+			}
+			// The snapshot is ordered by last access - remove the least recently used entries to make room for currently used images.
+			int firstKeptIndex = 0;
+			while (validSize > MAX_BLOB_SIZE * 3 / 4) { // MAGIC_NUMBER
+				validSize -= snapshot.get(validPaths.get(firstKeptIndex++)).mLength;
+			}
+			validPaths = validPaths.subList(firstKeptIndex, validPaths.size());
+
+			File tempBlobFile = getFile(BLOB_FILE_NAME + TEMP_SUFFIX);
+			File tempIndexFile = getFile(INDEX_FILE_NAME + TEMP_SUFFIX);
+			Map<String, IndexEntry> newIndex = new HashMap<>();
+			// The blob is append-only, so the snapshot entries can be copied while other threads append to it.
+			try (FileChannel oldBlob = new RandomAccessFile(getFile(BLOB_FILE_NAME), "r").getChannel();
+				 FileChannel newBlob = new FileOutputStream(tempBlobFile).getChannel();
+				 DataOutputStream indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempIndexFile)))) {
+				indexStream.writeInt(INDEX_VERSION);
+				for (String path : validPaths) {
+					newIndex.put(path, copyEntry(oldBlob, newBlob, indexStream, path, snapshot.get(path)));
+				}
+			}
+			catch (IOException e) {
+				Log.w(Application.TAG, "Failed to compact thumbnail store", e);
+				resetIfUnchanged(resetCount);
+				return;
+			}
+
+			synchronized (LOCK) {
+				if (mResetCount != resetCount) {
+					// The store has been cleared meanwhile - the copy is outdated.
+					deleteTempFiles(tempBlobFile, tempIndexFile);
+					return;
+				}
+				// Take over the entries appended during the copy.
+				try (FileChannel oldBlob = new RandomAccessFile(getFile(BLOB_FILE_NAME), "r").getChannel();
+					 FileChannel newBlob = new FileOutputStream(tempBlobFile, true).getChannel();
+					 DataOutputStream indexStream = new DataOutputStream(
+							 new BufferedOutputStream(new FileOutputStream(tempIndexFile, true)))) {
+					for (Entry<String, IndexEntry> indexEntry : INDEX.entrySet()) {
+						if (indexEntry.getValue().mOffset >= snapshotSize) {
+							newIndex.put(indexEntry.getKey(),
+									copyEntry(oldBlob, newBlob, indexStream, indexEntry.getKey(), indexEntry.getValue()));
+						}
+					}
+				}
+				catch (IOException e) {
+					Log.w(Application.TAG, "Failed to compact thumbnail store", e);
+					deleteTempFiles(tempBlobFile, tempIndexFile);
+					reset();
+					return;
+				}
+
+				mMappedBlob = null;
+				if (!tempBlobFile.renameTo(getFile(BLOB_FILE_NAME)) || !tempIndexFile.renameTo(getFile(INDEX_FILE_NAME))) {
+					reset();
+					return;
+				}
+				// Keep the order of last access.
+				List<String> accessOrder = new ArrayList<>(INDEX.keySet());
+				INDEX.clear();
+				for (String path : accessOrder) {
+					IndexEntry entry = newIndex.get(path);
+					if (entry != null) {
+						INDEX.put(path, entry);
+					}
+				}
+				mBlobSize = getFile(BLOB_FILE_NAME).length();
+			}
+		}
+		finally {
+			synchronized (LOCK) {
+				mIsCompacting = false;
+			}
+		}
+	}
+
+	/**
+	 * Copy an entry into the new files during compaction.
+	 *
+	 * @param oldBlob     The old blob.
+	 * @param newBlob     The new blob, positioned at its end.
+	 * @param indexStream The new index stream.
+	 * @param path        The file path of the image.
+	 * @param oldEntry    The entry in the old blob.
+	 * @return The entry in the new blob.
+	 * @throws IOException thrown if the entry cannot be copied.
+	 */
+	private static IndexEntry copyEntry(final FileChannel oldBlob, final FileChannel newBlob, final DataOutputStream indexStream,
+										final String path, final IndexEntry oldEntry) throws IOException {
+		IndexEntry newEntry = new IndexEntry(oldEntry.mLastModified, oldEntry.mSize, newBlob.position(), oldEntry.mLength);
+		oldBlob.transferTo(oldEntry.mOffset, oldEntry.mLength, newBlob);
+		newEntry.write(indexStream, path);
+		return newEntry;
+	}
+
+	/**
+	 * Reset the store, if it has not been reset since the given reset count.
+	 *
+	 * @param resetCount The reset count.
+	 */
+	private static void resetIfUnchanged(final int resetCount) {
+		synchronized (LOCK) {
+			if (mResetCount == resetCount) {
+				reset();
+			}
+		}
+	}
+
+	/**
+	 * Delete the temporary files of a compaction.
+	 *
+	 * @param tempFiles The temporary files.
+	 */
+	private static void deleteTempFiles(final File... tempFiles) {
+		for (File tempFile : tempFiles) {
+			if (tempFile.exists() && !tempFile.delete()) {
+				Log.w(Application.TAG, "Failed to delete " + tempFile.getName());
+			}
+		}
+	}
+
+	/**
+	 * Clear the store.
+	 */
+	public static void clear() {
+		synchronized (LOCK) {
+			mIsLoaded = true;
+			reset();
+		}
+	}
+
+	/**
+	 * Get a file of the store.
+	 *
+	 * @param name The file name.
+	 * @return The file.
+	 */
+	private static File getFile(final String name) {
+		File folder = new File(Application.getAppContext().getCacheDir(), FOLDER_NAME);
+		if (!folder.exists() && !folder.mkdirs()) {
+			Log.w(Application.TAG, "Failed to create thumbnail folder");
+		}
+		return new File(folder, name);
+	}
+
+	/**
+	 * A thumbnail decoded by the caller which waits for being stored.
+	 */
+	private static final class PendingThumbnail {
+		/**
+		 * The thumbnail.
+		 */
+		private final Bitmap mBitmap;
+		/**
+		 * The last modification date of the image file when decoding the thumbnail.
+		 */
+		private final long mLastModified;
+		/**
+		 * The size of the image file when decoding the thumbnail.
+		 */
+		private final long mSize;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param bitmap       The thumbnail.
+		 * @param lastModified The last modification date of the image file when decoding the thumbnail.
+		 * @param size         The size of the image file when decoding the thumbnail.
+		 */
+		private PendingThumbnail(final Bitmap bitmap, final long lastModified, final long size) {
+			mBitmap = bitmap;
+			mLastModified = lastModified;
+			mSize = size;
+		}
+	}
+
+	/**
+	 * An entry of the index.
+	 */
+	private static final class IndexEntry {
+		/**
+		 * The last modification date of the image file.
+		 */
+		private final long mLastModified;
+		/**
+		 * The size of the image file.
+		 */
+		private final long mSize;
+		/**
+		 * The offset of the thumbnail data in the blob.
+		 */
+		private final long mOffset;
+		/**
+		 * The length of the thumbnail data.
+		 */
+		private final int mLength;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param lastModified The last modification date of the image file.
+		 * @param size         The size of the image file.
+		 * @param offset       The offset of the thumbnail data in the blob.
+		 * @param length       The length of the thumbnail data.
+		 */
+		private IndexEntry(final long lastModified, final long size, final long offset, final int length) {
+			mLastModified = lastModified;
+			mSize = size;
+			mOffset = offset;
+			mLength = length;
+		}
+
+		/**
+		 * Check if the entry is valid for the given image file.
+		 *
+		 * @param file The image file.
+		 * @return true if the file is unchanged since creation of the entry.
+		 */
+		private boolean isValidFor(final File file) {
+			return file.lastModified() == mLastModified && file.length() == mSize;
+		}
+
+		/**
+		 * Write the entry to the index.
+		 *
+		 * @param indexStream The index stream.
+		 * @param path        The file path of the image.
+		 * @throws IOException thrown if the entry cannot be written.
+		 */
+		private void write(final DataOutputStream indexStream, final String path) throws IOException {
+			indexStream.writeUTF(path);
+			indexStream.writeLong(mLastModified);
+			indexStream.writeLong(mSize);
+			indexStream.writeLong(mOffset);
+			indexStream.writeInt(mLength);
+		}
+
+		/**
+		 * Read an entry from the index. The path has already been read.
+		 *
+		 * @param indexStream The index stream.
+		 * @return The entry.
+		 * @throws IOException thrown if the entry cannot be read.
+		 */
+		private static IndexEntry read(final DataInputStream indexStream) throws IOException {
+			long lastModified = indexStream.readLong();
+			long size = indexStream.readLong();
+			long offset = indexStream.readLong();
+			int length = indexStream.readInt();
+			return new IndexEntry(lastModified, size, offset, length);
+		}
+	}
+}
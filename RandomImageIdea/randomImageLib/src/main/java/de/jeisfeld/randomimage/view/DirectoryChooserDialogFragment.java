@@ -28,12 +28,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Stack;
 
 import de.jeisfeld.randomimage.Application;
+import de.jeisfeld.randomimage.util.CollationUtil;
 import de.jeisfeld.randomimage.util.FileUtil;
 import de.jeisfeld.randomimagelib.R;
 
@@ -257,12 +256,7 @@ public class DirectoryChooserDialogFragment extends DialogFragment {
 			Log.e(Application.TAG, "Could not get directories", e);
 		}
 
-		Collections.sort(dirs, new Comparator<String>() {
-			@Override
-			public int compare(final String o1, final String o2) {
-				return o1.compareTo(o2);
-			}
-		});
+		CollationUtil.sort(dirs);
 
 		return dirs;
 	}
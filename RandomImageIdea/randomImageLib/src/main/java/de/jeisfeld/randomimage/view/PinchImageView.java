@@ -26,11 +26,11 @@ import android.view.View;
 import android.widget.ImageView;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import de.jeisfeld.randomimage.Application;
+import de.jeisfeld.randomimage.util.ImagePrefetcher;
 import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
 import de.jeisfeld.randomimage.util.SystemUtil;
 import pl.droidsonroids.gif.GifDrawable;
 
@@ -174,24 +174,9 @@ public class PinchImageView extends ImageView {
 	protected Bitmap mBitmap;
 
 	/**
-	 * The full bitmap (full resolution).
+	 * The renderer drawing the visible part of the image in full resolution when zoomed in.
 	 */
-	private Bitmap mBitmapFull = null;
-
-	/**
-	 * The partial bitmap with full resolution.
-	 */
-	private Bitmap mPartialBitmapFullResolution;
-
-	/**
-	 * Flag indicating if currently the full resolution snapshot is displayed.
-	 */
-	private boolean mShowingFullResolution = false;
-
-	/**
-	 * Thread showing the view in full resolution. The first is the running thread. Another one may be queuing.
-	 */
-	private final List<Thread> mFullResolutionThreads = new ArrayList<>();
+	private TiledImageRenderer mTiledImageRenderer = null;
 
 	/**
 	 * Flag indicating if the image is animating out.
@@ -249,6 +234,7 @@ public class PinchImageView extends ImageView {
 		mImageResource = -1;
 		mDrawable = null;
 		mLastScaleFactor = 1.f;
+		releaseTiledImageRenderer();
 	}
 
 	/**
@@ -262,6 +248,9 @@ public class PinchImageView extends ImageView {
 	 */
 	public final void setImage(final String pathName, final Activity activity, final int cacheIndex, final View contentView) {
 		// retrieve bitmap from cache if possible
+		if (pathName == null || !pathName.equals(mPathName)) {
+			releaseTiledImageRenderer();
+		}
 		mPathName = pathName;
 
 		setBitmapFromPath(contentView);
@@ -280,13 +269,31 @@ public class PinchImageView extends ImageView {
 			return;
 		}
 		if (mDrawable == null) {
+			Bitmap prefetchedBitmap = ImagePrefetcher.getBitmapIfAvailable(mPathName, mMaxBitmapSize);
+			if (prefetchedBitmap != null && !mPathName.toLowerCase().endsWith(".gif")
+					&& getRotationAngle(prefetchedBitmap, contentView) == 0) {
+				// display prefetched image without delay.
+				mBitmap = prefetchedBitmap;
+				mRotationAngle = 0;
+				mDrawable = new BitmapDrawable(getContext().getResources(), mBitmap);
+				super.setImageDrawable(mDrawable);
+				mIsBitmapSet = true;
+				doInitialScaling();
+				return;
+			}
+
 			final Handler handler = new Handler();
 			// populate bitmaps in separate thread, so that screen keeps fluid.
 			// This also ensures that this happens only after view is visible and sized.
 			new Thread() {
 				@Override
 				public void run() {
-					mBitmap = ImageUtil.getImageBitmap(mPathName, mMaxBitmapSize);
+					Bitmap bitmap = ImagePrefetcher.getBitmap(mPathName, mMaxBitmapSize);
+					if (bitmap == null) {
+						bitmap = ImageUtil.getImageBitmap(mPathName, mMaxBitmapSize, BitmapUsage.DISPLAY);
+						ImagePrefetcher.offerBitmap(mPathName, mMaxBitmapSize, bitmap);
+					}
+					mBitmap = bitmap;
 					mRotationAngle = getRotationAngle(mBitmap, contentView);
 					mBitmap = rotateIfRequired(mBitmap, mRotationAngle);
 					if (mPathName.toLowerCase().endsWith(".gif")) {
@@ -352,7 +359,6 @@ public class PinchImageView extends ImageView {
 		if (mDrawable instanceof AnimationDrawable) {
 			((AnimationDrawable) mDrawable).start();
 		}
-		showFullResolutionSnapshot();
 	}
 
 	/**
@@ -373,6 +379,15 @@ public class PinchImageView extends ImageView {
 		}
 	}
 
+	/**
+	 * Get the maximum allowed resolution of the displayed bitmaps.
+	 *
+	 * @return The maximum bitmap size.
+	 */
+	public static int getMaxBitmapSize() {
+		return mMaxBitmapSize;
+	}
+
 	/**
 	 * Rotate the bitmap if requested and if it fits better into the view.
 	 *
@@ -504,19 +519,14 @@ public class PinchImageView extends ImageView {
 	 */
 	protected final void setMatrix() {
 		if (mDrawable != null) {
-			if (mShowingFullResolution) {
-				setImageMatrix(null);
-			}
-			else {
-				Matrix matrix = new Matrix();
-				matrix.setTranslate(-mPosX * mDrawable.getIntrinsicWidth(), -mPosY * mDrawable.getIntrinsicHeight());
-				if (usesMatrixRotation()) {
-					matrix.postRotate(mRotationAngle);
-				}
-				matrix.postScale(mScaleFactor, mScaleFactor);
-				matrix.postTranslate(getWidth() / 2.0f, getHeight() / 2.0f);
-				setImageMatrix(matrix);
+			Matrix matrix = new Matrix();
+			matrix.setTranslate(-mPosX * mDrawable.getIntrinsicWidth(), -mPosY * mDrawable.getIntrinsicHeight());
+			if (usesMatrixRotation()) {
+				matrix.postRotate(mRotationAngle);
 			}
+			matrix.postScale(mScaleFactor, mScaleFactor);
+			matrix.postTranslate(getWidth() / 2.0f, getHeight() / 2.0f);
+			setImageMatrix(matrix);
 		}
 	}
 
@@ -670,7 +680,6 @@ public class PinchImageView extends ImageView {
 			mHasMoved = false;
 			mActivePointerId = INVALID_POINTER_ID;
 			mActivePointerId2 = INVALID_POINTER_ID;
-			showFullResolutionSnapshot();
 			break;
 
 		case MotionEvent.ACTION_POINTER_UP:
@@ -719,7 +728,6 @@ public class PinchImageView extends ImageView {
 		if (!mInitialized) {
 			return false;
 		}
-		cleanFullResolutionBitmaps();
 		boolean moved = false;
 		final int pointerIndex = ev.findPointerIndex(mActivePointerId);
 		final float x = ev.getX(pointerIndex);
@@ -759,139 +767,34 @@ public class PinchImageView extends ImageView {
 		// setMatrix invalidates if matrix is changed.
 		setMatrix();
 
-		if (ev.getAction() == MotionEvent.ACTION_UP) {
-			showFullResolutionSnapshot();
-		}
-
 		return moved;
 	}
 
-	/**
-	 * Create a bitmap containing the current view in full resolution (incl. brightness/contrast).
-	 *
-	 * @return The bitmap in full resolution.
-	 */
-	private Bitmap createFullResolutionBitmap() {
-		if (mBitmap == null) {
-			return null;
-		}
-
-		float leftX = mPosX * mBitmap.getWidth() - (float) getWidth() / 2 / mScaleFactor;
-		float rightX = mPosX * mBitmap.getWidth() + (float) getWidth() / 2 / mScaleFactor;
-		float upperY = mPosY * mBitmap.getHeight() - (float) getHeight() / 2 / mScaleFactor;
-		float lowerY = mPosY * mBitmap.getHeight() + (float) getHeight() / 2 / mScaleFactor;
-
-		// The image part which needs to be displayed
-		float minX = Math.max(0, leftX / mBitmap.getWidth());
-		float maxX = Math.min(1, rightX / mBitmap.getWidth());
-		float minY = Math.max(0, upperY / mBitmap.getHeight());
-		float maxY = Math.min(1, lowerY / mBitmap.getHeight());
-
-		if (maxX <= minX || maxY <= minY) {
-			// Image is outside of the view
-			return null;
-		}
-
-		// The distance of the displayed image from the view borders.
-		int offsetX = Math.round(-Math.min(0, leftX) * mScaleFactor);
-		int offsetY = Math.round(-Math.min(0, upperY) * mScaleFactor);
-		int offsetMaxX = Math.round(Math.max(rightX - mBitmap.getWidth(), 0) * mScaleFactor);
-		int offsetMaxY = Math.round(Math.max(lowerY - mBitmap.getHeight(), 0) * mScaleFactor);
-
-		try {
-			Bitmap bitmapFull = mBitmapFull;
-			if (bitmapFull == null) {
-				bitmapFull = ImageUtil.getImageBitmap(mPathName, 0);
-				bitmapFull = rotateIfRequired(bitmapFull, mRotationAngle);
-				mBitmapFull = bitmapFull;
-			}
-			if (bitmapFull == null) {
-				return null;
-			}
-			if (bitmapFull.getWidth() < ImageUtil.MAX_BITMAP_SIZE && bitmapFull.getHeight() < ImageUtil.MAX_BITMAP_SIZE) {
-				return null;
+	@Override
+	protected final void onDraw(final Canvas canvas) {
+		super.onDraw(canvas);
+		if (mIsBitmapSet && mPathName != null && mDrawable instanceof BitmapDrawable && !mIsAnimatingOut) {
+			// Draw the visible part in full resolution on top, if zoomed in beyond the resolution of the bitmap.
+			if (mTiledImageRenderer == null) {
+				mTiledImageRenderer = new TiledImageRenderer(mPathName, this, mRotationAngle);
 			}
-
-			Bitmap partialBitmap =
-					ImageUtil.getPartialBitmap(bitmapFull, minX, maxX, minY, maxY);
-			Bitmap scaledPartialBitmap =
-					Bitmap.createScaledBitmap(partialBitmap, getWidth() - offsetMaxX - offsetX, getHeight()
-							- offsetMaxY
-							- offsetY, false);
-
-			Bitmap bitmapFullResolution = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
-			Canvas canvas = new Canvas(bitmapFullResolution);
-			canvas.drawBitmap(scaledPartialBitmap, offsetX, offsetY, null);
-
-			return bitmapFullResolution;
-		}
-		catch (Exception e) {
-			// NullPointerExceptions might occur in parallel scenarios.
-			return null;
+			mTiledImageRenderer.draw(canvas, getImageMatrix(), mDrawable.getIntrinsicWidth(), mDrawable.getIntrinsicHeight());
 		}
 	}
 
-	/**
-	 * Clean the cached full resolution bitmaps. In case of full cleaning, a normal resolution snapshot is displayed.
-	 */
-	private void cleanFullResolutionBitmaps() {
-		mPartialBitmapFullResolution = null;
-		if (mShowingFullResolution) {
-			setImageBitmap(mBitmap);
-			mShowingFullResolution = false;
-			setMatrix();
-		}
+	@Override
+	protected final void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		releaseTiledImageRenderer();
 	}
 
 	/**
-	 * Show the current view in full resolution.
+	 * Release the renderer of full resolution tiles.
 	 */
-	public final void showFullResolutionSnapshot() {
-		if (mIsAnimatingOut || mPathName.toLowerCase().endsWith(".gif")) {
-			// Do not apply for GIF, due to animated GIF
-			return;
-		}
-		Thread fullResolutionThread = new Thread() {
-			@Override
-			public void run() {
-				mPartialBitmapFullResolution = createFullResolutionBitmap();
-
-				if (isInterrupted()) {
-					// Do not display the result if the thread has been interrupted.
-					post(() -> cleanFullResolutionBitmaps());
-				}
-				else {
-					// Make a straight display of this bitmap without any matrix transformation.
-					// Will be reset by regular view as soon as the screen is touched again.
-					post(() -> {
-						if (mPartialBitmapFullResolution != null) {
-							setImageBitmap(mPartialBitmapFullResolution);
-							mShowingFullResolution = true;
-							setMatrix();
-						}
-					});
-				}
-
-				// start next thread in queue
-				synchronized (mFullResolutionThreads) {
-					mFullResolutionThreads.remove(Thread.currentThread());
-					if (!mFullResolutionThreads.isEmpty()) {
-						mFullResolutionThreads.get(0).start();
-					}
-				}
-			}
-		};
-
-		synchronized (mFullResolutionThreads) {
-			if (mFullResolutionThreads.size() > 1) {
-				// at most two threads in list
-				mFullResolutionThreads.remove(1);
-			}
-			mFullResolutionThreads.add(fullResolutionThread);
-			if (mFullResolutionThreads.size() == 1) {
-				// only start if no thread is running
-				fullResolutionThread.start();
-			}
+	private void releaseTiledImageRenderer() {
+		if (mTiledImageRenderer != null) {
+			mTiledImageRenderer.release();
+			mTiledImageRenderer = null;
 		}
 	}
 
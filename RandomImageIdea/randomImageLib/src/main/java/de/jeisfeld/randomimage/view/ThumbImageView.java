@@ -13,6 +13,8 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import de.jeisfeld.randomimage.Application;
+import de.jeisfeld.randomimage.util.BitmapPool;
+import de.jeisfeld.randomimage.util.ImageLoadScheduler;
 import de.jeisfeld.randomimage.util.ImageUtil;
 import de.jeisfeld.randomimage.util.MediaStoreUtil;
 import de.jeisfeld.randomimage.util.SystemUtil;
@@ -89,6 +91,31 @@ public class ThumbImageView extends FrameLayout {
 	 */
 	private CheckBox mCheckBoxMarked;
 
+	/**
+	 * The bitmap displayed as thumb, owned by this view.
+	 */
+	private Bitmap mBitmap = null;
+
+	/**
+	 * The activity holding the view.
+	 */
+	private Activity mActivity = null;
+
+	/**
+	 * The provider of the name of the image to be displayed.
+	 */
+	private LoadableFileName mLoadableFileName = null;
+
+	/**
+	 * The currently running load request.
+	 */
+	private ImageLoadScheduler.Request mLoadRequest = null;
+
+	/**
+	 * Flag indicating if the image of the current file name has been loaded.
+	 */
+	private boolean mIsImageLoaded = false;
+
 	/**
 	 * Standard constructor to be implemented for all views.
 	 *
@@ -179,49 +206,110 @@ public class ThumbImageView extends FrameLayout {
 	 *
 	 * @param activity The activity holding the view.
 	 * @param loadableFileName A provider for the name of the image to be displayed.
-	 * @param sameThread if true, then image load will be done on the same thread. Otherwise a separate thread will be spawned.
+	 * @param sameThread if true, then image load will be done on the same thread. Otherwise it is scheduled in the background.
 	 */
 	public final void setImage(final Activity activity, final LoadableFileName loadableFileName,
 			final boolean sameThread) {
+		cancelLoading();
+		mActivity = activity;
+		mLoadableFileName = loadableFileName;
+		mIsImageLoaded = false;
+		if (loadableFileName == null) {
+			return;
+		}
 		if (sameThread) {
-			loadImage(activity, loadableFileName);
+			displayBitmap(loadBitmap(loadableFileName));
 		}
 		else {
-			// Fill pictures in separate thread, for performance reasons
-			Thread thread = new Thread() {
-				@Override
-				public void run() {
-					loadImage(activity, loadableFileName);
-				}
-			};
-			thread.start();
+			scheduleLoading();
+		}
+	}
+
+	/**
+	 * Schedule the loading of the current image in the background.
+	 */
+	private void scheduleLoading() {
+		final LoadableFileName loadableFileName = mLoadableFileName;
+		final Activity activity = mActivity;
+		String fileName = loadableFileName.getFileNameIfAvailable();
+		mLoadRequest = ImageLoadScheduler.submit(fileName == null ? null : fileName + "|" + THUMB_SIZE,
+				() -> loadBitmap(loadableFileName),
+				bitmap -> activity.runOnUiThread(() -> {
+					if (mLoadableFileName != loadableFileName || mIsImageLoaded) {
+						// The view has been rebound meanwhile.
+						BitmapPool.release(bitmap);
+					}
+					else {
+						displayBitmap(bitmap);
+					}
+				}));
+	}
+
+	/**
+	 * Cancel the loading of the image, if running.
+	 */
+	private void cancelLoading() {
+		if (mLoadRequest != null) {
+			mLoadRequest.cancel();
+			mLoadRequest = null;
 		}
 	}
 
 	/**
-	 * Inner helper method of set Image, handling the loading of the image.
+	 * Load the bitmap of an image.
 	 *
-	 * @param activity The activity triggering the load.
 	 * @param loadableFileName a provider of the name of the file to be loaded.
+	 * @return The bitmap.
 	 */
-	private void loadImage(final Activity activity, final LoadableFileName loadableFileName) {
-		if (loadableFileName == null) {
-			return;
-		}
-		final Bitmap imageBitmap;
+	private static Bitmap loadBitmap(final LoadableFileName loadableFileName) {
 		if (loadableFileName.getFileName() == null) {
-			imageBitmap = ImageUtil.getDummyBitmap();
+			return ImageUtil.getDummyBitmap();
 		}
 		else {
-			imageBitmap = ImageUtil.getImageBitmap(loadableFileName.getFileName(), THUMB_SIZE);
+			return ImageUtil.getPooledImageBitmap(loadableFileName.getFileName(), THUMB_SIZE);
+		}
+	}
+
+	/**
+	 * Display the loaded bitmap. To be called on the UI thread.
+	 *
+	 * @param imageBitmap The bitmap.
+	 */
+	private void displayBitmap(final Bitmap imageBitmap) {
+		mLoadRequest = null;
+		mIsImageLoaded = true;
+		Bitmap oldBitmap = mBitmap;
+		mBitmap = imageBitmap;
+		mImageView.setImageBitmap(imageBitmap);
+		mImageView.invalidate();
+		BitmapPool.release(oldBitmap);
+	}
+
+	@Override
+	protected final void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (mLoadableFileName != null && !mIsImageLoaded && mLoadRequest == null) {
+			scheduleLoading();
+		}
+	}
+
+	@Override
+	protected final void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		cancelLoading();
+	}
+
+	/**
+	 * Remove the thumb and release its bitmap for reuse. To be called on the UI thread when the view is no longer displayed.
+	 */
+	public final void releaseBitmap() {
+		cancelLoading();
+		mIsImageLoaded = false;
+		if (mBitmap != null) {
+			mImageView.setImageBitmap(null);
+			BitmapPool.release(mBitmap);
+			mBitmap = null;
 		}
-		activity.runOnUiThread(new Runnable() {
-			@Override
-			public void run() {
-				mImageView.setImageBitmap(imageBitmap);
-				mImageView.invalidate();
-			}
-		});
 	}
 
 	/**
@@ -318,6 +406,15 @@ public class ThumbImageView extends FrameLayout {
 			return mFileName;
 		}
 
+		/**
+		 * Get the file name if it is available without calling the provider.
+		 *
+		 * @return The file name, or null if it is not yet available.
+		 */
+		public final String getFileNameIfAvailable() {
+			return mFileName;
+		}
+
 		/**
 		 * Interface for asynchronous delivery of the file name.
 		 */
@@ -0,0 +1,458 @@
+package de.jeisfeld.randomimage.view;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build.VERSION_CODES;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.jeisfeld.randomimage.Application;
+import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.SystemUtil;
+
+/**
+ * Renderer drawing the visible part of a zoomed image in full resolution. The image is split into tiles on pyramid levels with
+ * power-of-two sample sizes. Tiles are decoded in the background using BitmapRegionDecoder, kept in an LRU cache of bounded size,
+ * and drawn on top of the normal resolution bitmap as soon as they are available.
+ */
+public final class TiledImageRenderer {
+	/**
+	 * The size of a tile in bitmap pixels.
+	 */
+	private static final int TILE_SIZE = 512;
+
+	/**
+	 * The number of bytes per tile pixel.
+	 */
+	private static final int BYTES_PER_PIXEL = 4;
+
+	/**
+	 * The number of bytes per megabyte.
+	 */
+	private static final int BYTES_PER_MB = 1024 * 1024;
+
+	/**
+	 * The fraction of the large memory class to be used for tiles.
+	 */
+	private static final int MEMORY_CLASS_FRACTION = 8;
+
+	/**
+	 * The minimum size of the tile cache in MB.
+	 */
+	private static final int MIN_CACHE_SIZE_MB = 24;
+
+	/**
+	 * The maximum factor by which tiles may be enlarged on screen before using the next pyramid level.
+	 */
+	private static final float MAX_TILE_ENLARGEMENT = 1.5f;
+
+	/**
+	 * The cached tiles, by key. The size is measured in bytes.
+	 */
+	private static final LruCache<String, Bitmap> TILE_CACHE =
+			new LruCache<String, Bitmap>(Math.max(SystemUtil.getLargeMemoryClass() / MEMORY_CLASS_FRACTION, MIN_CACHE_SIZE_MB)
+					* BYTES_PER_MB) {
+				@Override
+				protected int sizeOf(final String key, final Bitmap value) {
+					return value.getAllocationByteCount();
+				}
+			};
+
+	/**
+	 * The executor decoding the tiles. The queue is LIFO, so that tiles of the most recent viewport are decoded first.
+	 */
+	private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new LinkedBlockingDeque<Runnable>() {
+				/**
+				 * The default serial version id.
+				 */
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public boolean offer(final Runnable runnable) {
+					return super.offerFirst(runnable);
+				}
+			}, runnable -> {
+		Thread thread = new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			runnable.run();
+		});
+		thread.setName("TiledImageRenderer");
+		return thread;
+	});
+
+	/**
+	 * The image path.
+	 */
+	private final String mPath;
+
+	/**
+	 * The view displaying the image.
+	 */
+	private final View mView;
+
+	/**
+	 * The rotation applied by the view in addition to the EXIF rotation.
+	 */
+	private final int mExtraRotation;
+
+	/**
+	 * The paint used for drawing tiles.
+	 */
+	private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	/**
+	 * The keys of the tiles requested for decoding.
+	 */
+	private final Set<String> mPendingKeys = new HashSet<>();
+
+	/**
+	 * The keys of the tiles visible in the last drawing.
+	 */
+	private Set<String> mVisibleKeys = new HashSet<>();
+
+	/**
+	 * The region decoder. Only accessed from the executor.
+	 */
+	private BitmapRegionDecoder mDecoder = null;
+
+	/**
+	 * The image in full resolution, used if the format is not supported by the region decoder. Already rotated according to EXIF.
+	 */
+	private volatile Bitmap mFullBitmap = null;
+
+	/**
+	 * Flag indicating if the initialization of the decoder has been requested.
+	 */
+	private boolean mIsInitRequested = false;
+
+	/**
+	 * Flag indicating if the decoder is available.
+	 */
+	private volatile boolean mIsReady = false;
+
+	/**
+	 * Flag indicating if the renderer has been released.
+	 */
+	private volatile boolean mIsReleased = false;
+
+	/**
+	 * The width of the image file.
+	 */
+	private volatile int mSourceWidth = 0;
+
+	/**
+	 * The height of the image file.
+	 */
+	private volatile int mSourceHeight = 0;
+
+	/**
+	 * The total rotation of the image in degrees, between 0 and 270.
+	 */
+	private volatile int mRotation = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path          The image path.
+	 * @param view          The view displaying the image.
+	 * @param extraRotation The rotation applied by the view in addition to the EXIF rotation.
+	 */
+	public TiledImageRenderer(final String path, final View view, final int extraRotation) {
+		mPath = path;
+		mView = view;
+		mExtraRotation = extraRotation;
+	}
+
+	/**
+	 * Draw the visible tiles of the image, and request decoding of missing tiles. To be called after drawing the normal
+	 * resolution drawable.
+	 *
+	 * @param canvas         The canvas.
+	 * @param drawableMatrix The matrix used for drawing the normal resolution drawable.
+	 * @param drawableWidth  The intrinsic width of the normal resolution drawable.
+	 * @param drawableHeight The intrinsic height of the normal resolution drawable.
+	 */
+	public void draw(final Canvas canvas, final Matrix drawableMatrix, final int drawableWidth, final int drawableHeight) {
+		if (mIsReleased || drawableWidth <= 0 || drawableHeight <= 0 || drawableMatrix.mapRadius(1) <= 1) {
+			// The normal resolution drawable is sufficient.
+			return;
+		}
+		if (!mIsReady) {
+			if (!mIsInitRequested) {
+				mIsInitRequested = true;
+				EXECUTOR.execute(this::initDecoder);
+			}
+			return;
+		}
+
+		int rotation = mRotation;
+		int sourceWidth = mSourceWidth;
+		int sourceHeight = mSourceHeight;
+		int fullWidth = rotation % 180 == 0 ? sourceWidth : sourceHeight; // MAGIC_NUMBER
+		if (fullWidth <= drawableWidth) {
+			// The drawable has already full resolution.
+			return;
+		}
+
+		Matrix sourceMatrix = getSourceMatrix(rotation, sourceWidth, sourceHeight, drawableWidth, drawableHeight);
+		sourceMatrix.postConcat(drawableMatrix);
+		float scale = sourceMatrix.mapRadius(1);
+
+		RectF visibleRect = new RectF(0, 0, mView.getWidth(), mView.getHeight());
+		Matrix inverseMatrix = new Matrix();
+		if (!sourceMatrix.invert(inverseMatrix)) {
+			return;
+		}
+		inverseMatrix.mapRect(visibleRect);
+		if (!visibleRect.intersect(0, 0, sourceWidth, sourceHeight)) {
+			return;
+		}
+
+		int sampleSize = 1;
+		while (sampleSize * 2 * scale <= MAX_TILE_ENLARGEMENT) {
+			sampleSize *= 2;
+		}
+		// Ensure that the visible tiles fit into the cache.
+		while (getTileCount(visibleRect, sampleSize) * TILE_SIZE * TILE_SIZE * BYTES_PER_PIXEL > TILE_CACHE.maxSize() / 2) {
+			sampleSize *= 2;
+		}
+		if ((float) fullWidth / sampleSize <= drawableWidth) {
+			// The tiles would not improve the resolution.
+			return;
+		}
+
+		int tileSourceSize = TILE_SIZE * sampleSize;
+		Set<String> visibleKeys = new HashSet<>();
+		Map<String, Rect> missingTiles = new HashMap<>();
+		Matrix tileMatrix = new Matrix();
+		for (int row = (int) visibleRect.top / tileSourceSize; row * tileSourceSize < visibleRect.bottom; row++) {
+			for (int column = (int) visibleRect.left / tileSourceSize; column * tileSourceSize < visibleRect.right; column++) {
+				Rect tileRect = new Rect(column * tileSourceSize, row * tileSourceSize,
+						Math.min((column + 1) * tileSourceSize, sourceWidth), Math.min((row + 1) * tileSourceSize, sourceHeight));
+				String key = mPath + "|" + sampleSize + "|" + column + "|" + row;
+				visibleKeys.add(key);
+				Bitmap tile = TILE_CACHE.get(key);
+				if (tile == null) {
+					missingTiles.put(key, tileRect);
+				}
+				else {
+					tileMatrix.setScale((float) tileRect.width() / tile.getWidth(), (float) tileRect.height() / tile.getHeight());
+					tileMatrix.postTranslate(tileRect.left, tileRect.top);
+					tileMatrix.postConcat(sourceMatrix);
+					canvas.drawBitmap(tile, tileMatrix, mPaint);
+				}
+			}
+		}
+		// Publish the visible tiles before requesting them, so that the executor does not discard the requests.
+		synchronized (mPendingKeys) {
+			mVisibleKeys = visibleKeys;
+		}
+		for (Map.Entry<String, Rect> entry : missingTiles.entrySet()) {
+			requestTile(entry.getKey(), entry.getValue(), sampleSize);
+		}
+	}
+
+	/**
+	 * Release the decoder and the cached tiles. The renderer cannot be used afterwards.
+	 */
+	public void release() {
+		mIsReleased = true;
+		synchronized (mPendingKeys) {
+			mVisibleKeys = new HashSet<>();
+		}
+		EXECUTOR.execute(() -> {
+			if (mDecoder != null) {
+				mDecoder.recycle();
+				mDecoder = null;
+			}
+			mFullBitmap = null;
+			String prefix = mPath + "|";
+			for (String key : TILE_CACHE.snapshot().keySet()) {
+				if (key.startsWith(prefix)) {
+					TILE_CACHE.remove(key);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Get the matrix mapping image file coordinates to coordinates of the normal resolution drawable.
+	 *
+	 * @param rotation       The rotation.
+	 * @param sourceWidth    The width of the image file.
+	 * @param sourceHeight   The height of the image file.
+	 * @param drawableWidth  The width of the drawable.
+	 * @param drawableHeight The height of the drawable.
+	 * @return The matrix.
+	 */
+	private static Matrix getSourceMatrix(final int rotation, final int sourceWidth, final int sourceHeight, final int drawableWidth,
+										  final int drawableHeight) {
+		Matrix matrix = new Matrix();
+		matrix.setScale(1f / sourceWidth, 1f / sourceHeight);
+		matrix.postRotate(rotation);
+		switch (rotation) {
+		case 90: // MAGIC_NUMBER
+			matrix.postTranslate(1, 0);
+			break;
+		case 180: // MAGIC_NUMBER
+			matrix.postTranslate(1, 1);
+			break;
+		case 270: // MAGIC_NUMBER
+			matrix.postTranslate(0, 1);
+			break;
+		default:
+			break;
+		}
+		matrix.postScale(drawableWidth, drawableHeight);
+		return matrix;
+	}
+
+	/**
+	 * Get the number of tiles covering a rectangle.
+	 *
+	 * @param rect       The rectangle in image file coordinates.
+	 * @param sampleSize The sample size of the pyramid level.
+	 * @return The number of tiles.
+	 */
+	private static int getTileCount(final RectF rect, final int sampleSize) {
+		int tileSourceSize = TILE_SIZE * sampleSize;
+		int columns = (int) Math.ceil(rect.right / tileSourceSize) - (int) rect.left / tileSourceSize;
+		int rows = (int) Math.ceil(rect.bottom / tileSourceSize) - (int) rect.top / tileSourceSize;
+		return columns * rows;
+	}
+
+	/**
+	 * Request decoding of a tile, if not yet requested.
+	 *
+	 * @param key        The key of the tile.
+	 * @param tileRect   The tile rectangle in image file coordinates.
+	 * @param sampleSize The sample size.
+	 */
+	private void requestTile(final String key, final Rect tileRect, final int sampleSize) {
+		synchronized (mPendingKeys) {
+			if (!mPendingKeys.add(key)) {
+				return;
+			}
+		}
+		EXECUTOR.execute(() -> {
+			boolean isVisible;
+			synchronized (mPendingKeys) {
+				mPendingKeys.remove(key);
+				isVisible = mVisibleKeys.contains(key);
+			}
+			if (!isVisible || mIsReleased || (mDecoder == null && mFullBitmap == null)) {
+				// The viewport has changed meanwhile.
+				return;
+			}
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inSampleSize = sampleSize;
+			try {
+				Bitmap tile = mDecoder == null ? createTileFromFullBitmap(tileRect, sampleSize) : mDecoder.decodeRegion(tileRect, options);
+				if (tile != null && !mIsReleased) {
+					TILE_CACHE.put(key, tile);
+					mView.postInvalidate();
+				}
+			}
+			catch (RuntimeException | OutOfMemoryError e) {
+				Log.w(Application.TAG, "Failed to decode tile of " + mPath, e);
+			}
+		});
+	}
+
+	/**
+	 * Create a tile from the image in full resolution. Used if the format is not supported by the region decoder.
+	 *
+	 * @param tileRect   The tile rectangle in image file coordinates.
+	 * @param sampleSize The sample size.
+	 * @return The tile.
+	 */
+	private Bitmap createTileFromFullBitmap(final Rect tileRect, final int sampleSize) {
+		Bitmap fullBitmap = mFullBitmap;
+		if (fullBitmap == null) {
+			return null;
+		}
+		Bitmap tile = Bitmap.createBitmap(fullBitmap, tileRect.left, tileRect.top, tileRect.width(), tileRect.height());
+		if (sampleSize > 1) {
+			tile = Bitmap.createScaledBitmap(tile, Math.max(tileRect.width() / sampleSize, 1), Math.max(tileRect.height() / sampleSize, 1),
+					true);
+		}
+		return tile;
+	}
+
+	/**
+	 * Open the region decoder. If the format is not supported by the region decoder, the image is decoded in full resolution
+	 * instead. Executed in the background.
+	 */
+	private void initDecoder() {
+		if (mIsReleased) {
+			return;
+		}
+		BitmapRegionDecoder decoder = null;
+		try {
+			decoder = createRegionDecoder(mPath);
+		}
+		catch (IOException e) {
+			Log.w(Application.TAG, "Cannot create region decoder for " + mPath, e);
+		}
+
+		if (decoder != null) {
+			mDecoder = decoder;
+			mSourceWidth = decoder.getWidth();
+			mSourceHeight = decoder.getHeight();
+			mRotation = ((ImageUtil.getExifRotation(mPath) + mExtraRotation) % 360 + 360) % 360; // MAGIC_NUMBER
+		}
+		else {
+			try {
+				Bitmap fullBitmap = ImageUtil.getImageBitmap(mPath, 0);
+				if (fullBitmap == null || mIsReleased) {
+					return;
+				}
+				mFullBitmap = fullBitmap;
+				mSourceWidth = fullBitmap.getWidth();
+				mSourceHeight = fullBitmap.getHeight();
+				mRotation = (mExtraRotation % 360 + 360) % 360; // MAGIC_NUMBER
+			}
+			catch (OutOfMemoryError e) {
+				Log.w(Application.TAG, "Cannot decode " + mPath + " in full resolution", e);
+				return;
+			}
+		}
+		mIsReady = true;
+		mView.postInvalidate();
+	}
+
+	/**
+	 * Create a region decoder for an image file.
+	 *
+	 * @param path The image path.
+	 * @return The region decoder, or null if not possible.
+	 * @throws IOException thrown if the image format is not supported or the file cannot be read.
+	 */
+	@SuppressWarnings("deprecation")
+	private static BitmapRegionDecoder createRegionDecoder(final String path) throws IOException {
+		if (SystemUtil.isAtLeastVersion(VERSION_CODES.S)) {
+			return BitmapRegionDecoder.newInstance(path);
+		}
+		else {
+			return BitmapRegionDecoder.newInstance(path, false);
+		}
+	}
+}
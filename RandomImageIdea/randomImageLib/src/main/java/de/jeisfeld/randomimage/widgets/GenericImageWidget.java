@@ -5,21 +5,24 @@ import android.appwidget.AppWidgetManager;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.HandlerThread;
 import android.util.SparseArray;
 import android.view.View;
 import android.widget.RemoteViews;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import de.jeisfeld.randomimage.Application;
 import de.jeisfeld.randomimage.util.ImageUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
+import de.jeisfeld.randomimage.util.PreparedImageStore;
 import de.jeisfeld.randomimage.util.SystemUtil;
 import de.jeisfeld.randomimagelib.R;
 
@@ -88,6 +91,7 @@ public abstract class GenericImageWidget extends GenericWidget {
 			PreferenceUtil.removeIndexedSharedPreference(R.string.key_widget_current_file_name, appWidgetId);
 			PreferenceUtil.removeIndexedSharedPreference(R.string.key_widget_current_list_of_file_names, appWidgetId);
 			PreferenceUtil.removeIndexedSharedPreference(R.string.key_widget_requires_update, appWidgetId);
+			PreparedImageStore.remove(ImageWidget.getPreparationKey(appWidgetId));
 		}
 	}
 
@@ -145,7 +149,7 @@ public abstract class GenericImageWidget extends GenericWidget {
 			remoteViews.setViewVisibility(R.id.buttonSettings, View.GONE);
 		}
 
-		Bitmap[] buttonBitmaps = getColoredButtonBitmaps(context, appWidgetId, R.drawable.ic_widget_settings, R.drawable.ic_widget_next);
+		Bitmap[] buttonBitmaps = getColoredButtonBitmaps(appWidgetId, R.drawable.ic_widget_settings, R.drawable.ic_widget_next);
 		remoteViews.setBitmap(R.id.buttonSettings, SET_IMAGE_BITMAP, buttonBitmaps[0]);
 		remoteViews.setBitmap(R.id.buttonNextImage, SET_IMAGE_BITMAP, buttonBitmaps[1]);
 
@@ -163,12 +167,11 @@ public abstract class GenericImageWidget extends GenericWidget {
 	/**
 	 * Get the coloured versions of button bitmaps.
 	 *
-	 * @param context         The {@link Context Context} in which this method is called.
 	 * @param appWidgetId     The appWidgetId of the widget whose size changed.
 	 * @param bitmapResources The resourceIds of the button bitmaps.
 	 * @return The coloured button bitmaps.
 	 */
-	private static Bitmap[] getColoredButtonBitmaps(final Context context, final int appWidgetId, final int... bitmapResources) {
+	private static Bitmap[] getColoredButtonBitmaps(final int appWidgetId, final int... bitmapResources) {
 		ArrayList<Bitmap> resultList = new ArrayList<>();
 		ButtonColor buttonColor = ButtonColor.fromResourceValue(
 				PreferenceUtil.getIndexedSharedPreferenceInt(R.string.key_widget_button_color, appWidgetId, -1));
@@ -176,8 +179,7 @@ public abstract class GenericImageWidget extends GenericWidget {
 		int secondaryColor = buttonColor.getSecondaryColor(color);
 
 		for (int bitmapResource : bitmapResources) {
-			Bitmap sourceBitmap = BitmapFactory.decodeResource(context.getResources(), bitmapResource);
-			resultList.add(ImageUtil.changeBitmapColor(sourceBitmap, color, secondaryColor));
+			resultList.add(ImageUtil.getColoredResourceBitmap(bitmapResource, color, secondaryColor));
 		}
 
 		return resultList.toArray(new Bitmap[bitmapResources.length]);
@@ -556,9 +558,40 @@ public abstract class GenericImageWidget extends GenericWidget {
 	}
 
 	/**
-	 * A class handling the animation of the widget buttons.
+	 * A class handling the animation of the widget buttons. All running animations are driven by one shared tick thread, which sends
+	 * only the changed button properties as partial updates, grouped for all widgets showing the same frame.
 	 */
 	protected static final class ButtonAnimator {
+		/**
+		 * The minimum interval between two animation ticks in milliseconds.
+		 */
+		private static final long MIN_TICK_INTERVAL = 25;
+
+		/**
+		 * The maximum interval between two animation ticks in milliseconds.
+		 */
+		private static final long MAX_TICK_INTERVAL = 100;
+
+		/**
+		 * The step size to which the opacity is rounded, so that small changes do not cause updates.
+		 */
+		private static final int ALPHA_STEP = 8;
+
+		/**
+		 * The maximum opacity.
+		 */
+		private static final int MAX_ALPHA = 255;
+
+		/**
+		 * The handler of the thread running the animation ticks.
+		 */
+		private static Handler mTickHandler = null;
+
+		/**
+		 * Flag indicating if the next animation tick is scheduled.
+		 */
+		private static boolean mIsTickScheduled = false;
+
 		/**
 		 * The RemoteViews used for animating buttons.
 		 */
@@ -580,9 +613,19 @@ public abstract class GenericImageWidget extends GenericWidget {
 		private int[] mButtonIds;
 
 		/**
-		 * The thread running the animation.
+		 * Flag indicating if this animator is registered for its widget.
 		 */
-		private Thread mAnimatorThread = null;
+		private boolean mIsRegistered = false;
+
+		/**
+		 * The end time of the animation. 0 if the animation is not started.
+		 */
+		private long mEndTime = 0;
+
+		/**
+		 * The opacity last sent to the widget. -1 if nothing has been sent yet.
+		 */
+		private int mSentAlpha = -1;
 
 		/**
 		 * Create and animate the ButtonAnimator.
@@ -602,67 +645,25 @@ public abstract class GenericImageWidget extends GenericWidget {
 					return;
 				}
 				BUTTON_ANIMATORS.put(appWidgetId, this);
-			}
 
-			this.mAppWidgetId = appWidgetId;
-			this.mAppWidgetManager = appWidgetManager;
-			this.mButtonIds = buttonIds;
-			mRemoteViews = remoteViews;
-
-			mAnimatorThread = new Thread(() -> {
-				for (int buttonId : buttonIds) {
-					mRemoteViews.setViewVisibility(buttonId, View.VISIBLE);
-				}
-				setAlpha(255);
-				long currentTime = System.currentTimeMillis();
-				long endTime = currentTime + ANIMATION_DURATION;
-				while (currentTime < endTime) {
-					try {
-						Thread.sleep(25); // MAGIC_NUMBER
-					}
-					catch (InterruptedException e) {
-						// ignore
-					}
-					currentTime = System.currentTimeMillis();
-
-					setAlpha((int) (Math.max(endTime - currentTime, 0) * 255 / ANIMATION_DURATION));
-
-				}
-				for (int buttonId : buttonIds) {
-					mRemoteViews.setViewVisibility(buttonId, View.GONE);
-				}
-				synchronized (BUTTON_ANIMATORS) {
-					BUTTON_ANIMATORS.remove(appWidgetId);
-				}
-			});
-		}
-
-		/**
-		 * Set the opacity of the widget buttons.
-		 *
-		 * @param alpha The opacity.
-		 */
-		private void setAlpha(final int alpha) {
-			for (int buttonId : mButtonIds) {
-				mRemoteViews.setInt(buttonId, "setAlpha", alpha);
-				mRemoteViews.setInt(buttonId, "setBackgroundColor", Color.argb(alpha / 4, 0, 0, 0)); // MAGIC_NUMBER
+				this.mAppWidgetId = appWidgetId;
+				this.mAppWidgetManager = appWidgetManager;
+				this.mButtonIds = buttonIds;
+				mRemoteViews = remoteViews;
+				mIsRegistered = true;
 			}
-			mAppWidgetManager.updateAppWidget(mAppWidgetId, mRemoteViews);
 		}
 
 		/**
 		 * Start the animation.
 		 */
 		public void start() {
-			if (mAnimatorThread != null) {
-				if (mAnimatorThread.isAlive()) {
-					mAnimatorThread.interrupt();
-				}
-				if (Looper.myLooper() == Looper.getMainLooper()) {
-					mAnimatorThread.start();
-				}
-				else {
-					new Handler(Looper.getMainLooper()).post(() -> mAnimatorThread.start());
+			if (mIsRegistered) {
+				synchronized (BUTTON_ANIMATORS) {
+					if (mEndTime == 0) {
+						mEndTime = System.currentTimeMillis() + ANIMATION_DURATION;
+						scheduleTick(0);
+					}
 				}
 			}
 		}
@@ -690,5 +691,113 @@ public abstract class GenericImageWidget extends GenericWidget {
 				}
 			}
 		}
+
+		/**
+		 * Schedule the next animation tick, if not yet scheduled. Must be called within the lock.
+		 *
+		 * @param delay The delay in milliseconds.
+		 */
+		private static void scheduleTick(final long delay) {
+			if (mIsTickScheduled) {
+				return;
+			}
+			if (mTickHandler == null) {
+				HandlerThread tickThread = new HandlerThread("ButtonAnimator");
+				tickThread.start();
+				mTickHandler = new Handler(tickThread.getLooper());
+			}
+			mIsTickScheduled = true;
+			mTickHandler.postDelayed(ButtonAnimator::tick, delay);
+		}
+
+		/**
+		 * Do one animation tick for all running animations. Animations whose opacity changed are grouped by frame, and each group is sent
+		 * in one partial update.
+		 */
+		private static void tick() {
+			long tickStartTime = System.currentTimeMillis();
+			Map<String, List<ButtonAnimator>> frames = new HashMap<>();
+			synchronized (BUTTON_ANIMATORS) {
+				mIsTickScheduled = false;
+				for (int i = BUTTON_ANIMATORS.size() - 1; i >= 0; i--) {
+					ButtonAnimator animator = BUTTON_ANIMATORS.valueAt(i);
+					if (animator.mEndTime == 0) {
+						continue;
+					}
+					// The first frame always shows the buttons fully.
+					int alpha = animator.mSentAlpha < 0 ? MAX_ALPHA : animator.getAlpha(tickStartTime);
+					if (alpha != animator.mSentAlpha) {
+						String frameKey = alpha + "|" + animator.mRemoteViews.getPackage() + "|"
+								+ animator.mRemoteViews.getLayoutId() + "|" + Arrays.toString(animator.mButtonIds);
+						List<ButtonAnimator> frame = frames.get(frameKey);
+						if (frame == null) {
+							frame = new ArrayList<>();
+							frames.put(frameKey, frame);
+						}
+						frame.add(animator);
+						animator.mSentAlpha = alpha;
+					}
+					if (tickStartTime >= animator.mEndTime) {
+						for (int buttonId : animator.mButtonIds) {
+							animator.mRemoteViews.setViewVisibility(buttonId, View.GONE);
+						}
+						BUTTON_ANIMATORS.removeAt(i);
+					}
+				}
+			}
+
+			for (List<ButtonAnimator> frame : frames.values()) {
+				sendFrame(frame);
+			}
+
+			synchronized (BUTTON_ANIMATORS) {
+				for (int i = 0; i < BUTTON_ANIMATORS.size(); i++) {
+					if (BUTTON_ANIMATORS.valueAt(i).mEndTime != 0) {
+						// Slow down if sending the updates takes long.
+						long tickDuration = System.currentTimeMillis() - tickStartTime;
+						scheduleTick(Math.min(MAX_TICK_INTERVAL, Math.max(MIN_TICK_INTERVAL, 2 * tickDuration)));
+						break;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Get the opacity of the buttons at a certain time, rounded to the alpha step.
+		 *
+		 * @param time The time.
+		 * @return The opacity.
+		 */
+		private int getAlpha(final long time) {
+			long alpha = Math.max(mEndTime - time, 0) * MAX_ALPHA / ANIMATION_DURATION;
+			return (int) Math.min(MAX_ALPHA, (alpha + ALPHA_STEP - 1) / ALPHA_STEP * ALPHA_STEP);
+		}
+
+		/**
+		 * Send one animation frame as partial update to a group of widgets.
+		 *
+		 * @param frame The animators of the widgets showing the same frame.
+		 */
+		private static void sendFrame(final List<ButtonAnimator> frame) {
+			ButtonAnimator first = frame.get(0);
+			RemoteViews remoteViews = new RemoteViews(first.mRemoteViews.getPackage(), first.mRemoteViews.getLayoutId());
+			for (int buttonId : first.mButtonIds) {
+				if (first.mSentAlpha == MAX_ALPHA) {
+					remoteViews.setViewVisibility(buttonId, View.VISIBLE);
+				}
+				remoteViews.setInt(buttonId, "setAlpha", first.mSentAlpha);
+				remoteViews.setInt(buttonId, "setBackgroundColor", Color.argb(first.mSentAlpha / 4, 0, 0, 0)); // MAGIC_NUMBER
+			}
+			int[] appWidgetIds = new int[frame.size()];
+			for (int i = 0; i < appWidgetIds.length; i++) {
+				appWidgetIds[i] = frame.get(i).mAppWidgetId;
+			}
+			try {
+				first.mAppWidgetManager.partiallyUpdateAppWidget(appWidgetIds, remoteViews);
+			}
+			catch (Exception e) {
+				// ignore remote exception etc.
+			}
+		}
 	}
 }
@@ -75,21 +75,38 @@ public abstract class GenericWidget extends AppWidgetProvider {
 	public final void onUpdate(final Context context, final AppWidgetManager appWidgetManager, final int[] appWidgetIds) {
 		super.onUpdate(context, appWidgetManager, appWidgetIds);
 
-		for (final int appWidgetId : appWidgetIds) {
-			final UpdateType updateType = mWidgetUpdateTypes.get(appWidgetId);
-			mWidgetUpdateTypes.remove(appWidgetId);
-
-			final PendingResult result = goAsync();
-			new Thread() {
-				@Override
-				public void run() {
-					Looper.prepare();
-					onUpdateWidget(context, appWidgetManager, appWidgetId, updateType);
-					if (result != null) {
-						result.finish();
-					}
+		final UpdateType[] updateTypes = new UpdateType[appWidgetIds.length];
+		for (int i = 0; i < appWidgetIds.length; i++) {
+			updateTypes[i] = mWidgetUpdateTypes.remove(appWidgetIds[i]);
+		}
+
+		// All widgets of one broadcast are updated together, so that shared work is done only once.
+		final PendingResult result = goAsync();
+		new Thread() {
+			@Override
+			public void run() {
+				Looper.prepare();
+				onUpdateWidgets(context, appWidgetManager, appWidgetIds, updateTypes);
+				if (result != null) {
+					result.finish();
 				}
-			}.start();
+			}
+		}.start();
+	}
+
+	/**
+	 * Called whenever a set of widgets is updated together. By default, the widgets are updated one by one.
+	 *
+	 * @param context          The {@link android.content.Context Context} in which this receiver is running.
+	 * @param appWidgetManager A {@link AppWidgetManager} object you can call {@link AppWidgetManager#updateAppWidget} on.
+	 * @param appWidgetIds     The appWidgetIds for which an update is needed.
+	 * @param updateTypes      flags indicating what should be updated, one per appWidgetId.
+	 */
+	// OVERRIDABLE
+	protected void onUpdateWidgets(final Context context, final AppWidgetManager appWidgetManager, final int[] appWidgetIds,
+								   final UpdateType[] updateTypes) {
+		for (int i = 0; i < appWidgetIds.length; i++) {
+			onUpdateWidget(context, appWidgetManager, appWidgetIds[i], updateTypes[i]);
 		}
 	}
 
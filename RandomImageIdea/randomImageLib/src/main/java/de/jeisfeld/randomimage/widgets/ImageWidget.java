@@ -17,13 +17,17 @@ import de.jeisfeld.randomimage.Application;
 import de.jeisfeld.randomimage.DisplayRandomImageActivity;
 import de.jeisfeld.randomimage.notifications.NotificationUtil;
 import de.jeisfeld.randomimage.notifications.NotificationUtil.NotificationType;
+import de.jeisfeld.randomimage.util.ColorSignatureStore;
+import de.jeisfeld.randomimage.util.ColorSignatureStore.ColorSignature;
 import de.jeisfeld.randomimage.util.DialogUtil;
-import de.jeisfeld.randomimage.util.ImageAnalyzer;
 import de.jeisfeld.randomimage.util.ImageList;
 import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageRegistry.CreationStyle;
 import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
+import de.jeisfeld.randomimage.util.PreparedImageStore;
+import de.jeisfeld.randomimage.util.PreparedImageStore.PreparedImage;
 import de.jeisfeld.randomimage.util.SystemUtil;
 import de.jeisfeld.randomimagelib.R;
 
@@ -33,9 +37,38 @@ import static de.jeisfeld.randomimage.widgets.GenericImageWidget.BackgroundColor
  * The extended widget, also displaying a changing image.
  */
 public class ImageWidget extends GenericImageWidget {
+	@Override
+	protected final void onUpdateWidgets(final Context context, final AppWidgetManager appWidgetManager, final int[] appWidgetIds,
+										 final UpdateType[] updateTypes) {
+		WidgetUpdateBatch batch = new WidgetUpdateBatch();
+		for (int i = 0; i < appWidgetIds.length; i++) {
+			String listName = getListName(appWidgetIds[i]);
+			if (listName != null && requiresNewImage(appWidgetIds[i], updateTypes[i])) {
+				batch.requireRandomFileName(listName);
+			}
+		}
+		for (int i = 0; i < appWidgetIds.length; i++) {
+			updateWidget(context, appWidgetManager, appWidgetIds[i], updateTypes[i], batch);
+		}
+	}
+
 	@Override
 	public final void onUpdateWidget(final Context context, final AppWidgetManager appWidgetManager,
 									 final int appWidgetId, final UpdateType updateType) {
+		updateWidget(context, appWidgetManager, appWidgetId, updateType, new WidgetUpdateBatch());
+	}
+
+	/**
+	 * Update an instance of the widget as part of a batch.
+	 *
+	 * @param context          The {@link android.content.Context Context} in which this receiver is running.
+	 * @param appWidgetManager A {@link AppWidgetManager} object you can call {@link AppWidgetManager#updateAppWidget} on.
+	 * @param appWidgetId      The appWidgetId for which an update is needed.
+	 * @param updateType       flag indicating what should be updated.
+	 * @param batch            The batch of widget updates.
+	 */
+	private void updateWidget(final Context context, final AppWidgetManager appWidgetManager, final int appWidgetId,
+							  final UpdateType updateType, final WidgetUpdateBatch batch) {
 		final String listName = getListName(appWidgetId);
 		if (listName == null) {
 			return;
@@ -43,20 +76,30 @@ public class ImageWidget extends GenericImageWidget {
 		Log.i(Application.TAG, "Updating ImageWidget " + appWidgetId + " for list \"" + listName + "\" with type " + updateType);
 
 		String currentFileName = PreferenceUtil.getIndexedSharedPreferenceString(R.string.key_widget_current_file_name, appWidgetId);
-		final boolean requireNewImage = updateType == UpdateType.NEW_LIST // BOOLEAN_EXPRESSION_COMPLEXITY
-				|| updateType == UpdateType.NEW_IMAGE_AUTOMATIC
-				|| updateType == UpdateType.NEW_IMAGE_BY_USER
-				|| currentFileName == null
-				|| !new File(currentFileName).exists();
+		final boolean requireNewImage = requiresNewImage(appWidgetId, updateType);
 
 		boolean isVisibleToUser = updateType == UpdateType.NEW_IMAGE_BY_USER || updateType == UpdateType.NEW_LIST;
 
+		if (requireNewImage && updateType == UpdateType.NEW_IMAGE_AUTOMATIC) {
+			// Scheduled update - publish the image prepared after the previous update, if available.
+			int bitmapSize = getBitmapSize(appWidgetManager, appWidgetId);
+			PreparedImage preparedImage =
+					PreparedImageStore.takePreparedImage(getPreparationKey(appWidgetId), listName, Integer.toString(bitmapSize));
+			if (preparedImage != null) {
+				batch.putImageBitmap(preparedImage.getFileName(), bitmapSize, BitmapUsage.REMOTE, preparedImage.getBitmap(0));
+				RemoteViews remoteViews = setImage(context, appWidgetManager, appWidgetId, listName, preparedImage.getFileName(), batch);
+				configureButtons(context, appWidgetManager, appWidgetId, true, remoteViews);
+				prepareNextImage(appWidgetManager, appWidgetId, listName, null);
+				return;
+			}
+		}
+
 		if (requireNewImage) {
 			if (isVisibleToUser) {
 				ImageRegistry.switchToImageList(listName, CreationStyle.NONE, false);
 			}
 
-			final ImageList imageList = ImageRegistry.getImageListByName(listName, false);
+			final ImageList imageList = batch.getImageList(listName);
 
 			if (imageList == null) {
 				Log.e(Application.TAG, "Could not load image list " + listName + "for ImageWidget update");
@@ -71,16 +114,32 @@ public class ImageWidget extends GenericImageWidget {
 			}
 			else {
 				NotificationUtil.cancelNotification(context, listName, NotificationType.ERROR_LOADING_LIST);
-				setNewImage(context, appWidgetManager, imageList, appWidgetId, listName, isVisibleToUser);
+				setNewImage(context, appWidgetManager, imageList, appWidgetId, listName, isVisibleToUser, batch);
 			}
 		}
 		else {
-			RemoteViews remoteViews = setImage(context, appWidgetManager, appWidgetId, listName, currentFileName);
+			RemoteViews remoteViews = setImage(context, appWidgetManager, appWidgetId, listName, currentFileName, batch);
 			configureButtons(context, appWidgetManager, appWidgetId, true, remoteViews);
 		}
 
 	}
 
+	/**
+	 * Check if an update of an instance of the widget requires a new image.
+	 *
+	 * @param appWidgetId The appWidgetId.
+	 * @param updateType  flag indicating what should be updated.
+	 * @return true if a new image is required.
+	 */
+	private static boolean requiresNewImage(final int appWidgetId, final UpdateType updateType) {
+		String currentFileName = PreferenceUtil.getIndexedSharedPreferenceString(R.string.key_widget_current_file_name, appWidgetId);
+		return updateType == UpdateType.NEW_LIST // BOOLEAN_EXPRESSION_COMPLEXITY
+				|| updateType == UpdateType.NEW_IMAGE_AUTOMATIC
+				|| updateType == UpdateType.NEW_IMAGE_BY_USER
+				|| currentFileName == null
+				|| !new File(currentFileName).exists();
+	}
+
 	@Override
 	public final void onAppWidgetOptionsChanged(final Context context, final AppWidgetManager appWidgetManager,
 												final int appWidgetId, final Bundle newOptions) {
@@ -107,7 +166,7 @@ public class ImageWidget extends GenericImageWidget {
 				@Override
 				public void run() {
 					Looper.prepare();
-					setNewImage(context, appWidgetManager, imageList, appWidgetId, listName, true);
+					setNewImage(context, appWidgetManager, imageList, appWidgetId, listName, true, new WidgetUpdateBatch());
 					if (result != null) {
 						result.finish();
 					}
@@ -115,7 +174,7 @@ public class ImageWidget extends GenericImageWidget {
 			}.start();
 		}
 		else {
-			RemoteViews remoteViews = setImage(context, appWidgetManager, appWidgetId, listName, fileName);
+			RemoteViews remoteViews = setImage(context, appWidgetManager, appWidgetId, listName, fileName, new WidgetUpdateBatch());
 			configureButtons(context, appWidgetManager, appWidgetId, true, remoteViews);
 		}
 
@@ -130,9 +189,10 @@ public class ImageWidget extends GenericImageWidget {
 	 * @param appWidgetId      The appWidgetId of the widget whose size changed.
 	 * @param listName         The name of the image list from which the file is taken.
 	 * @param userTriggered    flag indicating if the call was triggered by the user.
+	 * @param batch            The batch of widget updates.
 	 */
 	private void setNewImage(final Context context, final AppWidgetManager appWidgetManager, final ImageList imageList,
-							 final int appWidgetId, final String listName, final boolean userTriggered) {
+							 final int appWidgetId, final String listName, final boolean userTriggered, final WidgetUpdateBatch batch) {
 		if (userTriggered && !imageList.isReady()) {
 			final RemoteViews remoteViews = new RemoteViews(context.getPackageName(), getWidgetLayoutId(appWidgetId));
 			remoteViews.setViewVisibility(R.id.textViewWidgetEmpty, View.VISIBLE);
@@ -148,15 +208,19 @@ public class ImageWidget extends GenericImageWidget {
 			}
 		}
 		else {
-			String fileName = imageList.getRandomFileName();
+			String fileName = batch.getRandomFileName(listName, imageList);
 
-			RemoteViews remoteViews = setImage(context, appWidgetManager, appWidgetId, listName, fileName);
+			RemoteViews remoteViews = setImage(context, appWidgetManager, appWidgetId, listName, fileName, batch);
 			configureButtons(context, appWidgetManager, appWidgetId, true, remoteViews);
 
 			if (userTriggered) {
 				// re-trigger timer - just in case that timer is not valid any more.
 				ImageWidget.updateTimers(appWidgetId);
 			}
+			else {
+				// Prepare only after scheduled updates - after user triggered updates, the image prepared before is still available.
+				prepareNextImage(appWidgetManager, appWidgetId, listName, imageList);
+			}
 		}
 	}
 
@@ -168,14 +232,13 @@ public class ImageWidget extends GenericImageWidget {
 	 * @param appWidgetId      The appWidgetId of the widget whose size changed.
 	 * @param listName         The name of the image list from which the file is taken.
 	 * @param fileName         The filename of the image to be displayed.
+	 * @param batch            The batch of widget updates.
 	 * @return the remote view of the widget.
 	 */
 	private RemoteViews setImage(final Context context, final AppWidgetManager appWidgetManager, final int appWidgetId,
-								 final String listName, final String fileName) {
-		Bundle options = appWidgetManager.getAppWidgetOptions(appWidgetId);
-		int width = (int) Math.ceil(DENSITY * options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_WIDTH));
-		int height = (int) Math.ceil(DENSITY * options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_HEIGHT));
-		if (width <= 0 || height <= 0) {
+								 final String listName, final String fileName, final WidgetUpdateBatch batch) {
+		int bitmapSize = getBitmapSize(appWidgetManager, appWidgetId);
+		if (bitmapSize <= 0) {
 			return null;
 		}
 
@@ -189,18 +252,27 @@ public class ImageWidget extends GenericImageWidget {
 			PreferenceUtil.setIndexedSharedPreferenceString(R.string.key_widget_current_file_name, appWidgetId, fileName);
 			remoteViews.setViewVisibility(R.id.textViewWidgetEmpty, View.GONE);
 
-			Bitmap bitmap = ImageUtil.getImageBitmap(fileName, Math.min(ImageUtil.MAX_BITMAP_SIZE, Math.max(width, height)));
+			BackgroundColor backgroundColor = BackgroundColor.fromWidgetId(appWidgetId);
+			boolean isColorFromImage = isColorFromImage(backgroundColor);
+			ColorSignature colorSignature = isColorFromImage ? ColorSignatureStore.getStoredColorSignature(fileName) : null;
+			// If there is no stored color signature, the bitmap is analyzed for the background color.
+			BitmapUsage usage = isColorFromImage && colorSignature == null ? BitmapUsage.PIXEL_ACCESS : BitmapUsage.REMOTE;
+			Bitmap bitmap = batch.getImageBitmap(fileName, bitmapSize, usage);
 			remoteViews.setImageViewBitmap(R.id.imageViewWidget, bitmap);
 
-			BackgroundColor backgroundColor = BackgroundColor.fromWidgetId(appWidgetId);
-			if (backgroundColor == BackgroundColor.COLOR_FROM_IMAGE) {
-				remoteViews.setInt(R.id.imageViewWidget, SET_BACKGROUND_COLOR, ImageAnalyzer.getColorFromImageBorder(bitmap));
-			}
-			else if (backgroundColor == BackgroundColor.AVERAGE_IMAGE_COLOR) {
-				remoteViews.setInt(R.id.imageViewWidget, SET_BACKGROUND_COLOR, ImageAnalyzer.getAverageImageColor(bitmap));
+			if (isColorFromImage && colorSignature == null && bitmap != null) {
+				colorSignature = ColorSignatureStore.getColorSignature(fileName, bitmap);
 			}
-			else if (backgroundColor == BackgroundColor.RANDOM_FROM_IMAGE) {
-				remoteViews.setInt(R.id.imageViewWidget, SET_BACKGROUND_COLOR, ImageAnalyzer.getRandomColorFromImage(bitmap));
+			if (colorSignature != null) {
+				if (backgroundColor == BackgroundColor.COLOR_FROM_IMAGE) {
+					remoteViews.setInt(R.id.imageViewWidget, SET_BACKGROUND_COLOR, colorSignature.getBorderColor());
+				}
+				else if (backgroundColor == BackgroundColor.AVERAGE_IMAGE_COLOR) {
+					remoteViews.setInt(R.id.imageViewWidget, SET_BACKGROUND_COLOR, colorSignature.getAverageColor());
+				}
+				else {
+					remoteViews.setInt(R.id.imageViewWidget, SET_BACKGROUND_COLOR, colorSignature.getRandomColor());
+				}
 			}
 		}
 
@@ -220,6 +292,71 @@ public class ImageWidget extends GenericImageWidget {
 		return remoteViews;
 	}
 
+	/**
+	 * Get the size of the image bitmap of an instance of the widget.
+	 *
+	 * @param appWidgetManager A {@link AppWidgetManager} object you can call {@link AppWidgetManager#updateAppWidget} on.
+	 * @param appWidgetId      The appWidgetId of the widget.
+	 * @return The maximum size of the bitmap, or 0 if the widget size is not known.
+	 */
+	private static int getBitmapSize(final AppWidgetManager appWidgetManager, final int appWidgetId) {
+		Bundle options = appWidgetManager.getAppWidgetOptions(appWidgetId);
+		int width = (int) Math.ceil(DENSITY * options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_WIDTH));
+		int height = (int) Math.ceil(DENSITY * options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_HEIGHT));
+		if (width <= 0 || height <= 0) {
+			return 0;
+		}
+		return Math.min(ImageUtil.MAX_BITMAP_SIZE, Math.max(width, height));
+	}
+
+	/**
+	 * Check if the background color is calculated from the image.
+	 *
+	 * @param backgroundColor The background color.
+	 * @return true if the background color is calculated from the image.
+	 */
+	private static boolean isColorFromImage(final BackgroundColor backgroundColor) {
+		return backgroundColor == BackgroundColor.COLOR_FROM_IMAGE
+				|| backgroundColor == BackgroundColor.AVERAGE_IMAGE_COLOR
+				|| backgroundColor == BackgroundColor.RANDOM_FROM_IMAGE;
+	}
+
+	/**
+	 * Prepare the image for the next scheduled update of an instance of the widget in the background, including its background color.
+	 *
+	 * @param appWidgetManager A {@link AppWidgetManager} object you can call {@link AppWidgetManager#updateAppWidget} on.
+	 * @param appWidgetId      The appWidgetId of the widget.
+	 * @param listName         The name of the image list from which the file is taken.
+	 * @param imageList        The image list, if already loaded. Otherwise null.
+	 */
+	private static void prepareNextImage(final AppWidgetManager appWidgetManager, final int appWidgetId, final String listName,
+										 final ImageList imageList) {
+		if (PreferenceUtil.getIndexedSharedPreferenceLong(R.string.key_widget_timer_duration, appWidgetId, 0) <= 0) {
+			return;
+		}
+		final int bitmapSize = getBitmapSize(appWidgetManager, appWidgetId);
+		if (bitmapSize <= 0) {
+			return;
+		}
+		final boolean isColorFromImage = isColorFromImage(BackgroundColor.fromWidgetId(appWidgetId));
+		PreparedImageStore.prepareNextImage(getPreparationKey(appWidgetId), listName, imageList, Integer.toString(bitmapSize), fileName -> {
+			if (isColorFromImage) {
+				ColorSignatureStore.getColorSignature(fileName);
+			}
+			return new Bitmap[]{ImageUtil.getImageBitmap(fileName, bitmapSize, BitmapUsage.REMOTE)};
+		});
+	}
+
+	/**
+	 * Get the key under which the next image of an instance of the widget is prepared.
+	 *
+	 * @param appWidgetId The appWidgetId of the widget.
+	 * @return The key.
+	 */
+	protected static String getPreparationKey(final int appWidgetId) {
+		return "widget" + appWidgetId;
+	}
+
 	/**
 	 * Configure an instance of the widget.
 	 *
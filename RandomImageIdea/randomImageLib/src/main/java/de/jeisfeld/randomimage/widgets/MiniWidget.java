@@ -11,6 +11,7 @@ import de.jeisfeld.randomimage.Application;
 import de.jeisfeld.randomimage.DisplayRandomImageActivity;
 import de.jeisfeld.randomimage.notifications.NotificationSettingsActivity;
 import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
 import de.jeisfeld.randomimage.util.SystemUtil;
 import de.jeisfeld.randomimagelib.R;
@@ -44,7 +45,8 @@ public class MiniWidget extends GenericWidget {
 			remoteViews.setImageViewResource(R.id.imageViewWidget, R.drawable.ic_launcher);
 		}
 		else {
-			remoteViews.setImageViewBitmap(R.id.imageViewWidget, ImageUtil.getImageBitmap(widgetIcon, LAUNCHER_IMAGE_SIZE));
+			remoteViews.setImageViewBitmap(R.id.imageViewWidget,
+					ImageUtil.getImageBitmap(widgetIcon, LAUNCHER_IMAGE_SIZE, BitmapUsage.REMOTE));
 		}
 
 		Intent intent = DisplayRandomImageActivity.createIntent(context, listName, null, false, appWidgetId, null);
@@ -5,24 +5,32 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.os.Process;
 import android.util.Log;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import de.jeisfeld.randomimage.Application;
 import de.jeisfeld.randomimage.DisplayRandomImageActivity;
 import de.jeisfeld.randomimage.notifications.NotificationUtil;
 import de.jeisfeld.randomimage.notifications.NotificationUtil.NotificationType;
+import de.jeisfeld.randomimage.util.ColorSignatureStore;
+import de.jeisfeld.randomimage.util.ColorSignatureStore.ColorSignature;
 import de.jeisfeld.randomimage.util.DialogUtil;
-import de.jeisfeld.randomimage.util.ImageAnalyzer;
 import de.jeisfeld.randomimage.util.ImageRegistry;
 import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
 import de.jeisfeld.randomimage.util.MediaStoreUtil;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
 import de.jeisfeld.randomimage.util.StandardImageList;
+import de.jeisfeld.randomimage.util.ThumbnailStore;
 import de.jeisfeld.randomimage.widgets.GenericImageWidget.BackgroundColor;
 import de.jeisfeld.randomimagelib.R;
 
@@ -55,6 +63,18 @@ public class StackedImageWidgetService extends RemoteViewsService {
 	 * A quarter of the image array size (used for updating).
 	 */
 	private static final int QUARTER_IMAGE_ARRAY_SIZE = IMAGE_ARRAY_SIZE / 4;
+	/**
+	 * The number of images after the current position which are pre-rendered.
+	 */
+	private static final int PRE_RENDER_FORWARD_COUNT = 4;
+	/**
+	 * The number of images before the current position which are pre-rendered.
+	 */
+	private static final int PRE_RENDER_BACKWARD_COUNT = 1;
+	/**
+	 * The maximum number of bytes of a bitmap sent to the launcher, safely below the binder transaction limit of 1 MB.
+	 */
+	private static final int MAX_ITEM_BITMAP_BYTES = 768 * 1024; // MAGIC_NUMBER
 
 	@Override
 	public final RemoteViewsFactory onGetViewFactory(final Intent intent) {
@@ -106,6 +126,34 @@ public class StackedImageWidgetService extends RemoteViewsService {
 		 * Flag indicating if we are currently in the second half of the list of files. (This is used in order to determine when to regenerate files.)
 		 */
 		private boolean mInSecondHalfOfFiles = false;
+		/**
+		 * Flag indicating if the file names of the opposite half have to be re-generated, as the current position has crossed into the
+		 * other half.
+		 */
+		private boolean mIsFileNameUpdatePending = false;
+		/**
+		 * The position last requested by the launcher.
+		 */
+		private int mCurrentPosition = 0;
+		/**
+		 * The pre-rendered images of the stack window, by file name.
+		 */
+		private final Map<String, PreRenderedImage> mPreRenderedImages = new HashMap<>();
+		/**
+		 * Lock ensuring that pre-rendering is not done in parallel.
+		 */
+		private final Object mPreRenderLock = new Object();
+		/**
+		 * Flag indicating if pre-rendering is scheduled but not yet started.
+		 */
+		private boolean mIsPreRenderingScheduled = false;
+		/**
+		 * The executor doing the pre-rendering in the background.
+		 */
+		private final ExecutorService mPreRenderExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			runnable.run();
+		}));
 
 		/**
 		 * Constructor.
@@ -170,10 +218,14 @@ public class StackedImageWidgetService extends RemoteViewsService {
 
 		@Override
 		public void onDestroy() {
+			mPreRenderExecutor.shutdownNow();
+			synchronized (mPreRenderedImages) {
+				mPreRenderedImages.clear();
+			}
 		}
 
 		@Override
-		public int getCount() {
+		public synchronized int getCount() {
 			return mFileNames.size();
 		}
 
@@ -185,74 +237,31 @@ public class StackedImageWidgetService extends RemoteViewsService {
 				onDataSetChanged();
 			}
 
-			if (!mShowCyclically) {
-				// once in a while, re-generate the opposite range files.
-				if (mInSecondHalfOfFiles && position == 1) {
-					mInSecondHalfOfFiles = false;
-
-					List<String> retainedFileNames = new ArrayList<>();
-					retainedFileNames.addAll(mFileNames.subList(0, QUARTER_IMAGE_ARRAY_SIZE));
-					retainedFileNames.addAll(mFileNames.subList(IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE));
-					ArrayList<String> newImages = getNewImages(IMAGE_ARRAY_SIZE / 2, retainedFileNames);
-					if (newImages != null) {
-						ArrayList<String> newFileNames = new ArrayList<>();
-						newFileNames.addAll(mFileNames.subList(0, QUARTER_IMAGE_ARRAY_SIZE));
-						newFileNames.addAll(newImages);
-						newFileNames.addAll(mFileNames.subList(IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE));
-						mFileNames = newFileNames;
-					}
-				}
-				else if (!mInSecondHalfOfFiles && position == IMAGE_ARRAY_SIZE / 2 + 1) {
-					mInSecondHalfOfFiles = true;
-
-					ArrayList<String> newImages = getNewImages(IMAGE_ARRAY_SIZE / 2,
-							mFileNames.subList(QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE));
-					if (newImages != null) {
-						ArrayList<String> newFileNames = new ArrayList<>();
-						newFileNames.addAll(newImages.subList(0, QUARTER_IMAGE_ARRAY_SIZE));
-						newFileNames.addAll(mFileNames.subList(QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE));
-						newFileNames.addAll(newImages.subList(QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE / 2));
-						mFileNames = newFileNames;
-					}
-				}
+			String currentFileName;
+			synchronized (this) {
+				currentFileName = mFileNames.get(position);
+				mCurrentPosition = position;
+				recordHalfCrossing(position);
 			}
+			schedulePreRendering();
 
 			RemoteViews remoteViews = new RemoteViews(mContext.getPackageName(),
 					mViewAsList ? R.layout.widget_list_image_item : R.layout.widget_stacked_image_item);
 
-			String currentFileName = mFileNames.get(position);
-
 			if (currentFileName == null) {
 				remoteViews.setImageViewResource(R.id.imageViewWidget, R.drawable.ic_launcher);
 			}
 			else {
-				boolean stretchToFit = BackgroundColor.fromWidgetId(mAppWidgetId) == BackgroundColor.FILL_FRAME;
-				Bitmap bitmap;
-				if (mImageWidth > 0 && mImageHeight > 0) {
-					if (mViewAsList) {
-						bitmap = ImageUtil.getBitmapOfMinimumHeight(currentFileName, mImageWidth, mImageHeight);
-					}
-					else {
-						bitmap = ImageUtil.getBitmapOfExactSize(currentFileName, mImageWidth, mImageHeight, stretchToFit ? -1 : IMAGE_BORDER_SIZE);
-					}
-				}
-				else {
-					bitmap = ImageUtil.getImageBitmap(currentFileName, MediaStoreUtil.MINI_THUMB_SIZE);
-				}
-				remoteViews.setImageViewBitmap(R.id.imageViewWidget, bitmap);
-
-				BackgroundColor backgroundColor = BackgroundColor.fromWidgetId(mAppWidgetId);
-				if (backgroundColor == BackgroundColor.COLOR_FROM_IMAGE) {
-					remoteViews.setInt(R.id.imageViewWidget, GenericImageWidget.SET_BACKGROUND_COLOR, ImageAnalyzer.getColorFromImageBorder(
-							ImageUtil.getImageBitmap(currentFileName, MediaStoreUtil.MINI_THUMB_SIZE)));
+				PreRenderedImage image;
+				synchronized (mPreRenderedImages) {
+					image = mPreRenderedImages.get(currentFileName);
 				}
-				else if (backgroundColor == BackgroundColor.AVERAGE_IMAGE_COLOR) {
-					remoteViews.setInt(R.id.imageViewWidget, GenericImageWidget.SET_BACKGROUND_COLOR, ImageAnalyzer.getAverageImageColor(
-							ImageUtil.getImageBitmap(currentFileName, MediaStoreUtil.MINI_THUMB_SIZE)));
+				if (image == null) {
+					image = renderImage(currentFileName);
 				}
-				else if (backgroundColor == BackgroundColor.RANDOM_FROM_IMAGE) {
-					remoteViews.setInt(R.id.imageViewWidget, GenericImageWidget.SET_BACKGROUND_COLOR, ImageAnalyzer.getRandomColorFromImage(
-							ImageUtil.getImageBitmap(currentFileName, MediaStoreUtil.MINI_THUMB_SIZE)));
+				remoteViews.setImageViewBitmap(R.id.imageViewWidget, image.mBitmap);
+				if (image.mBackgroundColor != null) {
+					remoteViews.setInt(R.id.imageViewWidget, GenericImageWidget.SET_BACKGROUND_COLOR, image.mBackgroundColor);
 				}
 			}
 
@@ -270,6 +279,187 @@ public class StackedImageWidgetService extends RemoteViewsService {
 			return remoteViews;
 		}
 
+		/**
+		 * Render the bitmap and background color of an image.
+		 *
+		 * @param fileName The file name of the image.
+		 * @return The rendered image.
+		 */
+		private PreRenderedImage renderImage(final String fileName) {
+			BackgroundColor backgroundColor = BackgroundColor.fromWidgetId(mAppWidgetId);
+			Bitmap bitmap;
+			if (mImageWidth > 0 && mImageHeight > 0) {
+				if (mViewAsList) {
+					bitmap = ImageUtil.getBitmapOfMinimumHeight(fileName, mImageWidth, mImageHeight);
+				}
+				else {
+					bitmap = ImageUtil.getBitmapOfExactSize(fileName, mImageWidth, mImageHeight,
+							backgroundColor == BackgroundColor.FILL_FRAME ? -1 : IMAGE_BORDER_SIZE);
+				}
+			}
+			else {
+				bitmap = ImageUtil.getImageBitmap(fileName, MediaStoreUtil.MINI_THUMB_SIZE, BitmapUsage.REMOTE);
+			}
+			if (bitmap != null && bitmap.getByteCount() > MAX_ITEM_BITMAP_BYTES) {
+				// Bitmaps are sent to the launcher within the RemoteViews, so they have to fit into the binder transaction.
+				double scaleFactor = Math.sqrt((double) MAX_ITEM_BITMAP_BYTES / bitmap.getByteCount());
+				bitmap = Bitmap.createScaledBitmap(bitmap, Math.max(1, (int) (bitmap.getWidth() * scaleFactor)),
+						Math.max(1, (int) (bitmap.getHeight() * scaleFactor)), true);
+			}
+
+			Integer color = null;
+			if (isColorFromImage(backgroundColor)) {
+				ColorSignature colorSignature = ColorSignatureStore.getColorSignature(fileName);
+				if (colorSignature != null) {
+					if (backgroundColor == BackgroundColor.COLOR_FROM_IMAGE) {
+						color = colorSignature.getBorderColor();
+					}
+					else if (backgroundColor == BackgroundColor.AVERAGE_IMAGE_COLOR) {
+						color = colorSignature.getAverageColor();
+					}
+					else {
+						color = colorSignature.getRandomColor();
+					}
+				}
+			}
+			return new PreRenderedImage(bitmap, color);
+		}
+
+		/**
+		 * Schedule pre-rendering of the images around the current position in the background.
+		 */
+		private void schedulePreRendering() {
+			synchronized (this) {
+				if (mIsPreRenderingScheduled || mPreRenderExecutor.isShutdown()) {
+					return;
+				}
+				mIsPreRenderingScheduled = true;
+			}
+			mPreRenderExecutor.execute(() -> {
+				int position;
+				synchronized (this) {
+					mIsPreRenderingScheduled = false;
+					position = mCurrentPosition;
+				}
+				updateFileNameWindow();
+				preRender(position);
+			});
+		}
+
+		/**
+		 * Pre-render the images of the stack window around the given position, and discard the images outside of this window.
+		 *
+		 * @param position The current position.
+		 */
+		private void preRender(final int position) {
+			synchronized (mPreRenderLock) {
+				List<String> windowFileNames = new ArrayList<>();
+				synchronized (this) {
+					int count = mFileNames.size();
+					for (int offset = -PRE_RENDER_BACKWARD_COUNT; offset <= PRE_RENDER_FORWARD_COUNT && offset < count; offset++) {
+						String fileName = mFileNames.get(((position + offset) % count + count) % count);
+						if (fileName != null && !windowFileNames.contains(fileName)) {
+							windowFileNames.add(fileName);
+						}
+					}
+				}
+				synchronized (mPreRenderedImages) {
+					mPreRenderedImages.keySet().retainAll(windowFileNames);
+				}
+				ThumbnailStore.generateThumbnails(windowFileNames);
+				for (String fileName : windowFileNames) {
+					boolean isRendered;
+					synchronized (mPreRenderedImages) {
+						isRendered = mPreRenderedImages.containsKey(fileName);
+					}
+					if (!isRendered) {
+						PreRenderedImage image = renderImage(fileName);
+						synchronized (mPreRenderedImages) {
+							mPreRenderedImages.put(fileName, image);
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Record if the current position has crossed into the other half of the file names. Every position is checked here, and ranges
+		 * are used, as the launcher may skip positions and the pre-rendering sees only the latest position. Must be called synchronized on
+		 * the factory.
+		 *
+		 * @param position The current position.
+		 */
+		private void recordHalfCrossing(final int position) {
+			if (mShowCyclically || mFileNames.size() != IMAGE_ARRAY_SIZE) {
+				return;
+			}
+			if (mInSecondHalfOfFiles && position >= 1 && position < QUARTER_IMAGE_ARRAY_SIZE - PRE_RENDER_FORWARD_COUNT) {
+				mInSecondHalfOfFiles = false;
+				mIsFileNameUpdatePending = true;
+			}
+			else if (!mInSecondHalfOfFiles && position > IMAGE_ARRAY_SIZE / 2
+					&& position < IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE - PRE_RENDER_FORWARD_COUNT) {
+				mInSecondHalfOfFiles = true;
+				mIsFileNameUpdatePending = true;
+			}
+		}
+
+		/**
+		 * Once in a while, re-generate the file names in the opposite range of the current position.
+		 */
+		private void updateFileNameWindow() {
+			List<String> fileNames;
+			boolean inSecondHalfOfFiles;
+			synchronized (this) {
+				if (!mIsFileNameUpdatePending) {
+					return;
+				}
+				mIsFileNameUpdatePending = false;
+				fileNames = mFileNames;
+				inSecondHalfOfFiles = mInSecondHalfOfFiles;
+			}
+			if (fileNames.size() != IMAGE_ARRAY_SIZE) {
+				return;
+			}
+
+			if (!inSecondHalfOfFiles) {
+				List<String> retainedFileNames = new ArrayList<>();
+				retainedFileNames.addAll(fileNames.subList(0, QUARTER_IMAGE_ARRAY_SIZE));
+				retainedFileNames.addAll(fileNames.subList(IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE));
+				ArrayList<String> newImages = getNewImages(IMAGE_ARRAY_SIZE / 2, retainedFileNames);
+				if (newImages != null) {
+					ArrayList<String> newFileNames = new ArrayList<>();
+					newFileNames.addAll(fileNames.subList(0, QUARTER_IMAGE_ARRAY_SIZE));
+					newFileNames.addAll(newImages);
+					newFileNames.addAll(fileNames.subList(IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE));
+					setFileNames(fileNames, newFileNames);
+				}
+			}
+			else {
+				ArrayList<String> newImages = getNewImages(IMAGE_ARRAY_SIZE / 2,
+						fileNames.subList(QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE));
+				if (newImages != null) {
+					ArrayList<String> newFileNames = new ArrayList<>();
+					newFileNames.addAll(newImages.subList(0, QUARTER_IMAGE_ARRAY_SIZE));
+					newFileNames.addAll(fileNames.subList(QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE - QUARTER_IMAGE_ARRAY_SIZE));
+					newFileNames.addAll(newImages.subList(QUARTER_IMAGE_ARRAY_SIZE, IMAGE_ARRAY_SIZE / 2));
+					setFileNames(fileNames, newFileNames);
+				}
+			}
+		}
+
+		/**
+		 * Replace the file names, if they have not been replaced otherwise in the meantime.
+		 *
+		 * @param oldFileNames The file names which are replaced.
+		 * @param newFileNames The new file names.
+		 */
+		private synchronized void setFileNames(final List<String> oldFileNames, final ArrayList<String> newFileNames) {
+			if (mFileNames == oldFileNames) {
+				mFileNames = newFileNames;
+			}
+		}
+
 		@Override
 		public RemoteViews getLoadingView() {
 			return null;
@@ -306,13 +496,26 @@ public class StackedImageWidgetService extends RemoteViewsService {
 				Log.i(Application.TAG, "StackedImageWidget: data set changed for " + mAppWidgetId + " on list \"" + mListName + "\"");
 				// create new image list
 				createImageList();
+				synchronized (mPreRenderedImages) {
+					mPreRenderedImages.clear();
+				}
+				synchronized (this) {
+					mCurrentPosition = 0;
+				}
 			}
+
+			// Prepare the images of the stack window, so that getViewAt can serve them from memory.
+			int position;
+			synchronized (this) {
+				position = mCurrentPosition;
+			}
+			preRender(position);
 		}
 
 		/**
 		 * Create the list of images to be displayed in the widget.
 		 */
-		private void createImageList() {
+		private synchronized void createImageList() {
 			StandardImageList imageList = ImageRegistry.getStandardImageListByName(mListName, false);
 			if (imageList == null) {
 				Log.e(Application.TAG, "Could not load image list " + mListName + " for StackedImageWidget " + mAppWidgetId);
@@ -333,12 +536,26 @@ public class StackedImageWidgetService extends RemoteViewsService {
 			}
 
 			PreferenceUtil.setIndexedSharedPreferenceStringList(R.string.key_widget_current_list_of_file_names, mAppWidgetId, mFileNames);
+			if (isColorFromImage(BackgroundColor.fromWidgetId(mAppWidgetId))) {
+				ColorSignatureStore.calculateColorSignatures(mFileNames.subList(0, Math.min(IMAGE_ARRAY_SIZE, mFileNames.size())));
+			}
+		}
+
+		/**
+		 * Check if the background color is derived from the image.
+		 *
+		 * @param backgroundColor The background color setting.
+		 * @return true if the background color is derived from the image.
+		 */
+		private boolean isColorFromImage(final BackgroundColor backgroundColor) {
+			return backgroundColor == BackgroundColor.COLOR_FROM_IMAGE || backgroundColor == BackgroundColor.AVERAGE_IMAGE_COLOR
+					|| backgroundColor == BackgroundColor.RANDOM_FROM_IMAGE;
 		}
 
 		/**
 		 * Re-create the previously created image list.
 		 */
-		private void recreateImageList() {
+		private synchronized void recreateImageList() {
 			if (mFileNames.isEmpty()) {
 				mFileNames = PreferenceUtil.getIndexedSharedPreferenceStringList(R.string.key_widget_current_list_of_file_names, mAppWidgetId);
 				if (mFileNames.isEmpty()) {
@@ -369,4 +586,29 @@ public class StackedImageWidgetService extends RemoteViewsService {
 			}
 		}
 	}
+
+	/**
+	 * The pre-rendered bitmap and background color of an image.
+	 */
+	private static final class PreRenderedImage {
+		/**
+		 * The bitmap.
+		 */
+		private final Bitmap mBitmap;
+		/**
+		 * The background color, or null if not derived from the image.
+		 */
+		private final Integer mBackgroundColor;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param bitmap          The bitmap.
+		 * @param backgroundColor The background color, or null if not derived from the image.
+		 */
+		private PreRenderedImage(final Bitmap bitmap, final Integer backgroundColor) {
+			mBitmap = bitmap;
+			mBackgroundColor = backgroundColor;
+		}
+	}
 }
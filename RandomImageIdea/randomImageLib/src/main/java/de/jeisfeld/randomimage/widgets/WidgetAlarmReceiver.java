@@ -1,11 +1,9 @@
 package de.jeisfeld.randomimage.widgets;
 
 import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.content.Context;
 import android.content.Intent;
-import android.os.SystemClock;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -15,7 +13,6 @@ import de.jeisfeld.randomimage.DisplayRandomImageActivity;
 import de.jeisfeld.randomimage.notifications.NotificationSettingsActivity;
 import de.jeisfeld.randomimage.util.AlarmReceiver;
 import de.jeisfeld.randomimage.util.PreferenceUtil;
-import de.jeisfeld.randomimage.util.SystemUtil;
 import de.jeisfeld.randomimage.widgets.GenericWidget.UpdateType;
 import de.jeisfeld.randomimagelib.R;
 
@@ -68,18 +65,15 @@ public class WidgetAlarmReceiver extends AlarmReceiver {
 			return;
 		}
 
-		PendingIntent alarmIntent = createAlarmIntent(context, appWidgetId, false);
+		Intent alarmIntent = createAlarmIntent(context, appWidgetId, false);
+		cancelLegacyAlarm(context, alarmIntent, getRequestCode(appWidgetId, false));
 
 		// Set the alarm
-		AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-
 		if (interval < AlarmManager.INTERVAL_FIFTEEN_MINUTES) {
-			alarmMgr.setRepeating(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + interval,
-					interval, alarmIntent);
+			setRepeatingAlarm(context, System.currentTimeMillis() + interval, interval, alarmIntent, false);
 		}
 		else if (interval < AlarmManager.INTERVAL_DAY) {
-			alarmMgr.setInexactRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP, SystemClock.elapsedRealtime() + interval,
-					interval, alarmIntent);
+			setRepeatingAlarm(context, System.currentTimeMillis() + interval, interval, alarmIntent, true);
 		}
 		else {
 			Calendar calendar = Calendar.getInstance();
@@ -97,7 +91,7 @@ public class WidgetAlarmReceiver extends AlarmReceiver {
 			// Then add the planned interval
 			calendar.setTimeInMillis(calendar.getTimeInMillis() + interval);
 
-			alarmMgr.setInexactRepeating(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), interval, alarmIntent);
+			setRepeatingAlarm(context, calendar.getTimeInMillis(), interval, alarmIntent, true);
 		}
 
 		// Enable SdMountReceiver to automatically restart the alarm when the device is rebooted.
@@ -112,8 +106,7 @@ public class WidgetAlarmReceiver extends AlarmReceiver {
 	 * @param isCancellationAlarm flag indicating if the regular alarm or the cancellation alarm should be cancelled.
 	 */
 	public static void cancelAlarm(final Context context, final int appWidgetId, final boolean isCancellationAlarm) {
-		AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-		alarmMgr.cancel(createAlarmIntent(context, appWidgetId, isCancellationAlarm));
+		cancelAlarm(context, createAlarmIntent(context, appWidgetId, isCancellationAlarm), getRequestCode(appWidgetId, isCancellationAlarm));
 
 		if (!isCancellationAlarm) {
 			ArrayList<Integer> allWidgetIds = GenericWidget.getAllWidgetIds();
@@ -137,28 +130,38 @@ public class WidgetAlarmReceiver extends AlarmReceiver {
 			return;
 		}
 
-		PendingIntent alarmIntent = createAlarmIntent(context, appWidgetId, true);
+		Intent alarmIntent = createAlarmIntent(context, appWidgetId, true);
 		long alarmTimeMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout);
 
 		setAlarm(context, alarmTimeMillis, alarmIntent, getAlarmType(context, timeout));
 	}
 
 	/**
-	 * Create a PendingIntent which can be used for creating or cancelling an alarm for a widget.
+	 * Create an Intent which can be used for creating or cancelling an alarm for a widget.
 	 *
 	 * @param context     The context in which the alarm is set.
 	 * @param appWidgetId the widget id.
 	 * @param isCancellation flag indicating if the alarm should cancel the widget activity.
-	 * @return The PendingIntent.
+	 * @return The Intent.
 	 */
-	private static PendingIntent createAlarmIntent(final Context context, final int appWidgetId, final boolean isCancellation) {
+	private static Intent createAlarmIntent(final Context context, final int appWidgetId, final boolean isCancellation) {
 		Intent intent = new Intent(context, WidgetAlarmReceiver.class);
 		intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
 		intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
 		if (isCancellation) {
 			intent.putExtra(STRING_IS_CANCELLATION, true);
 		}
-		int uniqueId = isCancellation ? -appWidgetId : appWidgetId;
-		return PendingIntent.getBroadcast(context, uniqueId, intent, PendingIntent.FLAG_CANCEL_CURRENT | SystemUtil.IMMUTABLE_FLAG);
+		return intent;
+	}
+
+	/**
+	 * Get the request code used by previous app versions for the alarm PendingIntent of a widget.
+	 *
+	 * @param appWidgetId the widget id.
+	 * @param isCancellation flag indicating if the alarm should cancel the widget activity.
+	 * @return The request code.
+	 */
+	private static int getRequestCode(final int appWidgetId, final boolean isCancellation) {
+		return isCancellation ? -appWidgetId : appWidgetId;
 	}
 }
@@ -0,0 +1,120 @@
+package de.jeisfeld.randomimage.widgets;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.jeisfeld.randomimage.util.ImageList;
+import de.jeisfeld.randomimage.util.ImageRegistry;
+import de.jeisfeld.randomimage.util.ImageUtil;
+import de.jeisfeld.randomimage.util.ImageUtil.BitmapUsage;
+
+/**
+ * A batch of widget updates done together. Within the batch, each image list is loaded only once, the random images of all widgets
+ * sharing a list are drawn in one call, and each image is decoded only once per size.
+ */
+final class WidgetUpdateBatch {
+	/**
+	 * The maximum number of random draws per required file name when drawing distinct file names.
+	 */
+	private static final int MAX_DRAWS_PER_FILE_NAME = 3;
+
+	/**
+	 * The loaded image lists, by list name.
+	 */
+	private final Map<String, ImageList> mImageLists = new HashMap<>();
+	/**
+	 * The number of random file names required from each list, by list name.
+	 */
+	private final Map<String, Integer> mRequiredFileNameCounts = new HashMap<>();
+	/**
+	 * The random file names drawn for each list and not yet used, by list name.
+	 */
+	private final Map<String, List<String>> mRandomFileNames = new HashMap<>();
+	/**
+	 * The decoded bitmaps, by file name, size and usage.
+	 */
+	private final Map<String, Bitmap> mBitmaps = new HashMap<>();
+
+	/**
+	 * Register that a widget of the batch requires a random file name from a list.
+	 *
+	 * @param listName The list name.
+	 */
+	void requireRandomFileName(final String listName) {
+		Integer count = mRequiredFileNameCounts.get(listName);
+		mRequiredFileNameCounts.put(listName, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * Get an image list. The list is loaded only once within the batch.
+	 *
+	 * @param listName The list name.
+	 * @return The image list, or null if it cannot be loaded.
+	 */
+	ImageList getImageList(final String listName) {
+		if (!mImageLists.containsKey(listName)) {
+			mImageLists.put(listName, ImageRegistry.getImageListByName(listName, false));
+		}
+		return mImageLists.get(listName);
+	}
+
+	/**
+	 * Get a random file name from a list. For all widgets of the batch requiring a random file from the same list, distinct files are
+	 * drawn together, respecting the weights of the list. If not enough distinct files are found, further files are drawn on demand.
+	 *
+	 * @param listName  The list name.
+	 * @param imageList The image list.
+	 * @return The random file name.
+	 */
+	String getRandomFileName(final String listName, final ImageList imageList) {
+		List<String> fileNames = mRandomFileNames.get(listName);
+		if (fileNames == null) {
+			Integer count = mRequiredFileNameCounts.get(listName);
+			fileNames = new ArrayList<>();
+			if (count != null && count > 1 && imageList.isReady()) {
+				for (int draw = 0; draw < MAX_DRAWS_PER_FILE_NAME * count && fileNames.size() < count; draw++) {
+					String fileName = imageList.getRandomFileName();
+					if (fileName != null && !fileNames.contains(fileName)) {
+						fileNames.add(fileName);
+					}
+				}
+			}
+			mRandomFileNames.put(listName, fileNames);
+		}
+		return fileNames.isEmpty() ? imageList.getRandomFileName() : fileNames.remove(0);
+	}
+
+	/**
+	 * Provide a bitmap of an image which is already available.
+	 *
+	 * @param fileName The file name of the image.
+	 * @param maxSize  The maximum size of the bitmap.
+	 * @param usage    The usage of the bitmap.
+	 * @param bitmap   The bitmap. If null, the bitmap will be decoded when needed.
+	 */
+	void putImageBitmap(final String fileName, final int maxSize, final BitmapUsage usage, final Bitmap bitmap) {
+		if (bitmap != null) {
+			mBitmaps.put(fileName + "|" + maxSize + "|" + usage, bitmap);
+		}
+	}
+
+	/**
+	 * Get the bitmap of an image. Each image is decoded only once per size and usage within the batch.
+	 *
+	 * @param fileName The file name of the image.
+	 * @param maxSize  The maximum size of the bitmap.
+	 * @param usage    The usage of the bitmap.
+	 * @return The bitmap.
+	 */
+	Bitmap getImageBitmap(final String fileName, final int maxSize, final BitmapUsage usage) {
+		String key = fileName + "|" + maxSize + "|" + usage;
+		if (!mBitmaps.containsKey(key)) {
+			mBitmaps.put(key, ImageUtil.getImageBitmap(fileName, maxSize, usage));
+		}
+		return mBitmaps.get(key);
+	}
+}